@@ -0,0 +1,11 @@
+package ru.tyumentsev.cryptopredator.binancestandin;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class BinanceStandInApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(BinanceStandInApplication.class, args);
+    }
+}
@@ -0,0 +1,41 @@
+package ru.tyumentsev.cryptopredator.binancestandin.configuration;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "standin")
+@FieldDefaults(level = AccessLevel.PROTECTED)
+@SuppressWarnings("unused")
+public class StandInConfiguration {
+
+    String quoteAsset = "USDT";
+    /**
+     * Quantity of synthetic symbols, BTC pair is added to them.
+     */
+    int symbolsCount = 1000;
+    /**
+     * How much faster than real time market runs.
+     */
+    double speedMultiplier = 1D;
+    /**
+     * Real time between price updates of synthetic symbols, milliseconds.
+     */
+    long tickInterval = 1000L;
+    /**
+     * Directory of recorded events journal. If set, recorded candlestick events are replayed instead of synthetic ones.
+     */
+    String replayDirectory;
+    /**
+     * Quantity of closed bars kept per (symbol, interval).
+     */
+    int historyBars = 200;
+    String initialBalance = "1000";
+    long seed = 42L;
+}
@@ -0,0 +1,25 @@
+package ru.tyumentsev.cryptopredator.binancestandin.configuration;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import ru.tyumentsev.cryptopredator.binancestandin.websocket.StreamWebSocketHandler;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    StreamWebSocketHandler streamWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(final WebSocketHandlerRegistry registry) {
+        // raw streams: /ws/<symbol>@kline_<interval>[/<symbol>@kline_<interval>...] or /ws/<listenKey>.
+        registry.addHandler(streamWebSocketHandler, "/ws/**").setAllowedOrigins("*");
+    }
+}
@@ -0,0 +1,60 @@
+package ru.tyumentsev.cryptopredator.binancestandin.controller;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.tyumentsev.cryptopredator.binancestandin.mapping.BinanceJsonMapper;
+import ru.tyumentsev.cryptopredator.binancestandin.market.SimulatedClock;
+import ru.tyumentsev.cryptopredator.binancestandin.trading.SpotExchange;
+
+import java.util.Map;
+
+/**
+ * Signed endpoints, signature and API key are not checked.
+ */
+@RestController
+@RequestMapping("/api/v3")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+@Slf4j
+@SuppressWarnings("unused")
+public class AccountController {
+
+    SpotExchange spotExchange;
+    SimulatedClock clock;
+
+    @GetMapping("/account")
+    public Map<String, Object> account() {
+        return BinanceJsonMapper.account(clock.now(), spotExchange.getBalances());
+    }
+
+    @PostMapping("/order")
+    public Map<String, Object> newOrder(@RequestParam Map<String, String> params) {
+        return BinanceJsonMapper.order(spotExchange.newOrder(params));
+    }
+
+    @PostMapping("/userDataStream")
+    public Map<String, Object> startUserDataStream() {
+        return Map.of("listenKey", spotExchange.startUserDataStream());
+    }
+
+    @PutMapping("/userDataStream")
+    public Map<String, Object> keepAliveUserDataStream(@RequestParam String listenKey) {
+        spotExchange.keepAliveUserDataStream(listenKey);
+        return Map.of();
+    }
+
+    @DeleteMapping("/userDataStream")
+    public Map<String, Object> closeUserDataStream(@RequestParam String listenKey) {
+        spotExchange.closeUserDataStream(listenKey);
+        return Map.of();
+    }
+}
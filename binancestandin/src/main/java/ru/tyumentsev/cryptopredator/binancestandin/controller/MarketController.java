@@ -0,0 +1,107 @@
+package ru.tyumentsev.cryptopredator.binancestandin.controller;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.tyumentsev.cryptopredator.binancestandin.configuration.StandInConfiguration;
+import ru.tyumentsev.cryptopredator.binancestandin.mapping.BinanceJsonMapper;
+import ru.tyumentsev.cryptopredator.binancestandin.market.MarketSimulator;
+import ru.tyumentsev.cryptopredator.binancestandin.market.SimulatedClock;
+import ru.tyumentsev.cryptopredator.binancestandin.trading.StandInException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api/v3")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+@SuppressWarnings("unused")
+public class MarketController {
+
+    StandInConfiguration configuration;
+    MarketSimulator marketSimulator;
+    SimulatedClock clock;
+    ObjectMapper objectMapper;
+
+    @GetMapping("/ping")
+    public Map<String, Object> ping() {
+        return Map.of();
+    }
+
+    @GetMapping("/time")
+    public Map<String, Object> time() {
+        return Map.of("serverTime", clock.now());
+    }
+
+    @GetMapping("/exchangeInfo")
+    public Map<String, Object> exchangeInfo() {
+        return BinanceJsonMapper.exchangeInfo(clock.now(), marketSimulator.getSymbols(), configuration.getQuoteAsset());
+    }
+
+    @GetMapping("/klines")
+    public List<List<Object>> klines(@RequestParam String symbol, @RequestParam String interval,
+                                     @RequestParam(defaultValue = "500") Integer limit,
+                                     @RequestParam(required = false) Long startTime,
+                                     @RequestParam(required = false) Long endTime) {
+        checkSymbol(symbol);
+        CandlestickInterval candlestickInterval = Arrays.stream(CandlestickInterval.values())
+                .filter(value -> value.getIntervalId().equals(interval))
+                .findFirst()
+                .orElseThrow(() -> new StandInException(StandInException.BAD_PARAMETER, "Invalid interval."));
+        return marketSimulator.series(symbol, candlestickInterval).history(Math.min(limit, 1000), startTime, endTime).stream()
+                .map(BinanceJsonMapper::kline)
+                .toList();
+    }
+
+    /**
+     * Price of one symbol, of JSON array of symbols or of all symbols.
+     */
+    @GetMapping("/ticker/price")
+    public Object tickerPrice(@RequestParam(required = false) String symbol, @RequestParam(required = false) String symbols) {
+        if (symbol != null) {
+            checkSymbol(symbol);
+            return BinanceJsonMapper.tickerPrice(symbol, marketSimulator.getPrice(symbol));
+        }
+        List<String> requested;
+        try {
+            requested = symbols == null
+                    ? List.copyOf(marketSimulator.getSymbols())
+                    : objectMapper.readValue(symbols, new TypeReference<List<String>>() {});
+        } catch (JsonProcessingException e) {
+            throw new StandInException(StandInException.BAD_PARAMETER, "Illegal characters found in parameter 'symbols'.");
+        }
+        return requested.stream()
+                .filter(requestedSymbol -> marketSimulator.getPrice(requestedSymbol) != null)
+                .map(requestedSymbol -> BinanceJsonMapper.tickerPrice(requestedSymbol, marketSimulator.getPrice(requestedSymbol)))
+                .toList();
+    }
+
+    /**
+     * Book of one level around current price, enough for clients which check spread.
+     */
+    @GetMapping("/depth")
+    public Map<String, Object> depth(@RequestParam String symbol, @RequestParam(defaultValue = "100") Integer limit) {
+        checkSymbol(symbol);
+        double price = marketSimulator.getPrice(symbol);
+        return Map.of("lastUpdateId", clock.now(),
+                "bids", List.of(List.of(BinanceJsonMapper.decimal(price * 0.9995), "1000000")),
+                "asks", List.of(List.of(BinanceJsonMapper.decimal(price * 1.0005), "1000000")));
+    }
+
+    private void checkSymbol(final String symbol) {
+        if (Objects.isNull(marketSimulator.getPrice(symbol))) {
+            throw new StandInException(StandInException.UNKNOWN_SYMBOL, "Invalid symbol.");
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.tyumentsev.cryptopredator.binancestandin.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.tyumentsev.cryptopredator.binancestandin.trading.StandInException;
+
+import java.util.Map;
+
+/**
+ * Errors in Binance format, so API client throws BinanceApiException with code and message.
+ */
+@RestControllerAdvice
+@SuppressWarnings("unused")
+public class StandInExceptionHandler {
+
+    @ExceptionHandler(StandInException.class)
+    public ResponseEntity<Map<String, Object>> handle(final StandInException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("code", e.getCode(), "msg", e.getMessage()));
+    }
+
+    @ExceptionHandler({MissingServletRequestParameterException.class, NumberFormatException.class})
+    public ResponseEntity<Map<String, Object>> handleBadParameter(final Exception e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("code", StandInException.BAD_PARAMETER, "msg", e.getMessage()));
+    }
+}
@@ -0,0 +1,200 @@
+package ru.tyumentsev.cryptopredator.binancestandin.mapping;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+import ru.tyumentsev.cryptopredator.binancestandin.market.Kline;
+import ru.tyumentsev.cryptopredator.binancestandin.trading.SpotExchange.Order;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds responses and stream events in formats of Binance spot API, which are read by Binance API client.
+ */
+public final class BinanceJsonMapper {
+
+    private BinanceJsonMapper() {
+    }
+
+    public static String decimal(final double value) {
+        return BigDecimal.valueOf(value).setScale(8, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Element of /api/v3/klines response.
+     */
+    public static List<Object> kline(final Kline kline) {
+        return List.of(kline.getOpenTime(), decimal(kline.getOpen()), decimal(kline.getHigh()), decimal(kline.getLow()),
+                decimal(kline.getClose()), decimal(kline.getVolume()), kline.getCloseTime(), decimal(kline.getQuoteVolume()),
+                kline.getTrades(), decimal(kline.getVolume() / 2), decimal(kline.getQuoteVolume() / 2), "0");
+    }
+
+    public static Map<String, Object> klineEvent(final long eventTime, final String symbol, final CandlestickInterval interval, final Kline kline) {
+        Map<String, Object> k = new LinkedHashMap<>();
+        k.put("t", kline.getOpenTime());
+        k.put("T", kline.getCloseTime());
+        k.put("s", symbol);
+        k.put("i", interval.getIntervalId());
+        k.put("f", 0L);
+        k.put("L", kline.getTrades());
+        k.put("o", decimal(kline.getOpen()));
+        k.put("c", decimal(kline.getClose()));
+        k.put("h", decimal(kline.getHigh()));
+        k.put("l", decimal(kline.getLow()));
+        k.put("v", decimal(kline.getVolume()));
+        k.put("n", kline.getTrades());
+        k.put("x", kline.isClosed());
+        k.put("q", decimal(kline.getQuoteVolume()));
+        k.put("V", decimal(kline.getVolume() / 2));
+        k.put("Q", decimal(kline.getQuoteVolume() / 2));
+        k.put("B", "0");
+
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("e", "kline");
+        event.put("E", eventTime);
+        event.put("s", symbol);
+        event.put("k", k);
+        return event;
+    }
+
+    public static Map<String, Object> exchangeInfo(final long serverTime, final Collection<String> symbols, final String quoteAsset) {
+        Map<String, Object> exchangeInfo = new LinkedHashMap<>();
+        exchangeInfo.put("timezone", "UTC");
+        exchangeInfo.put("serverTime", serverTime);
+        exchangeInfo.put("rateLimits", List.of());
+        exchangeInfo.put("exchangeFilters", List.of());
+        exchangeInfo.put("symbols", symbols.stream().map(symbol -> symbolInfo(symbol, quoteAsset)).toList());
+        return exchangeInfo;
+    }
+
+    private static Map<String, Object> symbolInfo(final String symbol, final String quoteAsset) {
+        Map<String, Object> symbolInfo = new LinkedHashMap<>();
+        symbolInfo.put("symbol", symbol);
+        symbolInfo.put("status", "TRADING");
+        symbolInfo.put("baseAsset", symbol.substring(0, symbol.length() - quoteAsset.length()));
+        symbolInfo.put("baseAssetPrecision", 8);
+        symbolInfo.put("quoteAsset", quoteAsset);
+        symbolInfo.put("quotePrecision", 8);
+        symbolInfo.put("orderTypes", List.of("LIMIT", "MARKET"));
+        symbolInfo.put("icebergAllowed", false);
+        symbolInfo.put("ocoAllowed", false);
+        symbolInfo.put("isSpotTradingAllowed", true);
+        symbolInfo.put("isMarginTradingAllowed", false);
+        symbolInfo.put("filters", List.of(
+                Map.of("filterType", "PRICE_FILTER", "minPrice", "0.00000001", "maxPrice", "1000000", "tickSize", "0.00000001"),
+                Map.of("filterType", "LOT_SIZE", "minQty", "0.00000001", "maxQty", "90000000", "stepSize", "0.00000001"),
+                Map.of("filterType", "MIN_NOTIONAL", "minNotional", "5", "applyToMarket", true, "avgPriceMins", 5)));
+        symbolInfo.put("permissions", List.of("SPOT"));
+        return symbolInfo;
+    }
+
+    public static Map<String, Object> tickerPrice(final String symbol, final double price) {
+        Map<String, Object> tickerPrice = new LinkedHashMap<>();
+        tickerPrice.put("symbol", symbol);
+        tickerPrice.put("price", decimal(price));
+        return tickerPrice;
+    }
+
+    /**
+     * Response of order placement with FULL response type.
+     */
+    public static Map<String, Object> order(final Order order) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("symbol", order.symbol());
+        response.put("orderId", order.orderId());
+        response.put("orderListId", -1);
+        response.put("clientOrderId", order.clientOrderId());
+        response.put("transactTime", order.time());
+        response.put("price", decimal(order.price()));
+        response.put("origQty", decimal(order.quantity()));
+        response.put("executedQty", decimal(order.executedQuantity()));
+        response.put("cummulativeQuoteQty", decimal(order.executedQuantity() * order.executedPrice()));
+        response.put("status", order.status());
+        response.put("timeInForce", "GTC");
+        response.put("type", order.type());
+        response.put("side", order.side());
+        response.put("fills", order.executedQuantity() > 0
+                ? List.of(Map.of("price", decimal(order.executedPrice()), "qty", decimal(order.executedQuantity()),
+                        "commission", "0", "commissionAsset", order.quoteAsset(), "tradeId", order.orderId()))
+                : List.of());
+        if (order.strategyId() != null) {
+            response.put("strategyId", order.strategyId());
+        }
+        return response;
+    }
+
+    /**
+     * User data stream event of order update.
+     * @param executionType NEW or TRADE.
+     */
+    public static Map<String, Object> executionReport(final long eventTime, final Order order, final String executionType) {
+        boolean trade = "TRADE".equals(executionType);
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("e", "executionReport");
+        event.put("E", eventTime);
+        event.put("s", order.symbol());
+        event.put("c", order.clientOrderId());
+        event.put("S", order.side());
+        event.put("o", order.type());
+        event.put("f", "GTC");
+        event.put("q", decimal(order.quantity()));
+        event.put("p", decimal(order.price()));
+        event.put("P", "0");
+        event.put("F", "0");
+        event.put("g", -1);
+        event.put("C", "");
+        event.put("x", executionType);
+        event.put("X", trade ? order.status() : "NEW");
+        event.put("r", "NONE");
+        event.put("i", order.orderId());
+        event.put("l", trade ? decimal(order.executedQuantity()) : "0");
+        event.put("z", trade ? decimal(order.executedQuantity()) : "0");
+        event.put("L", trade ? decimal(order.executedPrice()) : "0");
+        event.put("n", "0");
+        event.put("N", null);
+        event.put("T", eventTime);
+        event.put("t", trade ? order.orderId() : -1);
+        event.put("w", !trade);
+        event.put("m", false);
+        event.put("O", order.time());
+        event.put("Z", trade ? decimal(order.executedQuantity() * order.executedPrice()) : "0");
+        event.put("Y", trade ? decimal(order.executedQuantity() * order.executedPrice()) : "0");
+        event.put("Q", "0");
+        if (order.strategyId() != null) {
+            event.put("j", order.strategyId());
+        }
+        return event;
+    }
+
+    public static Map<String, Object> accountPosition(final long eventTime, final Map<String, Double> balances) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("e", "outboundAccountPosition");
+        event.put("E", eventTime);
+        event.put("u", eventTime);
+        event.put("B", balances.entrySet().stream()
+                .map(balance -> Map.of("a", balance.getKey(), "f", decimal(balance.getValue()), "l", "0"))
+                .toList());
+        return event;
+    }
+
+    public static Map<String, Object> account(final long updateTime, final Map<String, Double> balances) {
+        Map<String, Object> account = new LinkedHashMap<>();
+        account.put("makerCommission", 0);
+        account.put("takerCommission", 0);
+        account.put("buyerCommission", 0);
+        account.put("sellerCommission", 0);
+        account.put("canTrade", true);
+        account.put("canWithdraw", false);
+        account.put("canDeposit", false);
+        account.put("updateTime", updateTime);
+        account.put("accountType", "SPOT");
+        account.put("balances", balances.entrySet().stream()
+                .map(balance -> Map.of("asset", balance.getKey(), "free", decimal(balance.getValue()), "locked", "0"))
+                .toList());
+        account.put("permissions", List.of("SPOT"));
+        return account;
+    }
+}
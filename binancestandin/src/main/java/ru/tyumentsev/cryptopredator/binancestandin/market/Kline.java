@@ -0,0 +1,64 @@
+package ru.tyumentsev.cryptopredator.binancestandin.market;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Bar of stand-in market. Mutable while forming, copies are handed out to listeners.
+ */
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class Kline {
+
+    final long openTime;
+    final long closeTime;
+    double open;
+    double high;
+    double low;
+    double close;
+    double volume;
+    double quoteVolume;
+    long trades;
+    boolean closed;
+
+    public Kline(final long openTime, final long closeTime, final double price) {
+        this.openTime = openTime;
+        this.closeTime = closeTime;
+        this.open = price;
+        this.high = price;
+        this.low = price;
+        this.close = price;
+    }
+
+    public Kline(final long openTime, final long closeTime, final double open, final double high, final double low,
+                 final double close, final double volume, final double quoteVolume, final long trades, final boolean closed) {
+        this.openTime = openTime;
+        this.closeTime = closeTime;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.quoteVolume = quoteVolume;
+        this.trades = trades;
+        this.closed = closed;
+    }
+
+    void trade(final double price, final double quantity) {
+        high = Math.max(high, price);
+        low = Math.min(low, price);
+        close = price;
+        volume += quantity;
+        quoteVolume += price * quantity;
+        trades++;
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    Kline copy() {
+        return new Kline(openTime, closeTime, open, high, low, close, volume, quoteVolume, trades, closed);
+    }
+}
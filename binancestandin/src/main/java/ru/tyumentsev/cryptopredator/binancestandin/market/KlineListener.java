@@ -0,0 +1,12 @@
+package ru.tyumentsev.cryptopredator.binancestandin.market;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+
+@FunctionalInterface
+public interface KlineListener {
+
+    /**
+     * Called for every update of forming bar and once for closed bar, kline is a copy and could be kept.
+     */
+    void onKline(String symbol, CandlestickInterval interval, Kline kline);
+}
@@ -0,0 +1,127 @@
+package ru.tyumentsev.cryptopredator.binancestandin.market;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Closed bars and forming bar of one (symbol, interval).
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class KlineSeries {
+
+    @Getter
+    final String symbol;
+    @Getter
+    final CandlestickInterval interval;
+    final long duration;
+    final int capacity;
+    final Deque<Kline> closedKlines = new ArrayDeque<>();
+    Kline forming;
+
+    public KlineSeries(final String symbol, final CandlestickInterval interval, final int capacity) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.duration = CandlestickToBaseBarMapper.duration(interval).toMillis();
+        this.capacity = capacity;
+    }
+
+    /**
+     * Fill history with random walk which ends at price, so new series doesn't start empty.
+     */
+    synchronized KlineSeries seedHistory(final long now, final double price, final Random random) {
+        long openTime = openTimeOf(now);
+        double close = price;
+        for (int i = 0; i < capacity; i++) {
+            openTime -= duration;
+            double open = close * (1 + random.nextGaussian() * 0.01);
+            double volume = 1000 + random.nextInt(100_000);
+            Kline kline = new Kline(openTime, openTime + duration - 1,
+                    open, Math.max(open, close) * (1 + random.nextDouble() * 0.005), Math.min(open, close) * (1 - random.nextDouble() * 0.005),
+                    close, volume, volume * close, 10 + random.nextInt(1000), true);
+            closedKlines.addFirst(kline);
+            close = open;
+        }
+        forming = new Kline(openTimeOf(now), openTimeOf(now) + duration - 1, price);
+        return this;
+    }
+
+    /**
+     * Apply trade at market time: bars which end before it are closed, bars without trades are flat.
+     * @return copies of closed bars and of forming bar, in order of time.
+     */
+    synchronized List<Kline> trade(final long now, final double price, final double quantity) {
+        List<Kline> updated = new ArrayList<>(2);
+        if (forming == null) {
+            forming = new Kline(openTimeOf(now), openTimeOf(now) + duration - 1, price);
+        }
+        while (now > forming.getCloseTime()) {
+            forming.close();
+            updated.add(forming.copy());
+            append(forming);
+            forming = new Kline(forming.getCloseTime() + 1, forming.getCloseTime() + duration, forming.getClose());
+        }
+        forming.trade(price, quantity);
+        updated.add(forming.copy());
+        return updated;
+    }
+
+    /**
+     * Put replayed bar, older bars are ignored.
+     * @return false if bar was ignored.
+     */
+    synchronized boolean apply(final Kline kline) {
+        if (forming != null && kline.getOpenTime() < forming.getOpenTime()) {
+            return false;
+        }
+        if (forming != null && kline.getOpenTime() > forming.getOpenTime()) {
+            forming.close();
+            append(forming);
+        }
+        if (kline.isClosed()) {
+            append(kline.copy());
+            forming = new Kline(kline.getCloseTime() + 1, kline.getCloseTime() + duration, kline.getClose());
+        } else {
+            forming = kline.copy();
+        }
+        return true;
+    }
+
+    /**
+     * Bars like Binance returns them: closed bars and forming one, the oldest first.
+     * @param startTime open time of the first bar, null - latest bars.
+     * @param endTime open time of the last bar, null - up to forming bar.
+     */
+    public synchronized List<Kline> history(final int limit, final Long startTime, final Long endTime) {
+        List<Kline> klines = new ArrayList<>(closedKlines.size() + 1);
+        closedKlines.forEach(klines::add);
+        if (forming != null) {
+            klines.add(forming.copy());
+        }
+        List<Kline> filtered = klines.stream()
+                .filter(kline -> (startTime == null || kline.getOpenTime() >= startTime) && (endTime == null || kline.getOpenTime() <= endTime))
+                .toList();
+        return startTime == null
+                ? filtered.subList(Math.max(0, filtered.size() - limit), filtered.size())
+                : filtered.subList(0, Math.min(limit, filtered.size()));
+    }
+
+    private void append(final Kline kline) {
+        closedKlines.addLast(kline);
+        while (closedKlines.size() > capacity) {
+            closedKlines.removeFirst();
+        }
+    }
+
+    private long openTimeOf(final long time) {
+        return time - Math.floorMod(time, duration);
+    }
+}
@@ -0,0 +1,220 @@
+package ru.tyumentsev.cryptopredator.binancestandin.market;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tyumentsev.cryptopredator.binancestandin.configuration.StandInConfiguration;
+import ru.tyumentsev.cryptopredator.commons.journal.EventJournalReader;
+import ru.tyumentsev.cryptopredator.commons.journal.JournalEventType;
+import ru.tyumentsev.cryptopredator.commons.journal.JournalRecord;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Market of stand-in: prices and bars of symbols, which are either random walks or replay of recorded candlestick events.
+ * Series of (symbol, interval) are created on first request or subscription with synthetic history.
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class MarketSimulator {
+
+    public static final String BTC_SYMBOL = "BTCUSDT";
+
+    StandInConfiguration configuration;
+    SimulatedClock clock;
+    Random random;
+    @Getter
+    Set<String> symbols = ConcurrentHashMap.newKeySet();
+    Map<String, Double> prices = new ConcurrentHashMap<>();
+    Map<String, Map<CandlestickInterval, KlineSeries>> series = new ConcurrentHashMap<>();
+    List<KlineListener> listeners = new CopyOnWriteArrayList<>();
+    ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "market-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MarketSimulator(StandInConfiguration configuration, SimulatedClock clock) {
+        this.configuration = configuration;
+        this.clock = clock;
+        this.random = new Random(configuration.getSeed());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (configuration.getReplayDirectory() == null || configuration.getReplayDirectory().isBlank()) {
+            addSymbol(BTC_SYMBOL, 30_000D);
+            for (int i = 1; i <= configuration.getSymbolsCount(); i++) {
+                addSymbol(String.format("S%04d%s", i, configuration.getQuoteAsset()), Math.exp(random.nextGaussian() * 2));
+            }
+            ticker.scheduleAtFixedRate(this::tick, configuration.getTickInterval(), configuration.getTickInterval(), TimeUnit.MILLISECONDS);
+            log.info("Market of {} synthetic symbols started with speed x{}.", symbols.size(), configuration.getSpeedMultiplier());
+        } else {
+            ticker.execute(() -> replay(Path.of(configuration.getReplayDirectory())));
+        }
+    }
+
+    public void addListener(final KlineListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final KlineListener listener) {
+        listeners.remove(listener);
+    }
+
+    public Double getPrice(final String symbol) {
+        return prices.get(symbol);
+    }
+
+    public Map<String, Double> getPrices() {
+        return prices;
+    }
+
+    public KlineSeries series(final String symbol, final CandlestickInterval interval) {
+        return series.computeIfAbsent(symbol, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(interval, key -> new KlineSeries(symbol, interval, configuration.getHistoryBars())
+                        .seedHistory(clock.now(), prices.getOrDefault(symbol, 1D), new Random(configuration.getSeed() + symbol.hashCode())));
+    }
+
+    private void addSymbol(final String symbol, final double price) {
+        symbols.add(symbol);
+        prices.put(symbol, price);
+    }
+
+    private void tick() {
+        long now = clock.now();
+        // volatility grows with market time passed by tick.
+        double volatility = 0.001 * Math.sqrt(configuration.getTickInterval() * configuration.getSpeedMultiplier() / 60_000D);
+        ThreadLocalRandom tickRandom = ThreadLocalRandom.current();
+        try {
+            for (String symbol : symbols) {
+                double price = prices.get(symbol) * Math.exp(tickRandom.nextGaussian() * volatility);
+                prices.put(symbol, price);
+                trade(symbol, now, price, tickRandom.nextDouble() * 1000, null);
+            }
+        } catch (Exception e) {
+            log.error("Error while updating market: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Update all series of symbol with trade, except the given interval.
+     */
+    private void trade(final String symbol, final long now, final double price, final double quantity, final CandlestickInterval except) {
+        Map<CandlestickInterval, KlineSeries> symbolSeries = series.get(symbol);
+        if (symbolSeries == null) {
+            return;
+        }
+        symbolSeries.values().forEach(klineSeries -> {
+            if (klineSeries.getInterval() != except) {
+                klineSeries.trade(now, price, quantity).forEach(kline -> notifyListeners(symbol, klineSeries.getInterval(), kline));
+            }
+        });
+    }
+
+    /**
+     * Replay recorded candlestick events keeping pauses between them (divided by speed multiplier).
+     * Times of events are shifted, so the first event happens at launch of stand-in.
+     * Events are streamed from journal, symbols are added when their first event is met.
+     */
+    private void replay(final Path directory) {
+        Replay replay = new Replay();
+        log.info("Replaying events from {} with speed x{}.", directory, configuration.getSpeedMultiplier());
+        try {
+            new EventJournalReader(directory).read(replay);
+        } catch (CancellationException e) {
+            log.info("Replay of {} is stopped after {} events.", directory, replay.count);
+            return;
+        }
+        if (replay.count == 0) {
+            log.warn("No candlestick events found in {}, nothing to replay.", directory);
+        } else {
+            log.info("Replay of {} events of {} symbols from {} finished.", replay.count, symbols.size(), directory);
+        }
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private class Replay implements Consumer<JournalRecord> {
+
+        final Map<String, CandlestickInterval> intervals = new HashMap<>();
+        long shift;
+        long count;
+
+        Replay() {
+            Arrays.stream(CandlestickInterval.values()).forEach(interval -> intervals.put(interval.getIntervalId(), interval));
+        }
+
+        @Override
+        public void accept(final JournalRecord record) {
+            if (record.type() != JournalEventType.CANDLESTICK) {
+                return;
+            }
+            CandlestickEvent event = record.event(CandlestickEvent.class);
+            if (count++ == 0) {
+                shift = clock.getStartedAt() - event.getEventTime();
+            }
+            if (!symbols.contains(event.getSymbol())) {
+                addSymbol(event.getSymbol(), Double.parseDouble(event.getOpen()));
+            }
+            long eventTime = event.getEventTime() + shift;
+            long delay = clock.realTimeOf(eventTime) - System.currentTimeMillis();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException();
+                }
+            }
+            CandlestickInterval interval = intervals.get(event.getIntervalId());
+            if (interval == null) {
+                return;
+            }
+            Kline kline = new Kline(event.getOpenTime() + shift, event.getCloseTime() + shift,
+                    Double.parseDouble(event.getOpen()), Double.parseDouble(event.getHigh()), Double.parseDouble(event.getLow()),
+                    Double.parseDouble(event.getClose()), Double.parseDouble(event.getVolume()), Double.parseDouble(event.getQuoteAssetVolume()),
+                    event.getNumberOfTrades() == null ? 0 : event.getNumberOfTrades(), Boolean.TRUE.equals(event.getBarFinal()));
+            prices.put(event.getSymbol(), kline.getClose());
+            if (series(event.getSymbol(), interval).apply(kline)) {
+                notifyListeners(event.getSymbol(), interval, kline);
+            }
+            trade(event.getSymbol(), eventTime, kline.getClose(), 0, interval);
+        }
+    }
+
+    private void notifyListeners(final String symbol, final CandlestickInterval interval, final Kline kline) {
+        for (KlineListener listener : listeners) {
+            try {
+                listener.onKline(symbol, interval, kline);
+            } catch (Exception e) {
+                log.warn("Kline listener failed on {} {}: {}", symbol, interval, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.tyumentsev.cryptopredator.binancestandin.market;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+import ru.tyumentsev.cryptopredator.binancestandin.configuration.StandInConfiguration;
+
+/**
+ * Market time, starts at real time of launch and runs {@link StandInConfiguration#getSpeedMultiplier()} times faster.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SimulatedClock {
+
+    @Getter
+    long startedAt = System.currentTimeMillis();
+    double speedMultiplier;
+
+    public SimulatedClock(StandInConfiguration configuration) {
+        this.speedMultiplier = configuration.getSpeedMultiplier();
+    }
+
+    public long now() {
+        return startedAt + (long) ((System.currentTimeMillis() - startedAt) * speedMultiplier);
+    }
+
+    /**
+     * Real time when market time reaches given moment.
+     */
+    public long realTimeOf(final long marketTime) {
+        return startedAt + (long) ((marketTime - startedAt) / speedMultiplier);
+    }
+}
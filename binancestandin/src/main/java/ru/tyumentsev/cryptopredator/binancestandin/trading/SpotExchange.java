@@ -0,0 +1,206 @@
+package ru.tyumentsev.cryptopredator.binancestandin.trading;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.tyumentsev.cryptopredator.binancestandin.configuration.StandInConfiguration;
+import ru.tyumentsev.cryptopredator.binancestandin.mapping.BinanceJsonMapper;
+import ru.tyumentsev.cryptopredator.binancestandin.market.Kline;
+import ru.tyumentsev.cryptopredator.binancestandin.market.MarketSimulator;
+import ru.tyumentsev.cryptopredator.binancestandin.market.SimulatedClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spot account of stand-in: one account for all API keys, without commissions.
+ * Market orders are filled at current price immediately, limit orders - when price reaches them.
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class SpotExchange {
+
+    StandInConfiguration configuration;
+    MarketSimulator marketSimulator;
+    SimulatedClock clock;
+    Map<String, Double> balances = new TreeMap<>();
+    Map<String, List<Order>> pendingOrders = new ConcurrentHashMap<>();
+    Set<String> listenKeys = ConcurrentHashMap.newKeySet();
+    List<UserDataListener> listeners = new CopyOnWriteArrayList<>();
+    AtomicLong orderIds = new AtomicLong();
+
+    public SpotExchange(StandInConfiguration configuration, MarketSimulator marketSimulator, SimulatedClock clock) {
+        this.configuration = configuration;
+        this.marketSimulator = marketSimulator;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void init() {
+        balances.put(configuration.getQuoteAsset(), Double.parseDouble(configuration.getInitialBalance()));
+        marketSimulator.addListener(this::checkPendingOrders);
+    }
+
+    public record Order(long orderId, String clientOrderId, String symbol, String quoteAsset, String side, String type,
+                        double price, double quantity, double executedQuantity, double executedPrice, String status,
+                        Integer strategyId, long time) {
+
+        Order fill(final double fillPrice, final double fillQuantity) {
+            return new Order(orderId, clientOrderId, symbol, quoteAsset, side, type, price, fillQuantity, fillQuantity, fillPrice,
+                    "FILLED", strategyId, time);
+        }
+
+        boolean isBuy() {
+            return "BUY".equals(side);
+        }
+    }
+
+    /**
+     * Place order with parameters of Binance new order request.
+     */
+    public Order newOrder(final Map<String, String> params) {
+        String symbol = require(params, "symbol");
+        String side = require(params, "side");
+        String type = require(params, "type");
+        Double marketPrice = marketSimulator.getPrice(symbol);
+        if (marketPrice == null) {
+            throw new StandInException(StandInException.UNKNOWN_SYMBOL, "Invalid symbol.");
+        }
+        double price = "LIMIT".equals(type) ? Double.parseDouble(require(params, "price")) : marketPrice;
+        double quantity = params.get("quantity") != null
+                ? Double.parseDouble(params.get("quantity"))
+                : Double.parseDouble(require(params, "quoteOrderQty")) / price;
+        Order order = new Order(orderIds.incrementAndGet(),
+                params.getOrDefault("newClientOrderId", UUID.randomUUID().toString()),
+                symbol, configuration.getQuoteAsset(), side, type, price, quantity, 0, 0, "NEW",
+                params.get("strategyId") == null ? null : Integer.parseInt(params.get("strategyId")),
+                clock.now());
+
+        synchronized (balances) {
+            checkBalance(order, price);
+            publish(BinanceJsonMapper.executionReport(clock.now(), order, "NEW"));
+            if ("MARKET".equals(type) || isMarketable(order, marketPrice)) {
+                order = execute(order, "MARKET".equals(type) ? marketPrice : price);
+            } else {
+                pendingOrders.computeIfAbsent(symbol, key -> new CopyOnWriteArrayList<>()).add(order);
+            }
+        }
+        return order;
+    }
+
+    public Map<String, Double> getBalances() {
+        synchronized (balances) {
+            return new TreeMap<>(balances);
+        }
+    }
+
+    public String startUserDataStream() {
+        String listenKey = UUID.randomUUID().toString().replace("-", "");
+        listenKeys.add(listenKey);
+        return listenKey;
+    }
+
+    public void keepAliveUserDataStream(final String listenKey) {
+        if (!listenKeys.contains(listenKey)) {
+            throw new StandInException(StandInException.UNKNOWN_LISTEN_KEY, "This listenKey does not exist.");
+        }
+    }
+
+    public void closeUserDataStream(final String listenKey) {
+        listenKeys.remove(listenKey);
+    }
+
+    public boolean isListenKey(final String listenKey) {
+        return listenKeys.contains(listenKey);
+    }
+
+    public void addListener(final UserDataListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final UserDataListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void checkPendingOrders(final String symbol, final CandlestickInterval interval, final Kline kline) {
+        List<Order> orders = pendingOrders.get(symbol);
+        if (orders == null || orders.isEmpty()) {
+            return;
+        }
+        synchronized (balances) {
+            List<Order> filled = new ArrayList<>();
+            for (Order order : orders) {
+                if (isMarketable(order, kline.getClose())) {
+                    try {
+                        checkBalance(order, order.price());
+                        execute(order, order.price());
+                    } catch (StandInException e) {
+                        log.warn("Pending order {} of {} is cancelled: {}", order.orderId(), symbol, e.getMessage());
+                    }
+                    filled.add(order);
+                }
+            }
+            orders.removeAll(filled);
+        }
+    }
+
+    private static boolean isMarketable(final Order order, final double marketPrice) {
+        return order.isBuy() ? marketPrice <= order.price() : marketPrice >= order.price();
+    }
+
+    private void checkBalance(final Order order, final double price) {
+        String asset = order.isBuy() ? order.quoteAsset() : baseAsset(order);
+        double required = order.isBuy() ? order.quantity() * price : order.quantity();
+        // tolerance for rounding of quantities by clients.
+        if (balances.getOrDefault(asset, 0D) < required * (1 - 1e-9)) {
+            throw new StandInException(StandInException.INSUFFICIENT_BALANCE, "Account has insufficient balance for requested action.");
+        }
+    }
+
+    private Order execute(final Order order, final double price) {
+        Order filled = order.fill(price, order.quantity());
+        String baseAsset = baseAsset(order);
+        double sign = order.isBuy() ? 1 : -1;
+        balances.merge(baseAsset, sign * filled.executedQuantity(), (a, b) -> Math.max(0, a + b));
+        balances.merge(order.quoteAsset(), -sign * filled.executedQuantity() * price, (a, b) -> Math.max(0, a + b));
+
+        long now = clock.now();
+        publish(BinanceJsonMapper.executionReport(now, filled, "TRADE"));
+        publish(BinanceJsonMapper.accountPosition(now, Map.of(baseAsset, balances.get(baseAsset),
+                order.quoteAsset(), balances.get(order.quoteAsset()))));
+        return filled;
+    }
+
+    private void publish(final Map<String, Object> event) {
+        for (UserDataListener listener : listeners) {
+            try {
+                listener.onUserData(event);
+            } catch (Exception e) {
+                log.warn("User data listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static String baseAsset(final Order order) {
+        return order.symbol().substring(0, order.symbol().length() - order.quoteAsset().length());
+    }
+
+    private static String require(final Map<String, String> params, final String name) {
+        String value = params.get(name);
+        if (value == null || value.isBlank()) {
+            throw new StandInException(StandInException.BAD_PARAMETER, String.format("Mandatory parameter '%s' was not sent, was empty/null, or malformed.", name));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,22 @@
+package ru.tyumentsev.cryptopredator.binancestandin.trading;
+
+import lombok.Getter;
+
+/**
+ * Error which is returned to client in Binance format: {"code": ..., "msg": ...}.
+ */
+@Getter
+public class StandInException extends RuntimeException {
+
+    public static final int UNKNOWN_SYMBOL = -1121;
+    public static final int BAD_PARAMETER = -1102;
+    public static final int INSUFFICIENT_BALANCE = -2010;
+    public static final int UNKNOWN_LISTEN_KEY = -1125;
+
+    private final int code;
+
+    public StandInException(final int code, final String message) {
+        super(message);
+        this.code = code;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.tyumentsev.cryptopredator.binancestandin.trading;
+
+import java.util.Map;
+
+@FunctionalInterface
+public interface UserDataListener {
+
+    /**
+     * Called for every event of account: executionReport and outboundAccountPosition.
+     */
+    void onUserData(Map<String, Object> event);
+}
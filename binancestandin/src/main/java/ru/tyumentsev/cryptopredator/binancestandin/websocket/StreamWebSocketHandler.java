@@ -0,0 +1,125 @@
+package ru.tyumentsev.cryptopredator.binancestandin.websocket;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import ru.tyumentsev.cryptopredator.binancestandin.mapping.BinanceJsonMapper;
+import ru.tyumentsev.cryptopredator.binancestandin.market.Kline;
+import ru.tyumentsev.cryptopredator.binancestandin.market.MarketSimulator;
+import ru.tyumentsev.cryptopredator.binancestandin.market.SimulatedClock;
+import ru.tyumentsev.cryptopredator.binancestandin.trading.SpotExchange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Raw streams of Binance: /ws/<symbol>@kline_<interval>[/...] for candlesticks and /ws/<listenKey> for user data.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class StreamWebSocketHandler extends TextWebSocketHandler {
+
+    private static final String STREAMS_ATTRIBUTE = "streams";
+    private static final int SEND_TIME_LIMIT = 10_000;
+    private static final int BUFFER_SIZE_LIMIT = 1024 * 1024;
+
+    MarketSimulator marketSimulator;
+    SpotExchange spotExchange;
+    SimulatedClock clock;
+    ObjectMapper objectMapper;
+    Map<String, CandlestickInterval> intervals = new ConcurrentHashMap<>();
+    Map<String, Set<WebSocketSession>> klineSessions = new ConcurrentHashMap<>();
+    Set<WebSocketSession> userDataSessions = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        Arrays.stream(CandlestickInterval.values()).forEach(interval -> intervals.put(interval.getIntervalId(), interval));
+        marketSimulator.addListener(this::onKline);
+        spotExchange.addListener(this::onUserData);
+    }
+
+    @Override
+    public void afterConnectionEstablished(final WebSocketSession session) throws IOException {
+        String path = session.getUri() == null ? "" : session.getUri().getPath();
+        WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, BUFFER_SIZE_LIMIT);
+        List<String> streams = new ArrayList<>();
+        for (String stream : path.substring(path.indexOf("/ws/") + 4).split("/")) {
+            int separator = stream.indexOf("@kline_");
+            if (separator > 0 && intervals.containsKey(stream.substring(separator + 7))) {
+                String symbol = stream.substring(0, separator).toUpperCase();
+                CandlestickInterval interval = intervals.get(stream.substring(separator + 7));
+                if (marketSimulator.getPrice(symbol) != null) {
+                    // series starts to receive trades since first subscription.
+                    marketSimulator.series(symbol, interval);
+                    klineSessions.computeIfAbsent(key(symbol, interval), key -> ConcurrentHashMap.newKeySet()).add(decorated);
+                    streams.add(key(symbol, interval));
+                }
+            } else if (spotExchange.isListenKey(stream)) {
+                userDataSessions.add(decorated);
+            } else {
+                log.warn("Unknown stream '{}' requested by {}.", stream, session.getRemoteAddress());
+            }
+        }
+        session.getAttributes().put(STREAMS_ATTRIBUTE, streams);
+        session.getAttributes().put(ConcurrentWebSocketSessionDecorator.class.getName(), decorated);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterConnectionClosed(final WebSocketSession session, final CloseStatus status) {
+        WebSocketSession decorated = (WebSocketSession) session.getAttributes().get(ConcurrentWebSocketSessionDecorator.class.getName());
+        List<String> streams = (List<String>) session.getAttributes().getOrDefault(STREAMS_ATTRIBUTE, List.of());
+        streams.forEach(stream -> klineSessions.getOrDefault(stream, Set.of()).remove(decorated));
+        userDataSessions.remove(decorated);
+    }
+
+    private void onKline(final String symbol, final CandlestickInterval interval, final Kline kline) {
+        Set<WebSocketSession> sessions = klineSessions.get(key(symbol, interval));
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+        send(sessions, BinanceJsonMapper.klineEvent(clock.now(), symbol, interval, kline));
+    }
+
+    private void onUserData(final Map<String, Object> event) {
+        send(userDataSessions, event);
+    }
+
+    private void send(final Set<WebSocketSession> sessions, final Map<String, Object> event) {
+        TextMessage message;
+        try {
+            message = new TextMessage(objectMapper.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+        for (WebSocketSession session : sessions) {
+            try {
+                session.sendMessage(message);
+            } catch (Exception e) {
+                log.warn("Couldn't send event to {}: {}", session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private static String key(final String symbol, final CandlestickInterval interval) {
+        return symbol + ":" + interval.getIntervalId();
+    }
+}
@@ -2,7 +2,7 @@ package ru.tyumentsev.cryptopredator.commons;
 
 import com.binance.api.client.domain.event.OrderTradeUpdateEvent;
 import org.ta4j.core.Bar;
-import org.ta4j.core.BaseBarSeries;
+import org.ta4j.core.BarSeries;
 
 import java.util.Comparator;
 import java.util.Optional;
@@ -21,8 +21,9 @@ public interface TradingStrategy {
      * Search bar with lowest close price to define initial stop price.
      * @param series source where to search bar with lowest price.
      * @return {@link Bar} with lowest close price.
+     * @see ru.tyumentsev.cryptopredator.commons.indicator.IndicatorSpec#lowest for lowest price updated by stream in O(1).
      */
-    default Optional<Bar> lowestClosePrice(final BaseBarSeries series) {
+    default Optional<Bar> lowestClosePrice(final BarSeries series) {
         return series.getBarData().stream().min(Comparator.comparing(Bar::getClosePrice));
     }
 
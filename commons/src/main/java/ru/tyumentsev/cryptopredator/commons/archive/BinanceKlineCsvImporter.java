@@ -0,0 +1,163 @@
+package ru.tyumentsev.cryptopredator.commons.archive;
+
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports kline dumps of Binance public data (data.binance.vision) into {@link CandleArchive}.
+ * Files are named {@code <SYMBOL>-<interval>-<yyyy-MM>[-dd].csv} or the same with {@code .zip},
+ * columns are open time, open, high, low, close, volume, close time, quote volume, trades, taker buy volume,
+ * taker buy quote volume, ignore. Header line is skipped if present, timestamps in microseconds are
+ * converted to milliseconds.
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class BinanceKlineCsvImporter {
+
+    private static final Pattern FILE_NAME = Pattern.compile("([A-Z0-9]+)-(\\w+)-(\\d{4}-\\d{2}(?:-\\d{2})?)\\.(csv|zip)");
+    /**
+     * Open times greater than this are in microseconds (millisecond timestamp of year 5138).
+     */
+    private static final long MAX_MILLIS = 100_000_000_000_000L;
+
+    CandleArchive archive;
+
+    /**
+     * Import all dumps of directory, files of every (symbol, interval) are imported in order of their dates.
+     * @return quantity of imported candles.
+     */
+    public long importDirectory(final Path directory) {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches()).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // files are sorted by name, so files of (symbol, interval) go one by one and only one writer is open.
+        CandleArchiveWriter writer = null;
+        String writerKey = null;
+        long imported = 0;
+        try {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                String key = matcher.group(1) + ":" + matcher.group(2);
+                if (!key.equals(writerKey)) {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                    writer = archive.writer(matcher.group(1), intervalOf(matcher.group(2)));
+                    writerKey = key;
+                }
+                imported += importFile(file, writer);
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        log.info("Imported {} candles from {} files of {}.", imported, files.size(), directory);
+        return imported;
+    }
+
+    /**
+     * Import one dump, symbol and interval are taken from name of file.
+     * @return quantity of imported candles.
+     */
+    public long importFile(final Path file) {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(String.format("%s is not named as Binance kline dump", file));
+        }
+        try (CandleArchiveWriter writer = archive.writer(matcher.group(1), intervalOf(matcher.group(2)))) {
+            return importFile(file, writer);
+        }
+    }
+
+    private long importFile(final Path file, final CandleArchiveWriter writer) {
+        try (InputStream input = Files.newInputStream(file)) {
+            if (!file.getFileName().toString().endsWith(".zip")) {
+                return importCsv(input, writer);
+            }
+            long imported = 0;
+            ZipInputStream zip = new ZipInputStream(input);
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.getName().endsWith(".csv")) {
+                    imported += importCsv(zip, writer);
+                }
+            }
+            return imported;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long importCsv(final InputStream input, final CandleArchiveWriter writer) throws IOException {
+        // reader isn't closed, zip stream is read further.
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+        long imported = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                continue;
+            }
+            if (writer.append(parse(line))) {
+                imported++;
+            }
+        }
+        return imported;
+    }
+
+    static Candlestick parse(final String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length < 11) {
+            throw new IllegalArgumentException(String.format("Unexpected kline line: %s", line));
+        }
+        Candlestick candlestick = new Candlestick();
+        candlestick.setOpenTime(millis(Long.parseLong(columns[0])));
+        candlestick.setOpen(columns[1]);
+        candlestick.setHigh(columns[2]);
+        candlestick.setLow(columns[3]);
+        candlestick.setClose(columns[4]);
+        candlestick.setVolume(columns[5]);
+        candlestick.setCloseTime(millis(Long.parseLong(columns[6])));
+        candlestick.setQuoteAssetVolume(columns[7]);
+        candlestick.setNumberOfTrades(Long.parseLong(columns[8]));
+        candlestick.setTakerBuyBaseAssetVolume(columns[9]);
+        candlestick.setTakerBuyQuoteAssetVolume(columns[10]);
+        return candlestick;
+    }
+
+    private static long millis(final long timestamp) {
+        return timestamp > MAX_MILLIS ? timestamp / 1000 : timestamp;
+    }
+
+    private static CandlestickInterval intervalOf(final String intervalId) {
+        return Arrays.stream(CandlestickInterval.values())
+                .filter(interval -> interval.getIntervalId().equals(intervalId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(String.format("Unknown interval %s", intervalId)));
+    }
+}
@@ -0,0 +1,129 @@
+package ru.tyumentsev.cryptopredator.commons.archive;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Long history of candles on disk, compact enough to keep years of minute candles of hundreds of symbols.
+ * <p>
+ * Candles of every (symbol, interval) are split by months of UTC, every month is a block of
+ * {@code <directory>/<interval>/<symbol>/<yyyy-MM>.block} (see {@link CandleBlock} for encoding).
+ * Block is rewritten completely when candles are appended to it.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CandleArchive {
+
+    public static final String FILE_SUFFIX = ".block";
+
+    Path directory;
+
+    public CandleArchive(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Writer appending candles of (symbol, interval) in order of time, it must be closed to write the last month.
+     */
+    public CandleArchiveWriter writer(final String symbol, final CandlestickInterval interval) {
+        return new CandleArchiveWriter(this, symbol, interval);
+    }
+
+    /**
+     * Reader of candles of (symbol, interval) opened in [from, to], in order of time.
+     * @param from open time in epoch milliseconds, inclusive.
+     * @param to   open time in epoch milliseconds, inclusive.
+     */
+    public CandleArchiveReader reader(final String symbol, final CandlestickInterval interval, final long from, final long to) {
+        List<YearMonth> months = months(symbol, interval).stream()
+                .filter(month -> !month.isBefore(monthOf(from)) && !month.isAfter(monthOf(to)))
+                .toList();
+        return new CandleArchiveReader(this, symbol, interval, months, from, to);
+    }
+
+    public CandleArchiveReader reader(final String symbol, final CandlestickInterval interval) {
+        return reader(symbol, interval, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return months of (symbol, interval) kept in archive, in order of time.
+     */
+    public List<YearMonth> months(final String symbol, final CandlestickInterval interval) {
+        Path symbolDirectory = directory.resolve(interval.getIntervalId()).resolve(symbol);
+        if (!Files.isDirectory(symbolDirectory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(symbolDirectory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(FILE_SUFFIX))
+                    .map(name -> YearMonth.parse(name.substring(0, name.length() - FILE_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return symbols which have candles of interval in archive.
+     */
+    public List<String> symbols(final CandlestickInterval interval) {
+        Path intervalDirectory = directory.resolve(interval.getIntervalId());
+        if (!Files.isDirectory(intervalDirectory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(intervalDirectory)) {
+            return files.filter(Files::isDirectory).map(file -> file.getFileName().toString()).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    CandleBlock readBlock(final String symbol, final CandlestickInterval interval, final YearMonth month) {
+        Path path = pathOf(symbol, interval, month);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return CandleBlock.decode(ByteBuffer.wrap(Files.readAllBytes(path)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Block is written to temporary file first, so block is never read half-written.
+     */
+    void writeBlock(final String symbol, final CandlestickInterval interval, final YearMonth month, final CandleBlock block) {
+        Path path = pathOf(symbol, interval, month);
+        try {
+            Files.createDirectories(path.getParent());
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.write(temporary, block.encode());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static YearMonth monthOf(final long epochMillis) {
+        return YearMonth.from(Instant.ofEpochMilli(epochMillis).atOffset(ZoneOffset.UTC));
+    }
+
+    private Path pathOf(final String symbol, final CandlestickInterval interval, final YearMonth month) {
+        return directory.resolve(interval.getIntervalId()).resolve(symbol).resolve(month + FILE_SUFFIX);
+    }
+}
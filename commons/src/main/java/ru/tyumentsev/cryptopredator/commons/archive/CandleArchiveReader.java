@@ -0,0 +1,152 @@
+package ru.tyumentsev.cryptopredator.commons.archive;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToEventMapper;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Cursor over archived candles of (symbol, interval), one block is decoded at a time.
+ * Values of current candle are read without creating objects, e.g. for scanning of long history:
+ * <pre>{@code
+ * while (reader.next()) {
+ *     max = Math.max(max, reader.high());
+ * }
+ * }</pre>
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CandleArchiveReader {
+
+    CandleArchive archive;
+    String symbol;
+    CandlestickInterval interval;
+    List<YearMonth> months;
+    long from;
+    long to;
+    @NonFinal
+    int monthIndex;
+    @NonFinal
+    CandleBlock block;
+    @NonFinal
+    int index;
+
+    CandleArchiveReader(final CandleArchive archive, final String symbol, final CandlestickInterval interval,
+                        final List<YearMonth> months, final long from, final long to) {
+        this.archive = archive;
+        this.symbol = symbol;
+        this.interval = interval;
+        this.months = months;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Move to the next candle.
+     * @return false if there are no candles anymore.
+     */
+    public boolean next() {
+        while (true) {
+            if (block != null && ++index < block.size()) {
+                long openTime = block.openTime(index);
+                if (openTime > to) {
+                    block = null;
+                    monthIndex = months.size();
+                    return false;
+                }
+                if (openTime >= from) {
+                    return true;
+                }
+                continue;
+            }
+            if (monthIndex >= months.size()) {
+                block = null;
+                return false;
+            }
+            block = archive.readBlock(symbol, interval, months.get(monthIndex++));
+            index = -1;
+        }
+    }
+
+    /**
+     * Pass all remaining candles to consumer.
+     * @return quantity of read candles.
+     */
+    public long forEach(final Consumer<Candlestick> consumer) {
+        long count = 0;
+        while (next()) {
+            consumer.accept(candle());
+            count++;
+        }
+        return count;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    public long openTime() {
+        return current().openTime(index);
+    }
+
+    public long closeTime() {
+        return current().closeTime(index);
+    }
+
+    public double open() {
+        return current().value(CandleBlock.OPEN, index);
+    }
+
+    public double high() {
+        return current().value(CandleBlock.HIGH, index);
+    }
+
+    public double low() {
+        return current().value(CandleBlock.LOW, index);
+    }
+
+    public double close() {
+        return current().value(CandleBlock.CLOSE, index);
+    }
+
+    public double volume() {
+        return current().value(CandleBlock.VOLUME, index);
+    }
+
+    public double quoteVolume() {
+        return current().value(CandleBlock.QUOTE_VOLUME, index);
+    }
+
+    public long trades() {
+        return current().trades(index);
+    }
+
+    public Candlestick candle() {
+        return current().candle(index);
+    }
+
+    /**
+     * Current candle as final event of stream, e.g. to replay history through strategy.
+     */
+    public CandlestickEvent event() {
+        CandlestickEvent event = CandlestickToEventMapper.map(symbol, candle()).orElseThrow();
+        event.setIntervalId(interval.getIntervalId());
+        event.setEventTime(closeTime());
+        event.setBarFinal(true);
+        return event;
+    }
+
+    private CandleBlock current() {
+        if (block == null || index < 0) {
+            throw new NoSuchElementException();
+        }
+        return block;
+    }
+}
@@ -0,0 +1,96 @@
+package ru.tyumentsev.cryptopredator.commons.archive;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.io.Closeable;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends candles of (symbol, interval) to {@link CandleArchive}. Candles of current month are kept in memory
+ * and written as one block when candle of the next month comes, writer is flushed or closed.
+ * Candles of month which is already archived are appended to its block.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CandleArchiveWriter implements Closeable {
+
+    CandleArchive archive;
+    String symbol;
+    CandlestickInterval interval;
+    List<Candle> pending = new ArrayList<>();
+    @NonFinal
+    YearMonth month;
+    @NonFinal
+    long lastOpenTime = Long.MIN_VALUE;
+    @NonFinal
+    long written;
+    /**
+     * Candles were appended to current month after its block was written.
+     */
+    @NonFinal
+    boolean changed;
+
+    CandleArchiveWriter(final CandleArchive archive, final String symbol, final CandlestickInterval interval) {
+        this.archive = archive;
+        this.symbol = symbol;
+        this.interval = interval;
+    }
+
+    /**
+     * Append closed candle, candles not newer than the last appended one are ignored.
+     * @return false if candle was ignored.
+     */
+    public boolean append(final Candle candle) {
+        YearMonth candleMonth = CandleArchive.monthOf(candle.getOpenTime());
+        if (!candleMonth.equals(month)) {
+            if (month != null && candleMonth.isBefore(month)) {
+                return false;
+            }
+            flush();
+            pending.clear();
+            month = candleMonth;
+            CandleBlock existing = archive.readBlock(symbol, interval, month);
+            if (existing != null) {
+                for (int i = 0; i < existing.size(); i++) {
+                    pending.add(existing.candle(i));
+                }
+                lastOpenTime = Math.max(lastOpenTime, existing.openTime(existing.size() - 1));
+            }
+        }
+        if (candle.getOpenTime() <= lastOpenTime) {
+            return false;
+        }
+        pending.add(candle);
+        lastOpenTime = candle.getOpenTime();
+        written++;
+        changed = true;
+        return true;
+    }
+
+    /**
+     * @return quantity of candles appended by writer.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Write block of current month, candles of month are kept, so the next flush rewrites the block with all of them.
+     */
+    public void flush() {
+        if (changed) {
+            archive.writeBlock(symbol, interval, month, CandleBlock.of(pending));
+            changed = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
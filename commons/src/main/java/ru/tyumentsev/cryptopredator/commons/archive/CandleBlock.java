@@ -0,0 +1,359 @@
+package ru.tyumentsev.cryptopredator.commons.archive;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.market.Candlestick;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Candles of one (symbol, interval, month) encoded by columns.
+ * <p>
+ * Layout: header ({@link #MAGIC}, {@link #VERSION}, quantity of candles, scales of decimal columns, sizes of payload)
+ * followed by deflated payload. Payload contains columns one by one, every value is zigzag varint:
+ * <ul>
+ *     <li>open time - delta of delta (0 for candles without gaps), close time - delta of its distance to open time;</li>
+ *     <li>prices - scaled integers with common scale: open as difference with previous close, close as difference
+ *     with open, high and low as distance from body of candle;</li>
+ *     <li>volumes - scaled integers with own scale of every column, trades - delta.</li>
+ * </ul>
+ * Decimals are kept exactly, so candle decoded from block equals the original one up to trailing zeros.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+final class CandleBlock {
+
+    static final int MAGIC = 0x43415243;
+    static final int VERSION = 1;
+    static final int OPEN = 0, HIGH = 1, LOW = 2, CLOSE = 3, VOLUME = 4, QUOTE_VOLUME = 5,
+            TAKER_BUY_VOLUME = 6, TAKER_BUY_QUOTE_VOLUME = 7, DECIMALS = 8;
+    static final int HEADER_SIZE = 3 * Integer.BYTES + DECIMALS + 2 * Integer.BYTES;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    private static final double[] NEGATIVE_POWERS_OF_TEN = new double[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        NEGATIVE_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            NEGATIVE_POWERS_OF_TEN[i] = 1D / POWERS_OF_TEN[i];
+        }
+    }
+
+    int size;
+    long[] openTime;
+    long[] closeTime;
+    long[] trades;
+    /**
+     * Unscaled values of decimal columns.
+     */
+    long[][] decimals;
+    byte[] scales;
+
+    private CandleBlock(final int size, final byte[] scales) {
+        this.size = size;
+        this.openTime = new long[size];
+        this.closeTime = new long[size];
+        this.trades = new long[size];
+        this.decimals = new long[DECIMALS][size];
+        this.scales = scales;
+    }
+
+    /**
+     * @param candles candles of one month in order of open time.
+     */
+    static CandleBlock of(final List<? extends Candle> candles) {
+        int size = candles.size();
+        Decimal[][] parsed = new Decimal[DECIMALS][size];
+        byte[] scales = new byte[DECIMALS];
+        for (int i = 0; i < size; i++) {
+            Candle candle = candles.get(i);
+            String[] values = {candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(), candle.getVolume(),
+                    candle.getQuoteAssetVolume(), candle.getTakerBuyBaseAssetVolume(), candle.getTakerBuyQuoteAssetVolume()};
+            for (int column = 0; column < values.length; column++) {
+                Decimal decimal = Decimal.parse(values[column]);
+                parsed[column][i] = decimal;
+                scales[column] = (byte) Math.max(scales[column], decimal.scale());
+            }
+        }
+        // prices are encoded by differences, so they need common scale.
+        byte priceScale = (byte) Math.max(Math.max(scales[OPEN], scales[HIGH]), Math.max(scales[LOW], scales[CLOSE]));
+        scales[OPEN] = scales[HIGH] = scales[LOW] = scales[CLOSE] = priceScale;
+
+        CandleBlock block = new CandleBlock(size, scales);
+        for (int i = 0; i < size; i++) {
+            Candle candle = candles.get(i);
+            block.openTime[i] = candle.getOpenTime();
+            block.closeTime[i] = candle.getCloseTime();
+            block.trades[i] = candle.getNumberOfTrades() == null ? 0 : candle.getNumberOfTrades();
+            for (int column = 0; column < DECIMALS; column++) {
+                block.decimals[column][i] = parsed[column][i].rescale(scales[column]);
+            }
+        }
+        return block;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long openTime(final int index) {
+        return openTime[index];
+    }
+
+    long closeTime(final int index) {
+        return closeTime[index];
+    }
+
+    long trades(final int index) {
+        return trades[index];
+    }
+
+    double value(final int column, final int index) {
+        return decimals[column][index] * NEGATIVE_POWERS_OF_TEN[scales[column]];
+    }
+
+    String decimal(final int column, final int index) {
+        return BigDecimal.valueOf(decimals[column][index], scales[column]).toPlainString();
+    }
+
+    Candlestick candle(final int index) {
+        Candlestick candlestick = new Candlestick();
+        candlestick.setOpenTime(openTime[index]);
+        candlestick.setCloseTime(closeTime[index]);
+        candlestick.setOpen(decimal(OPEN, index));
+        candlestick.setHigh(decimal(HIGH, index));
+        candlestick.setLow(decimal(LOW, index));
+        candlestick.setClose(decimal(CLOSE, index));
+        candlestick.setVolume(decimal(VOLUME, index));
+        candlestick.setQuoteAssetVolume(decimal(QUOTE_VOLUME, index));
+        candlestick.setTakerBuyBaseAssetVolume(decimal(TAKER_BUY_VOLUME, index));
+        candlestick.setTakerBuyQuoteAssetVolume(decimal(TAKER_BUY_QUOTE_VOLUME, index));
+        candlestick.setNumberOfTrades(trades[index]);
+        return candlestick;
+    }
+
+    byte[] encode() {
+        VarLongOutput payload = new VarLongOutput(size * 16);
+        long previous = 0, previousDelta = 0;
+        for (int i = 0; i < size; i++) {
+            long delta = openTime[i] - previous;
+            payload.write(delta - previousDelta);
+            previous = openTime[i];
+            previousDelta = delta;
+        }
+        previousDelta = 0;
+        for (int i = 0; i < size; i++) {
+            long delta = closeTime[i] - openTime[i];
+            payload.write(delta - previousDelta);
+            previousDelta = delta;
+        }
+        long[] open = decimals[OPEN], high = decimals[HIGH], low = decimals[LOW], close = decimals[CLOSE];
+        for (int i = 0; i < size; i++) {
+            payload.write(open[i] - (i == 0 ? 0 : close[i - 1]));
+        }
+        for (int i = 0; i < size; i++) {
+            payload.write(close[i] - open[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            payload.write(high[i] - Math.max(open[i], close[i]));
+        }
+        for (int i = 0; i < size; i++) {
+            payload.write(Math.min(open[i], close[i]) - low[i]);
+        }
+        for (int column = VOLUME; column <= TAKER_BUY_QUOTE_VOLUME; column++) {
+            for (int i = 0; i < size; i++) {
+                payload.write(decimals[column][i]);
+            }
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            payload.write(trades[i] - previous);
+            previous = trades[i];
+        }
+
+        Deflater deflater = new Deflater();
+        deflater.setInput(payload.buffer(), 0, payload.size());
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(payload.size() / 2 + 64);
+        byte[] chunk = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            compressed.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+
+        ByteBuffer block = ByteBuffer.allocate(HEADER_SIZE + compressed.size());
+        block.putInt(MAGIC).putInt(VERSION).putInt(size).put(scales).putInt(payload.size()).putInt(compressed.size());
+        block.put(compressed.toByteArray());
+        return block.array();
+    }
+
+    static CandleBlock decode(final ByteBuffer block) {
+        if (block.remaining() < HEADER_SIZE || block.getInt() != MAGIC) {
+            throw new IllegalStateException("Not a candle archive block");
+        }
+        int version = block.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException(String.format("Unsupported version %d of candle archive block", version));
+        }
+        int size = block.getInt();
+        byte[] scales = new byte[DECIMALS];
+        block.get(scales);
+        byte[] payload = new byte[block.getInt()];
+        int compressedSize = block.getInt();
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(block.slice(block.position(), compressedSize));
+        try {
+            int inflated = 0;
+            while (inflated < payload.length && !inflater.finished()) {
+                inflated += inflater.inflate(payload, inflated, payload.length - inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted candle archive block", e);
+        } finally {
+            inflater.end();
+        }
+
+        CandleBlock candleBlock = new CandleBlock(size, scales);
+        VarLongInput input = new VarLongInput(payload);
+        long previous = 0, previousDelta = 0;
+        for (int i = 0; i < size; i++) {
+            previousDelta += input.read();
+            previous += previousDelta;
+            candleBlock.openTime[i] = previous;
+        }
+        previousDelta = 0;
+        for (int i = 0; i < size; i++) {
+            previousDelta += input.read();
+            candleBlock.closeTime[i] = candleBlock.openTime[i] + previousDelta;
+        }
+        // open refers to previous close and close refers to open, so both columns are read together.
+        VarLongInput openInput = new VarLongInput(payload, input.position());
+        input.skip(size);
+        long[][] decimals = candleBlock.decimals;
+        long[] open = decimals[OPEN], high = decimals[HIGH], low = decimals[LOW], close = decimals[CLOSE];
+        for (int i = 0; i < size; i++) {
+            open[i] = openInput.read() + (i == 0 ? 0 : close[i - 1]);
+            close[i] = open[i] + input.read();
+        }
+        for (int i = 0; i < size; i++) {
+            high[i] = Math.max(open[i], close[i]) + input.read();
+        }
+        for (int i = 0; i < size; i++) {
+            low[i] = Math.min(open[i], close[i]) - input.read();
+        }
+        for (int column = VOLUME; column <= TAKER_BUY_QUOTE_VOLUME; column++) {
+            for (int i = 0; i < size; i++) {
+                decimals[column][i] = input.read();
+            }
+        }
+        previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += input.read();
+            candleBlock.trades[i] = previous;
+        }
+        return candleBlock;
+    }
+
+    /**
+     * Decimal as unscaled value and scale, trailing zeros are dropped.
+     */
+    private record Decimal(long unscaled, int scale) {
+
+        static final Decimal ZERO = new Decimal(0, 0);
+
+        static Decimal parse(final String value) {
+            if (value == null || value.isEmpty()) {
+                return ZERO;
+            }
+            BigDecimal decimal = new BigDecimal(value).stripTrailingZeros();
+            if (decimal.scale() < 0) {
+                decimal = decimal.setScale(0);
+            }
+            return new Decimal(decimal.unscaledValue().longValueExact(), decimal.scale());
+        }
+
+        long rescale(final int newScale) {
+            return Math.multiplyExact(unscaled, POWERS_OF_TEN[newScale - scale]);
+        }
+    }
+
+    /**
+     * Zigzag varints written into growing array.
+     */
+    private static final class VarLongOutput {
+        byte[] buffer;
+        int size;
+
+        VarLongOutput(final int capacity) {
+            buffer = new byte[Math.max(capacity, 16)];
+        }
+
+        void write(final long value) {
+            if (buffer.length - size < 10) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private static final class VarLongInput {
+        final byte[] buffer;
+        int position;
+
+        VarLongInput(final byte[] buffer) {
+            this(buffer, 0);
+        }
+
+        VarLongInput(final byte[] buffer, final int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        long read() {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        void skip(final int count) {
+            for (int i = 0; i < count; i++) {
+                while (buffer[position++] < 0) {
+                    // skip continuation bytes of value.
+                }
+            }
+        }
+
+        int position() {
+            return position;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Bar series shared by all consumers of the same (symbol, interval), e.g. market and opened positions monitoring.
+ * <p>
+ * Every series has single writer: consumer which created it, or the next attached consumer if writer released series.
+ * Events of other consumers are ignored, so series isn't updated twice by streams of the same candles.
+ * Series is removed when it's released by all consumers. Consumer is any object identifying reader,
+ * e.g. its indicator engine.
+ * <p>
+ * Readers out of stream threads (controllers, persistence) should use {@link #snapshot} instead of live series.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@SuppressWarnings("unused")
+public class BarCache {
+
+    Map<CandlestickInterval, SymbolMap<Entry>> series = new EnumMap<>(CandlestickInterval.class);
+
+    public BarCache() {
+        for (CandlestickInterval interval : CandlestickInterval.values()) {
+            series.put(interval, new SymbolMap<>());
+        }
+    }
+
+    /**
+     * @return live series or null if it's not loaded. Should be read from stream threads only.
+     */
+    public PrimitiveBarSeries get(final int symbolId, final CandlestickInterval interval) {
+        return Optional.ofNullable(series.get(interval).get(symbolId)).map(Entry::series).orElse(null);
+    }
+
+    public PrimitiveBarSeries get(final String symbol, final CandlestickInterval interval) {
+        return Optional.ofNullable(series.get(interval).get(symbol)).map(Entry::series).orElse(null);
+    }
+
+    /**
+     * @return immutable copy of series or null if it's not loaded.
+     */
+    public BarSeriesSnapshot snapshot(final String symbol, final CandlestickInterval interval) {
+        return Optional.ofNullable(get(symbol, interval)).map(PrimitiveBarSeries::snapshot).orElse(null);
+    }
+
+    /**
+     * Create series of symbol from loaded candles, consumer becomes its writer.
+     * If series was already created by other consumer, consumer is attached to existing series instead.
+     * @return series kept in cache.
+     */
+    public PrimitiveBarSeries putIfAbsent(final String symbol, final CandlestickInterval interval, final Object consumer,
+                                          final List<? extends Candle> candles, final int maximumBarCount) {
+        return putIfAbsent(symbol, interval, consumer, candles, List.of(), maximumBarCount);
+    }
+
+    /**
+     * Same as above, but events received while candles were loading are put into new series too,
+     * so series is published only when it's complete.
+     */
+    public PrimitiveBarSeries putIfAbsent(final String symbol, final CandlestickInterval interval, final Object consumer,
+                                          final List<? extends Candle> candles, final List<CandlestickEvent> events,
+                                          final int maximumBarCount) {
+        Entry entry = series.get(interval).computeIfAbsent(symbol, key -> {
+            var newSeries = new PrimitiveBarSeries(String.format("%s_%s", key, interval.getIntervalId()),
+                    CandlestickToBaseBarMapper.duration(interval), maximumBarCount);
+            candles.forEach(candle -> CandlestickToBaseBarMapper.update(newSeries, candle));
+            events.forEach(event -> CandlestickToBaseBarMapper.update(newSeries, event));
+            return new Entry(newSeries);
+        });
+        return entry.attach(consumer, maximumBarCount);
+    }
+
+    /**
+     * Attach consumer to existing series.
+     * @return series or null if it's not loaded.
+     */
+    public PrimitiveBarSeries attach(final int symbolId, final CandlestickInterval interval, final Object consumer, final int maximumBarCount) {
+        return Optional.ofNullable(series.get(interval).get(symbolId))
+                .map(entry -> entry.attach(consumer, maximumBarCount))
+                .orElse(null);
+    }
+
+    /**
+     * Put event into series if consumer is its writer.
+     * @return false if event was ignored.
+     */
+    public boolean update(final int symbolId, final CandlestickInterval interval, final Object consumer, final CandlestickEvent event) {
+        Entry entry = series.get(interval).get(symbolId);
+        return entry != null && entry.writer() == consumer && CandlestickToBaseBarMapper.update(entry.series(), event);
+    }
+
+    /**
+     * Detach consumer from series, series is removed if it has no consumers anymore.
+     */
+    public void release(final String symbol, final CandlestickInterval interval, final Object consumer) {
+        SymbolMap<Entry> intervalSeries = series.get(interval);
+        Entry entry = intervalSeries.get(symbol);
+        if (entry != null && entry.detach(consumer)) {
+            intervalSeries.remove(symbol, entry);
+        }
+    }
+
+    public int size(final CandlestickInterval interval) {
+        return series.get(interval).size();
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Entry {
+        final PrimitiveBarSeries series;
+        final Set<Object> consumers = new LinkedHashSet<>();
+        /**
+         * The first attached consumer, read on every event without locking.
+         */
+        volatile Object writer;
+
+        Entry(final PrimitiveBarSeries series) {
+            this.series = series;
+        }
+
+        PrimitiveBarSeries series() {
+            return series;
+        }
+
+        Object writer() {
+            return writer;
+        }
+
+        synchronized PrimitiveBarSeries attach(final Object consumer, final int maximumBarCount) {
+            consumers.add(consumer);
+            writer = consumers.iterator().next();
+            if (series.getMaximumBarCount() < maximumBarCount) {
+                series.setMaximumBarCount(maximumBarCount);
+            }
+            return series;
+        }
+
+        /**
+         * @return true if series has no consumers anymore.
+         */
+        synchronized boolean detach(final Object consumer) {
+            consumers.remove(consumer);
+            writer = consumers.isEmpty() ? null : consumers.iterator().next();
+            return consumers.isEmpty();
+        }
+    }
+}
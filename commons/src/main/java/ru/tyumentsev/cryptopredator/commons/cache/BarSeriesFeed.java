@@ -0,0 +1,83 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import ru.tyumentsev.cryptopredator.commons.indicator.IndicatorEngine;
+import ru.tyumentsev.cryptopredator.commons.service.CandleBackfillService;
+import ru.tyumentsev.cryptopredator.commons.service.SymbolDispatcher;
+
+import java.util.List;
+
+/**
+ * Puts candlestick events of streams into series of {@link BarCache} and into indicators of consumer,
+ * consumer is identified by its indicator engine.
+ * <p>
+ * History of series is loaded once by {@link CandleBackfillService}, events received meanwhile are buffered.
+ * Events are expected to be handled on lanes of {@link SymbolDispatcher}, history is applied on the lane of symbol too.
+ * Series is put into cache only when it contains history and buffered events, and indicators of consumer are seeded.
+ * Consumer coming to series loaded by other consumer is attached to it and only its indicators are seeded from series.
+ * Series is updated by its writer only, but indicators of every consumer are updated by its own events.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class BarSeriesFeed {
+
+    BarCache barCache;
+    CandleBackfillService candleBackfillService;
+    SymbolDispatcher symbolDispatcher;
+
+    public void addEvent(final CandlestickEvent event, final int symbolId, final CandlestickInterval interval, final int limit,
+                         final IndicatorEngine indicatorEngine) {
+        addEvent(event, symbolId, interval, limit, indicatorEngine, null);
+    }
+
+    /**
+     * @param limit        quantity of bars kept in series.
+     * @param rollupEngine engine of higher timeframes fed by events of series, null if consumer has none.
+     */
+    public void addEvent(final CandlestickEvent event, final int symbolId, final CandlestickInterval interval, final int limit,
+                         final IndicatorEngine indicatorEngine, final RollupEngine rollupEngine) {
+        final String symbol = event.getSymbol();
+        if (barCache.get(symbolId, interval) == null) {
+            if (candleBackfillService.bufferUntilLoaded(symbol, interval, limit, indicatorEngine, event, symbolDispatcher.laneExecutor(symbol), (candles, bufferedEvents) -> {
+                seed(symbol, candles, indicatorEngine, rollupEngine);
+                bufferedEvents.forEach(bufferedEvent -> update(symbolId, bufferedEvent, indicatorEngine, rollupEngine));
+                // series is published complete and after indicators, so next events find both of them ready.
+                barCache.putIfAbsent(symbol, interval, indicatorEngine, candles, bufferedEvents, limit);
+            })) {
+                return;
+            }
+            if (barCache.get(symbolId, interval) == null) {
+                return;
+            }
+        }
+        if (indicatorEngine.get(symbolId) == null) {
+            // series was loaded by other consumer.
+            seed(symbol, barCache.attach(symbolId, interval, indicatorEngine, limit).snapshot().toCandles(), indicatorEngine, rollupEngine);
+        }
+        if (barCache.update(symbolId, interval, indicatorEngine, event)) {
+            candleBackfillService.store(interval, event);
+        }
+        update(symbolId, event, indicatorEngine, rollupEngine);
+    }
+
+    private static void seed(final String symbol, final List<Candlestick> candles, final IndicatorEngine indicatorEngine,
+                             final RollupEngine rollupEngine) {
+        indicatorEngine.seed(symbol, candles);
+        if (rollupEngine != null) {
+            rollupEngine.seed(symbol, candles);
+        }
+    }
+
+    private static void update(final int symbolId, final CandlestickEvent event, final IndicatorEngine indicatorEngine,
+                               final RollupEngine rollupEngine) {
+        indicatorEngine.update(symbolId, event);
+        if (rollupEngine != null) {
+            rollupEngine.update(symbolId, event);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import com.binance.api.client.domain.market.Candlestick;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Immutable copy of bars of {@link PrimitiveBarSeries} at some version of series,
+ * could be read and serialized while series is updated.
+ * @param version version of series the copy was taken at, it grows with every change of series.
+ * @param bars bars from the oldest.
+ */
+public record BarSeriesSnapshot(String name, Duration timePeriod, long version, List<Bar> bars) {
+
+    public BarSeriesSnapshot {
+        bars = List.copyOf(bars);
+    }
+
+    public boolean isEmpty() {
+        return bars.isEmpty();
+    }
+
+    /**
+     * Bars as candles, e.g. to seed indicators.
+     */
+    public List<Candlestick> toCandles() {
+        return bars.stream().map(Bar::toCandle).toList();
+    }
+
+    /**
+     * @param openTime    open time in epoch milliseconds.
+     * @param closeTime   close time in epoch milliseconds, end time of ta4j bar.
+     * @param amount      quote asset volume.
+     */
+    public record Bar(long openTime, long closeTime, double open, double high, double low, double close,
+                      double volume, double amount, long trades) {
+
+        Candlestick toCandle() {
+            Candlestick candlestick = new Candlestick();
+            candlestick.setOpenTime(openTime);
+            candlestick.setCloseTime(closeTime);
+            candlestick.setOpen(decimal(open));
+            candlestick.setHigh(decimal(high));
+            candlestick.setLow(decimal(low));
+            candlestick.setClose(decimal(close));
+            candlestick.setVolume(decimal(volume));
+            candlestick.setQuoteAssetVolume(decimal(amount));
+            candlestick.setNumberOfTrades(trades);
+            return candlestick;
+        }
+
+        private static String decimal(final double value) {
+            return Double.isNaN(value) ? "0" : BigDecimal.valueOf(value).toPlainString();
+        }
+    }
+}
@@ -1,47 +1,132 @@
 package ru.tyumentsev.cryptopredator.commons.cache;
 
 import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.market.Candlestick;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
-@ToString
+/**
+ * Latest candles of symbol in preallocated ring, the oldest candle is dropped when series is full.
+ * Serialized as before: seriesSize, symbol and candlestickSeries array from the oldest candle.
+ */
+@ToString(onlyExplicitlyIncluded = true)
 @JsonIgnoreProperties(ignoreUnknown = true)
-@RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
 public class CandleSeries {
 
     @Getter
     @JsonProperty
+    @ToString.Include
     int seriesSize;
 
     @Getter
     @JsonProperty
+    @ToString.Include
     String symbol;
 
-    @JsonProperty
-    Deque<Candle> candlestickSeries = new LinkedList<>();
+    Candle[] slots;
+    /**
+     * Slot of the oldest candle.
+     */
+    @NonFinal
+    int head;
+    @NonFinal
+    int size;
+
+    public CandleSeries(int seriesSize, String symbol) {
+        if (seriesSize <= 0) {
+            throw new IllegalArgumentException("Series size must be strictly positive");
+        }
+        this.seriesSize = seriesSize;
+        this.symbol = symbol;
+        this.slots = new Candle[seriesSize];
+    }
+
+    @JsonCreator
+    public CandleSeries(@JsonProperty("seriesSize") int seriesSize, @JsonProperty("symbol") String symbol,
+                        @JsonProperty("candlestickSeries") List<Candlestick> candlestickSeries) {
+        this(seriesSize, symbol);
+        if (candlestickSeries != null) {
+            candlestickSeries.forEach(this::addCandleToSeries);
+        }
+    }
 
+    /**
+     * Append candle, or replace the last one if it has the same open time (new version of forming candle).
+     */
     public void addCandleToSeries(Candle candle) {
-        Candle lastCandle = candlestickSeries.peekLast();
-        if (lastCandle != null && lastCandle.getOpenTime().equals(candle.getOpenTime())) {
-            candlestickSeries.remove(lastCandle); // remove previous version of this event.
+        if (size > 0 && slots[slot(size - 1)].getOpenTime().equals(candle.getOpenTime())) {
+            slots[slot(size - 1)] = candle;
+        } else if (size < seriesSize) {
+            slots[slot(size++)] = candle;
+        } else {
+            slots[head] = candle;
+            head = (head + 1) % seriesSize;
         }
-        candlestickSeries.addLast(candle);
+    }
 
-        if (candlestickSeries.size() > seriesSize) {
-            candlestickSeries.removeFirst();
+    /**
+     * @param index position from the oldest candle, 0 - the oldest.
+     */
+    public Candle get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of series of %d candles", index, size));
         }
+        return slots[slot(index)];
     }
 
     public Candle getFirst() {
-        return candlestickSeries.getFirst();
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return get(0);
+    }
+
+    @JsonIgnore
+    public Candle getLast() {
+        return get(size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * View of candles from the oldest, backed by series without copying.
+     */
+    @JsonProperty("candlestickSeries")
+    @ToString.Include
+    public List<Candle> getCandlestickSeries() {
+        return new AbstractList<>() {
+            @Override
+            public Candle get(int index) {
+                return CandleSeries.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int slot(int index) {
+        return (head + index) % seriesSize;
     }
 }
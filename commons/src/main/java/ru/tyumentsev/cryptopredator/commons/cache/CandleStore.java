@@ -0,0 +1,285 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Closed candles of (symbol, interval) kept off-heap in memory-mapped files, so history survives restarts
+ * and only bars missed since the last write have to be loaded from exchange.
+ * <p>
+ * Every (symbol, interval) has its own file {@code <directory>/<interval>/<symbol>.candles}: header with
+ * {@link #MAGIC}, {@link #VERSION}, capacity and sequence of appended candles, followed by columns of capacity
+ * slots each (open time, close time, open, high, low, close, volume, quote volume, trades), used as ring.
+ * Sequence is written after columns, so candle which wasn't written completely is never read.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
+@Slf4j
+@SuppressWarnings("unused")
+public class CandleStore implements Closeable {
+
+    public static final int MAGIC = 0x43444C53;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final String FILE_SUFFIX = ".candles";
+
+    private static final int CAPACITY_OFFSET = 2 * Integer.BYTES;
+    private static final int SEQUENCE_OFFSET = 4 * Integer.BYTES;
+
+    private static final int OPEN_TIME = 0, CLOSE_TIME = 1, OPEN = 2, HIGH = 3, LOW = 4, CLOSE = 5, VOLUME = 6,
+            QUOTE_VOLUME = 7, TRADES = 8, COLUMNS = 9;
+
+    Path directory;
+    int capacity;
+    Map<CandlestickInterval, SymbolMap<CandleFile>> files = new EnumMap<>(CandlestickInterval.class);
+
+    public CandleStore(final Path directory) {
+        this(directory, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity quantity of the latest candles kept per (symbol, interval) in new files,
+     *                 existing files keep capacity they were created with.
+     */
+    public CandleStore(final Path directory, final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be strictly positive");
+        }
+        this.directory = directory;
+        this.capacity = capacity;
+        for (CandlestickInterval interval : CandlestickInterval.values()) {
+            files.put(interval, new SymbolMap<>());
+        }
+    }
+
+    /**
+     * Append closed candle. Candles not newer than the last stored one are ignored,
+     * candle after gap replaces stored candles, so stored candles are always contiguous.
+     * @return false if candle was ignored.
+     */
+    public boolean append(final String symbol, final CandlestickInterval interval, final Candle candle) {
+        return file(symbol, interval).append(candle, duration(interval));
+    }
+
+    /**
+     * Append closed candles in order of time.
+     * @return quantity of appended candles.
+     */
+    public int appendAll(final String symbol, final CandlestickInterval interval, final List<? extends Candle> candles) {
+        CandleFile file = file(symbol, interval);
+        long duration = duration(interval);
+        int appended = 0;
+        synchronized (file) {
+            for (Candle candle : candles) {
+                if (file.append(candle, duration)) {
+                    appended++;
+                }
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Replace stored candles of (symbol, interval) by given closed candles.
+     */
+    public void replace(final String symbol, final CandlestickInterval interval, final List<? extends Candle> candles) {
+        CandleFile file = file(symbol, interval);
+        synchronized (file) {
+            file.clear();
+            appendAll(symbol, interval, candles);
+        }
+    }
+
+    /**
+     * @return up to limit latest stored candles, the oldest first.
+     */
+    public List<Candlestick> read(final String symbol, final CandlestickInterval interval, final int limit) {
+        CandleFile file = existingFile(symbol, interval);
+        return file == null ? Collections.emptyList() : file.read(limit);
+    }
+
+    /**
+     * @return open time of the latest stored candle or null if there are no candles.
+     */
+    public Long lastOpenTime(final String symbol, final CandlestickInterval interval) {
+        CandleFile file = existingFile(symbol, interval);
+        return file == null ? null : file.lastOpenTime();
+    }
+
+    public int size(final String symbol, final CandlestickInterval interval) {
+        CandleFile file = existingFile(symbol, interval);
+        return file == null ? 0 : file.size();
+    }
+
+    /**
+     * Flush written candles to disk.
+     */
+    @Override
+    public void close() {
+        files.values().forEach(symbolFiles -> symbolFiles.values().forEach(CandleFile::force));
+    }
+
+    private CandleFile existingFile(final String symbol, final CandlestickInterval interval) {
+        CandleFile file = files.get(interval).get(symbol);
+        if (file == null && Files.exists(pathOf(symbol, interval))) {
+            file = file(symbol, interval);
+        }
+        return file;
+    }
+
+    private CandleFile file(final String symbol, final CandlestickInterval interval) {
+        return files.get(interval).computeIfAbsent(symbol, key -> open(pathOf(key, interval)));
+    }
+
+    private Path pathOf(final String symbol, final CandlestickInterval interval) {
+        return directory.resolve(interval.getIntervalId()).resolve(symbol + FILE_SUFFIX);
+    }
+
+    private CandleFile open(final Path path) {
+        try {
+            Files.createDirectories(path.getParent());
+            boolean created = !Files.exists(path) || Files.size(path) < HEADER_SIZE;
+            int fileCapacity = created ? capacity : readCapacity(path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) COLUMNS * fileCapacity * Long.BYTES);
+                if (created) {
+                    buffer.putInt(0, MAGIC);
+                    buffer.putInt(Integer.BYTES, VERSION);
+                    buffer.putInt(CAPACITY_OFFSET, fileCapacity);
+                    buffer.putLong(SEQUENCE_OFFSET, 0L);
+                } else if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+                    throw new IllegalStateException(String.format("%s is not a candle store file of version %d", path, VERSION));
+                }
+                return new CandleFile(buffer, fileCapacity);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int readCapacity(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).getInt(CAPACITY_OFFSET);
+        }
+    }
+
+    private static long duration(final CandlestickInterval interval) {
+        return CandlestickToBaseBarMapper.duration(interval).toMillis();
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private static class CandleFile {
+        MappedByteBuffer buffer;
+        int capacity;
+
+        CandleFile(final MappedByteBuffer buffer, final int capacity) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+        }
+
+        synchronized boolean append(final Candle candle, final long duration) {
+            long sequence = sequence();
+            if (sequence > 0) {
+                long lastOpenTime = getLong(OPEN_TIME, sequence - 1);
+                if (candle.getOpenTime() <= lastOpenTime) {
+                    return false;
+                }
+                if (candle.getOpenTime() != lastOpenTime + duration) {
+                    sequence = 0;
+                }
+            }
+            putLong(OPEN_TIME, sequence, candle.getOpenTime());
+            putLong(CLOSE_TIME, sequence, candle.getCloseTime());
+            putDouble(OPEN, sequence, candle.getOpen());
+            putDouble(HIGH, sequence, candle.getHigh());
+            putDouble(LOW, sequence, candle.getLow());
+            putDouble(CLOSE, sequence, candle.getClose());
+            putDouble(VOLUME, sequence, candle.getVolume());
+            putDouble(QUOTE_VOLUME, sequence, candle.getQuoteAssetVolume());
+            putLong(TRADES, sequence, candle.getNumberOfTrades() == null ? 0 : candle.getNumberOfTrades());
+            buffer.putLong(SEQUENCE_OFFSET, sequence + 1);
+            return true;
+        }
+
+        synchronized List<Candlestick> read(final int limit) {
+            long sequence = sequence();
+            int count = (int) Math.min(Math.min(sequence, capacity), limit);
+            List<Candlestick> candles = new ArrayList<>(count);
+            for (long i = sequence - count; i < sequence; i++) {
+                Candlestick candlestick = new Candlestick();
+                candlestick.setOpenTime(getLong(OPEN_TIME, i));
+                candlestick.setCloseTime(getLong(CLOSE_TIME, i));
+                candlestick.setOpen(getDecimal(OPEN, i));
+                candlestick.setHigh(getDecimal(HIGH, i));
+                candlestick.setLow(getDecimal(LOW, i));
+                candlestick.setClose(getDecimal(CLOSE, i));
+                candlestick.setVolume(getDecimal(VOLUME, i));
+                candlestick.setQuoteAssetVolume(getDecimal(QUOTE_VOLUME, i));
+                candlestick.setNumberOfTrades(getLong(TRADES, i));
+                candles.add(candlestick);
+            }
+            return candles;
+        }
+
+        synchronized Long lastOpenTime() {
+            long sequence = sequence();
+            return sequence == 0 ? null : getLong(OPEN_TIME, sequence - 1);
+        }
+
+        synchronized int size() {
+            return (int) Math.min(sequence(), capacity);
+        }
+
+        synchronized void clear() {
+            buffer.putLong(SEQUENCE_OFFSET, 0L);
+        }
+
+        synchronized void force() {
+            buffer.force();
+        }
+
+        private long sequence() {
+            return buffer.getLong(SEQUENCE_OFFSET);
+        }
+
+        private int offset(final int column, final long sequence) {
+            return HEADER_SIZE + (column * capacity + (int) (sequence % capacity)) * Long.BYTES;
+        }
+
+        private long getLong(final int column, final long sequence) {
+            return buffer.getLong(offset(column, sequence));
+        }
+
+        private String getDecimal(final int column, final long sequence) {
+            return BigDecimal.valueOf(buffer.getDouble(offset(column, sequence))).toPlainString();
+        }
+
+        private void putLong(final int column, final long sequence, final long value) {
+            buffer.putLong(offset(column, sequence), value);
+        }
+
+        private void putDouble(final int column, final long sequence, final String value) {
+            buffer.putDouble(offset(column, sequence), value == null ? 0D : Double.parseDouble(value));
+        }
+    }
+}
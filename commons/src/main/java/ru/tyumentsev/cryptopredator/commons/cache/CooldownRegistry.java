@@ -0,0 +1,65 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.function.Consumer;
+
+/**
+ * Symbols cooling down till their deadlines, e.g. signals of pair are ignored for some time after pair was sold.
+ * Check of cooldown is a lock-free read of deadline compared with coarse clock of {@link TimingWheel},
+ * deadlines are removed by the wheel when they pass.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CooldownRegistry {
+
+    TimingWheel wheel;
+    SymbolMap<Long> deadlines = new SymbolMap<>();
+    Consumer<String> onExpired;
+
+    /**
+     * @param onExpired called by ticker thread of wheel with symbol which cooldown expired.
+     */
+    public CooldownRegistry(final TimingWheel wheel, final Consumer<String> onExpired) {
+        this.wheel = wheel;
+        this.onExpired = onExpired;
+    }
+
+    /**
+     * Start cooldown of symbol, deadline of running cooldown is replaced.
+     * @param deadlineMillis end of cooldown in epoch millis.
+     */
+    public void start(final String symbol, final long deadlineMillis) {
+        Long deadline = deadlineMillis;
+        deadlines.put(symbol, deadline);
+        wheel.schedule(deadlineMillis, () -> expire(symbol, deadline));
+    }
+
+    public boolean coolingDown(final int symbolId) {
+        Long deadline = deadlines.get(symbolId);
+        return deadline != null && deadline > wheel.currentTimeMillis();
+    }
+
+    public boolean coolingDown(final String symbol) {
+        Long deadline = deadlines.get(symbol);
+        return deadline != null && deadline > wheel.currentTimeMillis();
+    }
+
+    /**
+     * Stop cooldown of symbol, expiration callback isn't called.
+     */
+    public void cancel(final String symbol) {
+        deadlines.remove(symbol);
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    private void expire(final String symbol, final Long deadline) {
+        // cooldown could be prolonged meanwhile, then it's expired by its own timeout.
+        if (deadlines.remove(symbol, deadline)) {
+            onExpired.accept(symbol);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Arrays;
+
+/**
+ * Binary max-heap of symbol ids ordered by int weight, position of every id in heap is indexed,
+ * so weight of id is changed or id is removed in O(log n) without search. Id with the greatest weight
+ * is read in O(1) without locking. Of ids with equal weights, the lowest id is on top.
+ * <p>
+ * Changes are serialized on the heap.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class IndexedMaxHeap {
+
+    public static final int EMPTY = -1;
+
+    /**
+     * Ids in order of heap.
+     */
+    int[] heap = new int[16];
+    /**
+     * Position in heap and weight by id, position is -1 for absent id.
+     */
+    int[] positions = new int[16];
+    int[] weights = new int[16];
+    int size;
+    volatile int top = EMPTY;
+
+    public IndexedMaxHeap() {
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Add id or change its weight.
+     */
+    public synchronized void put(final int id, final int weight) {
+        if (id < 0) {
+            throw new IllegalArgumentException(String.format("Id must not be negative: %s", id));
+        }
+        ensureCapacity(id);
+        int position = positions[id];
+        if (position < 0) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            weights[id] = weight;
+            place(id, size++);
+            siftUp(size - 1);
+        } else {
+            int previous = weights[id];
+            weights[id] = weight;
+            if (weight > previous) {
+                siftUp(position);
+            } else {
+                siftDown(position);
+            }
+        }
+        top = heap[0];
+    }
+
+    /**
+     * Change weight of id kept in heap.
+     * @return false if there is no such id, it's not added then.
+     */
+    public synchronized boolean update(final int id, final int weight) {
+        if (!contains(id)) {
+            return false;
+        }
+        put(id, weight);
+        return true;
+    }
+
+    /**
+     * @return false if there was no such id.
+     */
+    public synchronized boolean remove(final int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        int position = positions[id];
+        positions[id] = -1;
+        size--;
+        if (position < size) {
+            int moved = heap[size];
+            place(moved, position);
+            siftUp(position);
+            siftDown(positions[moved]);
+        }
+        top = size > 0 ? heap[0] : EMPTY;
+        return true;
+    }
+
+    /**
+     * @return id with the greatest weight or {@link #EMPTY} if heap is empty.
+     */
+    public int peek() {
+        return top;
+    }
+
+    public synchronized boolean contains(final int id) {
+        return id >= 0 && id < positions.length && positions[id] >= 0;
+    }
+
+    /**
+     * @return weight of id or 0 if there is no such id.
+     */
+    public synchronized int weightOf(final int id) {
+        return contains(id) ? weights[id] : 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+        top = EMPTY;
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!above(id, heap[parent])) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(id, position);
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && above(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!above(heap[child], id)) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(id, position);
+    }
+
+    private boolean above(final int id, final int other) {
+        return weights[id] > weights[other] || weights[id] == weights[other] && id < other;
+    }
+
+    private void place(final int id, final int position) {
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    private void ensureCapacity(final int id) {
+        if (id >= positions.length) {
+            int length = Math.max(id + 1, positions.length * 2);
+            int previousLength = positions.length;
+            positions = Arrays.copyOf(positions, length);
+            Arrays.fill(positions, previousLength, length, -1);
+            weights = Arrays.copyOf(weights, length);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import ru.tyumentsev.cryptopredator.commons.domain.MonitoredPosition;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Pairs monitored before opening of position. Monitoring expires by timeout of {@link TimingWheel},
+ * other conditions of leaving monitoring are checked once per closed bar, so check of pair on every event
+ * is a read of map. Pairs are ranked by weights in {@link IndexedMaxHeap}.
+ * <p>
+ * Pairs are added and removed under lock of this object, reads are lock-free.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MonitoredPositions {
+
+    TimingWheel wheel;
+    SymbolMap<Entry> entries = new SymbolMap<>();
+    IndexedMaxHeap weights = new IndexedMaxHeap();
+
+    public MonitoredPositions(final TimingWheel wheel) {
+        this.wheel = wheel;
+    }
+
+    /**
+     * Start monitoring of pair if it's not monitored yet.
+     * @param expiration period of monitoring, pair is removed when it passes.
+     * @return false if pair is already monitored.
+     */
+    public synchronized boolean add(final String symbol, final float price, final Duration expiration) {
+        int symbolId = entries.registry().register(symbol);
+        if (entries.containsKey(symbolId)) {
+            return false;
+        }
+        MonitoredPosition position = new MonitoredPosition(symbol, price, ZonedDateTime.now());
+        Entry entry = new Entry(position);
+        entries.put(symbolId, entry);
+        weights.put(symbolId, position.getWeight());
+        entry.timeout = wheel.schedule(position.getBeginMonitoringTime().toInstant().toEpochMilli() + expiration.toMillis(),
+                () -> remove(symbolId, entry));
+        return true;
+    }
+
+    public boolean contains(final int symbolId) {
+        return entries.containsKey(symbolId);
+    }
+
+    public MonitoredPosition get(final int symbolId) {
+        Entry entry = entries.get(symbolId);
+        return entry != null ? entry.position : null;
+    }
+
+    public MonitoredPosition get(final String symbol) {
+        Entry entry = entries.get(symbol);
+        return entry != null ? entry.position : null;
+    }
+
+    /**
+     * Check pair once per closed bar, pair is removed from monitoring if check passes.
+     * @param closedBarOpenTime open time of the last closed bar.
+     * @param leaveMonitoring   condition of leaving monitoring, called only when closed bar is not checked yet.
+     * @return true if pair stays on monitoring.
+     */
+    public boolean checkOnBarClose(final int symbolId, final long closedBarOpenTime, final BooleanSupplier leaveMonitoring) {
+        Entry entry = entries.get(symbolId);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.checkedBarOpenTime >= closedBarOpenTime) {
+            return true;
+        }
+        entry.checkedBarOpenTime = closedBarOpenTime;
+        if (leaveMonitoring.getAsBoolean()) {
+            remove(symbolId, entry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Set weight of monitored pair, pairs not monitored are ignored.
+     */
+    public void setWeight(final int symbolId, final int weight) {
+        Entry entry = entries.get(symbolId);
+        if (entry != null) {
+            entry.position.setWeight(weight);
+            weights.update(symbolId, weight);
+        }
+    }
+
+    /**
+     * @return true if pair has the greatest weight of monitored pairs.
+     */
+    public boolean isHeaviest(final int symbolId) {
+        int heaviest = weights.peek();
+        return heaviest != IndexedMaxHeap.EMPTY && heaviest == symbolId;
+    }
+
+    public synchronized boolean remove(final int symbolId) {
+        Entry entry = entries.remove(symbolId);
+        if (entry == null) {
+            return false;
+        }
+        entry.timeout.cancel();
+        weights.remove(symbolId);
+        return true;
+    }
+
+    public boolean remove(final String symbol) {
+        return remove(entries.registry().idOf(symbol));
+    }
+
+    /**
+     * Monitored positions, iteration is weakly consistent.
+     */
+    public Collection<MonitoredPosition> values() {
+        return entries.values().stream().map(entry -> entry.position).toList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove pair if it's still monitored by the same entry, e.g. not re-added after expiration.
+     */
+    private synchronized void remove(final int symbolId, final Entry entry) {
+        if (entries.get(symbolId) == entry) {
+            remove(symbolId);
+        }
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Entry {
+        final MonitoredPosition position;
+        TimingWheel.Timeout timeout;
+        volatile long checkedBarOpenTime = Long.MIN_VALUE;
+
+        Entry(final MonitoredPosition position) {
+            this.position = position;
+        }
+    }
+}
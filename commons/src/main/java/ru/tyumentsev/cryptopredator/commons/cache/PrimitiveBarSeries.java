@@ -0,0 +1,454 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.num.DoubleNum;
+import org.ta4j.core.num.Num;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Bar series which keeps bars in primitive ring buffers instead of {@link org.ta4j.core.BaseBar} objects.
+ * Bars are exposed to ta4j as read-only copies taken at the moment of request, so bar never changes
+ * under its holder when series is updated or bar is removed from series. All bars have the same time period.
+ * Hot paths should read values by index ({@link #getClose(int)} etc.), which doesn't copy.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@SuppressWarnings("unused")
+public class PrimitiveBarSeries implements BarSeries {
+
+    private static final ZoneId ZONE_ID = ZoneId.systemDefault();
+
+    final String name;
+    final Duration timePeriod;
+    final long timePeriodMillis;
+    int maximumBarCount;
+
+    double[] open;
+    double[] high;
+    double[] low;
+    double[] close;
+    double[] volume;
+    double[] amount;
+    long[] trades;
+    long[] endTime;
+
+    /**
+     * Quantity of bars ever added to series, index of the next bar.
+     */
+    int addedBarsCount;
+    int removedBarsCount;
+    /**
+     * Incremented on every change of bars, snapshot is copied again only if version changed.
+     */
+    volatile long version;
+    BarSeriesSnapshot snapshot;
+
+    public PrimitiveBarSeries(final String name, final Duration timePeriod, final int maximumBarCount) {
+        if (maximumBarCount <= 0) {
+            throw new IllegalArgumentException("Maximum bar count must be strictly positive");
+        }
+        this.name = name;
+        this.timePeriod = timePeriod;
+        this.timePeriodMillis = timePeriod.toMillis();
+        allocate(maximumBarCount);
+    }
+
+    private void allocate(final int capacity) {
+        maximumBarCount = capacity;
+        open = new double[capacity];
+        high = new double[capacity];
+        low = new double[capacity];
+        close = new double[capacity];
+        volume = new double[capacity];
+        amount = new double[capacity];
+        trades = new long[capacity];
+        endTime = new long[capacity];
+    }
+
+    private int slot(final int index) {
+        return index % maximumBarCount;
+    }
+
+    /**
+     * Add bar or replace last one.
+     * @param endTime end time of bar in epoch milliseconds.
+     */
+    public synchronized void addBar(final long endTime, final double open, final double high, final double low, final double close,
+                                    final double volume, final double amount, final long trades, final boolean replace) {
+        if (!replace && addedBarsCount > 0 && endTime <= this.endTime[slot(addedBarsCount - 1)]) {
+            throw new IllegalArgumentException(String.format("Cannot add a bar with end time:%s that is less than or equal to series end time: %s",
+                    Instant.ofEpochMilli(endTime), Instant.ofEpochMilli(this.endTime[slot(addedBarsCount - 1)])));
+        }
+        if (replace && addedBarsCount == 0) {
+            throw new IllegalArgumentException("Cannot replace last bar of empty series");
+        }
+        int slot = slot(replace ? addedBarsCount - 1 : addedBarsCount);
+        this.endTime[slot] = endTime;
+        this.open[slot] = open;
+        this.high[slot] = high;
+        this.low[slot] = low;
+        this.close[slot] = close;
+        this.volume[slot] = volume;
+        this.amount[slot] = amount;
+        this.trades[slot] = trades;
+        if (!replace) {
+            addedBarsCount++;
+            if (addedBarsCount - removedBarsCount > maximumBarCount) {
+                removedBarsCount++;
+            }
+        }
+        version++;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Immutable copy of bars, the same copy is returned until series is changed.
+     */
+    public synchronized BarSeriesSnapshot snapshot() {
+        if (snapshot == null || snapshot.version() != version) {
+            List<BarSeriesSnapshot.Bar> bars = new ArrayList<>(getBarCount());
+            for (int index = removedBarsCount; index < addedBarsCount; index++) {
+                int slot = slot(index);
+                bars.add(new BarSeriesSnapshot.Bar(endTime[slot] + 1 - timePeriodMillis, endTime[slot], open[slot], high[slot],
+                        low[slot], close[slot], volume[slot], amount[slot], trades[slot]));
+            }
+            snapshot = new BarSeriesSnapshot(name, timePeriod, version, bars);
+        }
+        return snapshot;
+    }
+
+    public double getOpen(final int index) {
+        return open[slot(checkedIndex(index))];
+    }
+
+    public double getHigh(final int index) {
+        return high[slot(checkedIndex(index))];
+    }
+
+    public double getLow(final int index) {
+        return low[slot(checkedIndex(index))];
+    }
+
+    public double getClose(final int index) {
+        return close[slot(checkedIndex(index))];
+    }
+
+    public double getVolume(final int index) {
+        return volume[slot(checkedIndex(index))];
+    }
+
+    /**
+     * @return end time of bar in epoch milliseconds.
+     */
+    public long getEndTimeMillis(final int index) {
+        return endTime[slot(checkedIndex(index))];
+    }
+
+    /**
+     * Same rules as in {@link org.ta4j.core.BaseBarSeries}: index of removed bar points to the first bar.
+     */
+    private int checkedIndex(final int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException(String.format("Unable to get bar #%d from series %s", index, name));
+        }
+        if (addedBarsCount == 0 || index > getEndIndex()) {
+            throw new IndexOutOfBoundsException(String.format("Unable to get bar #%d from series %s, end index is %d", index, name, getEndIndex()));
+        }
+        return Math.max(index, removedBarsCount);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return copy of bar.
+     */
+    @Override
+    public synchronized Bar getBar(final int index) {
+        return copyOf(slot(checkedIndex(index)));
+    }
+
+    @Override
+    public int getBarCount() {
+        return addedBarsCount - removedBarsCount;
+    }
+
+    /**
+     * @return copies of all bars, the oldest first.
+     */
+    @Override
+    public synchronized List<Bar> getBarData() {
+        List<Bar> bars = new ArrayList<>(getBarCount());
+        for (int index = removedBarsCount; index < addedBarsCount; index++) {
+            bars.add(copyOf(slot(index)));
+        }
+        return bars;
+    }
+
+    private Bar copyOf(final int slot) {
+        return new PrimitiveBar(timePeriod, endTime[slot], open[slot], high[slot], low[slot], close[slot],
+                volume[slot], amount[slot], trades[slot]);
+    }
+
+    /**
+     * Like in {@link org.ta4j.core.BaseBarSeries}, begin index is not moved when bars are removed.
+     */
+    @Override
+    public int getBeginIndex() {
+        return addedBarsCount == 0 ? -1 : 0;
+    }
+
+    @Override
+    public int getEndIndex() {
+        return addedBarsCount - 1;
+    }
+
+    @Override
+    public int getMaximumBarCount() {
+        return maximumBarCount;
+    }
+
+    /**
+     * Reallocates buffers, last bars which fit new size are kept.
+     */
+    @Override
+    public synchronized void setMaximumBarCount(final int maximumBarCount) {
+        if (maximumBarCount <= 0) {
+            throw new IllegalArgumentException("Maximum bar count must be strictly positive");
+        }
+        version++;
+        if (addedBarsCount == 0) {
+            allocate(maximumBarCount);
+            return;
+        }
+        PrimitiveBarSeries copy = getSubSeries(Math.max(removedBarsCount, addedBarsCount - maximumBarCount), addedBarsCount);
+        int kept = copy.getBarCount();
+        allocate(maximumBarCount);
+        removedBarsCount = addedBarsCount - kept;
+        for (int i = 0; i < kept; i++) {
+            int slot = slot(removedBarsCount + i);
+            endTime[slot] = copy.endTime[i];
+            open[slot] = copy.open[i];
+            high[slot] = copy.high[i];
+            low[slot] = copy.low[i];
+            close[slot] = copy.close[i];
+            volume[slot] = copy.volume[i];
+            amount[slot] = copy.amount[i];
+            trades[slot] = copy.trades[i];
+        }
+    }
+
+    @Override
+    public int getRemovedBarsCount() {
+        return removedBarsCount;
+    }
+
+    @Override
+    public void addBar(final Bar bar, final boolean replace) {
+        addBar(bar.getEndTime().toInstant().toEpochMilli(), doubleOf(bar.getOpenPrice()), doubleOf(bar.getHighPrice()),
+                doubleOf(bar.getLowPrice()), doubleOf(bar.getClosePrice()), doubleOf(bar.getVolume()), doubleOf(bar.getAmount()),
+                bar.getTrades(), replace);
+    }
+
+    @Override
+    public void addBar(final Duration timePeriod, final ZonedDateTime endTime) {
+        checkTimePeriod(timePeriod);
+        addBar(endTime.toInstant().toEpochMilli(), Double.NaN, Double.NaN, Double.NaN, Double.NaN, 0, 0, 0, false);
+    }
+
+    @Override
+    public void addBar(final ZonedDateTime endTime, final Num openPrice, final Num highPrice, final Num lowPrice, final Num closePrice,
+                       final Num volume, final Num amount) {
+        addBar(endTime.toInstant().toEpochMilli(), doubleOf(openPrice), doubleOf(highPrice), doubleOf(lowPrice), doubleOf(closePrice),
+                doubleOf(volume), doubleOf(amount), 0, false);
+    }
+
+    @Override
+    public void addBar(final Duration timePeriod, final ZonedDateTime endTime, final Num openPrice, final Num highPrice, final Num lowPrice,
+                       final Num closePrice, final Num volume) {
+        checkTimePeriod(timePeriod);
+        addBar(endTime, openPrice, highPrice, lowPrice, closePrice, volume, null);
+    }
+
+    @Override
+    public void addBar(final Duration timePeriod, final ZonedDateTime endTime, final Num openPrice, final Num highPrice, final Num lowPrice,
+                       final Num closePrice, final Num volume, final Num amount) {
+        checkTimePeriod(timePeriod);
+        addBar(endTime, openPrice, highPrice, lowPrice, closePrice, volume, amount);
+    }
+
+    @Override
+    public synchronized void addTrade(final Num tradeVolume, final Num tradePrice) {
+        int slot = slot(checkedIndex(getEndIndex()));
+        double price = doubleOf(tradePrice);
+        double tradeVolumeValue = doubleOf(tradeVolume);
+        updatePrice(slot, price);
+        volume[slot] += tradeVolumeValue;
+        amount[slot] += tradeVolumeValue * price;
+        trades[slot]++;
+    }
+
+    @Override
+    public synchronized void addPrice(final Num price) {
+        updatePrice(slot(checkedIndex(getEndIndex())), doubleOf(price));
+    }
+
+    private void updatePrice(final int slot, final double price) {
+        version++;
+        if (Double.isNaN(open[slot])) {
+            open[slot] = price;
+        }
+        close[slot] = price;
+        high[slot] = Double.isNaN(high[slot]) ? price : Math.max(high[slot], price);
+        low[slot] = Double.isNaN(low[slot]) ? price : Math.min(low[slot], price);
+    }
+
+    /**
+     * Copy of bars between indexes.
+     * @param startIndex index of first bar.
+     * @param endIndex index after the last bar (exclusive).
+     */
+    @Override
+    public synchronized PrimitiveBarSeries getSubSeries(final int startIndex, final int endIndex) {
+        if (startIndex < 0) {
+            throw new IllegalArgumentException(String.format("the startIndex: %s must not be negative", startIndex));
+        }
+        if (startIndex >= endIndex) {
+            throw new IllegalArgumentException(String.format("the endIndex: %s must be greater than startIndex: %s", endIndex, startIndex));
+        }
+        int from = Math.max(startIndex, removedBarsCount);
+        int to = Math.min(endIndex, addedBarsCount);
+        PrimitiveBarSeries subSeries = new PrimitiveBarSeries(name, timePeriod, Math.max(to - from, 1));
+        for (int index = from; index < to; index++) {
+            int slot = slot(index);
+            subSeries.addBar(endTime[slot], open[slot], high[slot], low[slot], close[slot], volume[slot], amount[slot], trades[slot], false);
+        }
+        return subSeries;
+    }
+
+    @Override
+    public Num numOf(final Number number) {
+        return DoubleNum.valueOf(number);
+    }
+
+    @Override
+    public Function<Number, Num> function() {
+        return DoubleNum::valueOf;
+    }
+
+    public Num num() {
+        return DoubleNum.valueOf(0);
+    }
+
+    private void checkTimePeriod(final Duration timePeriod) {
+        if (!this.timePeriod.equals(timePeriod)) {
+            throw new IllegalArgumentException(String.format("Series %s contains bars of %s, but got %s", name, this.timePeriod, timePeriod));
+        }
+    }
+
+    private static double doubleOf(final Num num) {
+        return num == null || num.isNaN() ? Double.NaN : num.doubleValue();
+    }
+
+    private static Num numOf(final double value) {
+        return Double.isNaN(value) ? null : DoubleNum.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d bars of %s", name, getBarCount(), timePeriod);
+    }
+
+    /**
+     * Read-only copy of bar as ta4j {@link Bar}, values are converted to {@link Num} on reading.
+     */
+    private record PrimitiveBar(Duration timePeriod, long endTimeMillis, double open, double high, double low, double close,
+                                double volume, double amount, long trades) implements Bar {
+
+        @Override
+        public Num getOpenPrice() {
+            return numOf(open);
+        }
+
+        @Override
+        public Num getLowPrice() {
+            return numOf(low);
+        }
+
+        @Override
+        public Num getHighPrice() {
+            return numOf(high);
+        }
+
+        @Override
+        public Num getClosePrice() {
+            return numOf(close);
+        }
+
+        @Override
+        public Num getVolume() {
+            return numOf(volume);
+        }
+
+        @Override
+        public long getTrades() {
+            return trades;
+        }
+
+        @Override
+        public Num getAmount() {
+            return numOf(amount);
+        }
+
+        @Override
+        public Duration getTimePeriod() {
+            return timePeriod;
+        }
+
+        @Override
+        public ZonedDateTime getBeginTime() {
+            return ZonedDateTime.ofInstant(Instant.ofEpochMilli(endTimeMillis - timePeriod.toMillis()), ZONE_ID);
+        }
+
+        @Override
+        public ZonedDateTime getEndTime() {
+            return ZonedDateTime.ofInstant(Instant.ofEpochMilli(endTimeMillis), ZONE_ID);
+        }
+
+        /**
+         * Copy isn't a part of series anymore, {@link PrimitiveBarSeries#addTrade} should be used instead.
+         */
+        @Override
+        public void addTrade(final Num tradeVolume, final Num tradePrice) {
+            throw new UnsupportedOperationException("Bar of primitive series is read-only copy, trade should be added to series");
+        }
+
+        /**
+         * Copy isn't a part of series anymore, {@link PrimitiveBarSeries#addPrice} should be used instead.
+         */
+        @Override
+        public void addPrice(final Num price) {
+            throw new UnsupportedOperationException("Bar of primitive series is read-only copy, price should be added to series");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{end time: %s, close price: %s, open price: %s, low price: %s, high price: %s, volume: %s}",
+                    Instant.ofEpochMilli(endTimeMillis), close, open, low, high, volume);
+        }
+    }
+}
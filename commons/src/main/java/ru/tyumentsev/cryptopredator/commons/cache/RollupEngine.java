@@ -0,0 +1,343 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+import ru.tyumentsev.cryptopredator.commons.service.MarketInfo;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bars of higher timeframes built from candlestick events of base interval, so checks of higher timeframes
+ * are in-memory reads. Bars are aligned to UTC like bars of exchange (e.g. daily bar starts at midnight UTC).
+ * <p>
+ * Symbol is seeded once with history of base interval. Higher timeframe bars which history doesn't cover
+ * are requested from exchange by {@link #refresh}, which is the only network call of engine and is expected
+ * to be called in background (see {@link ru.tyumentsev.cryptopredator.commons.service.UpperTimeframePrefetcher}).
+ * Reads never wait for it, bars of not refreshed symbol are returned as stale {@link RollupSnapshot}.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RollupEngine {
+
+    MarketInfo marketInfo;
+    CandlestickInterval baseInterval;
+    List<CandlestickInterval> intervals;
+    /**
+     * Quantity of closed bars kept per (symbol, interval).
+     */
+    int historySize;
+    SymbolMap<Map<CandlestickInterval, Rollup>> symbols = new SymbolMap<>();
+
+    public RollupEngine(final MarketInfo marketInfo, final CandlestickInterval baseInterval,
+                        final List<CandlestickInterval> intervals, final int historySize) {
+        this.marketInfo = marketInfo;
+        this.baseInterval = baseInterval;
+        long baseDuration = duration(baseInterval);
+        for (CandlestickInterval interval : intervals) {
+            long intervalDuration = duration(interval);
+            if (intervalDuration <= baseDuration || intervalDuration % baseDuration != 0) {
+                throw new IllegalArgumentException(String.format("%s is not a multiple of base interval %s", interval, baseInterval));
+            }
+        }
+        this.intervals = List.copyOf(intervals);
+        this.historySize = historySize;
+    }
+
+    /**
+     * (Re)create bars of symbol from candles of base interval, the oldest first.
+     * Candles closed before now are committed, the last one is treated as forming bar if it's not closed yet.
+     */
+    public void seed(final String symbol, final List<? extends Candle> baseCandles) {
+        long now = System.currentTimeMillis();
+        Map<CandlestickInterval, Rollup> rollups = new EnumMap<>(CandlestickInterval.class);
+        for (CandlestickInterval interval : intervals) {
+            Rollup rollup = new Rollup(duration(interval), historySize);
+            baseCandles.forEach(candle -> rollup.update(candle, candle.getCloseTime() < now));
+            if (!baseCandles.isEmpty()) {
+                rollup.dropPartial(baseCandles.get(0).getOpenTime());
+            }
+            rollups.put(interval, rollup);
+        }
+        symbols.put(symbol, rollups);
+    }
+
+    /**
+     * Update bars of symbol with event of base interval, events of not seeded symbols are ignored.
+     */
+    public void update(final CandlestickEvent event) {
+        update(symbols.registry().idOf(event.getSymbol()), event);
+    }
+
+    public void update(final int symbolId, final CandlestickEvent event) {
+        Map<CandlestickInterval, Rollup> rollups = symbols.get(symbolId);
+        if (rollups != null) {
+            boolean barFinal = Boolean.TRUE.equals(event.getBarFinal());
+            rollups.values().forEach(rollup -> rollup.update(event, barFinal));
+        }
+    }
+
+    /**
+     * @return up to count latest bars of interval including forming one, the oldest first, like exchange returns them.
+     * Empty list if symbol wasn't seeded.
+     */
+    public List<Candlestick> getCandles(final String symbol, final CandlestickInterval interval, final int count) {
+        Rollup rollup = rollup(symbol, interval);
+        return rollup == null ? Collections.emptyList() : rollup.candles(count);
+    }
+
+    /**
+     * Latest bars of interval with flag of their freshness, never waits for exchange.
+     * Snapshot is stale if symbol wasn't seeded, if history of interval is shorter than count
+     * (it isn't {@link #refresh refreshed} yet) or if the last bar isn't the bar of current period
+     * (no events came since it was closed).
+     */
+    public RollupSnapshot snapshot(final String symbol, final CandlestickInterval interval, final int count) {
+        Rollup rollup = rollup(symbol, interval);
+        if (rollup == null) {
+            return new RollupSnapshot(symbol, interval, Collections.emptyList(), true);
+        }
+        List<Candlestick> candles = rollup.candles(count);
+        boolean stale = candles.size() < count
+                || candles.get(candles.size() - 1).getOpenTime() != rollup.bucket(System.currentTimeMillis());
+        return new RollupSnapshot(symbol, interval, candles, stale);
+    }
+
+    /**
+     * @return true if symbol is seeded, but history of interval is shorter than kept by engine.
+     */
+    public boolean needsHistory(final String symbol, final CandlestickInterval interval) {
+        Rollup rollup = rollup(symbol, interval);
+        return rollup != null && rollup.closedCount() < historySize;
+    }
+
+    /**
+     * Request the oldest bars of interval which history of base interval doesn't cover.
+     * Blocking network call, nothing is requested if history is complete or symbol wasn't seeded.
+     * @return true if bars were requested.
+     */
+    public boolean refresh(final String symbol, final CandlestickInterval interval) {
+        Rollup rollup = rollup(symbol, interval);
+        if (rollup == null || rollup.closedCount() >= historySize) {
+            return false;
+        }
+        rollup.prepend(marketInfo.getCandleSticks(symbol, interval, historySize + 1));
+        return true;
+    }
+
+    public List<CandlestickInterval> getIntervals() {
+        return intervals;
+    }
+
+    public boolean isSeeded(final String symbol) {
+        return symbols.containsKey(symbol);
+    }
+
+    public void remove(final String symbol) {
+        symbols.remove(symbol);
+    }
+
+    public int size() {
+        return symbols.size();
+    }
+
+    public CandlestickInterval getBaseInterval() {
+        return baseInterval;
+    }
+
+    private Rollup rollup(final String symbol, final CandlestickInterval interval) {
+        Map<CandlestickInterval, Rollup> rollups = symbols.get(symbol);
+        return rollups == null ? null : rollups.get(interval);
+    }
+
+    private static long duration(final CandlestickInterval interval) {
+        return CandlestickToBaseBarMapper.duration(interval).toMillis();
+    }
+
+    /**
+     * Bars of one (symbol, interval): closed bars and the forming one, which is aggregate of closed base bars
+     * of its period and of the latest version of forming base bar.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Rollup {
+        final long duration;
+        final int historySize;
+        final Deque<Candlestick> closedBars = new ArrayDeque<>();
+        final Aggregate closed = new Aggregate();
+        final Aggregate forming = new Aggregate();
+        long openTime = Long.MIN_VALUE;
+        /**
+         * Open time of the latest base bar added to closed aggregate.
+         */
+        long closedBaseOpenTime = Long.MIN_VALUE;
+
+        Rollup(final long duration, final int historySize) {
+            this.duration = duration;
+            this.historySize = historySize;
+        }
+
+        long bucket(final long time) {
+            return time - Math.floorMod(time, duration);
+        }
+
+        synchronized int closedCount() {
+            return closedBars.size();
+        }
+
+        synchronized void update(final Candle candle, final boolean barFinal) {
+            long bucket = bucket(candle.getOpenTime());
+            if (bucket < openTime || candle.getOpenTime() <= closedBaseOpenTime
+                    || !forming.isEmpty() && candle.getOpenTime() < forming.openTime) {
+                // outdated event, e.g. buffered while history was loading.
+                return;
+            }
+            if (bucket > openTime) {
+                if (openTime != Long.MIN_VALUE) {
+                    closedBars.addLast(current().toCandlestick(openTime, openTime + duration - 1));
+                    while (closedBars.size() > historySize) {
+                        closedBars.removeFirst();
+                    }
+                }
+                openTime = bucket;
+                closed.clear();
+                forming.clear();
+            }
+            if (!forming.isEmpty() && forming.openTime != candle.getOpenTime()) {
+                // final event of previous base bar was missed, its latest version is taken as closed.
+                closeForming();
+            }
+            forming.set(candle);
+            if (barFinal) {
+                closeForming();
+            }
+        }
+
+        private void closeForming() {
+            closed.add(forming);
+            closedBaseOpenTime = forming.openTime;
+            forming.clear();
+        }
+
+        /**
+         * Drop the oldest closed bar if base history starts in the middle of its period.
+         * Forming bar is expected to be covered by base history.
+         */
+        synchronized void dropPartial(final long firstBaseOpenTime) {
+            if (!closedBars.isEmpty() && closedBars.getFirst().getOpenTime() < firstBaseOpenTime) {
+                closedBars.removeFirst();
+            }
+        }
+
+        /**
+         * Put bars requested from exchange before bars built from base interval.
+         */
+        synchronized void prepend(final List<Candlestick> candles) {
+            long firstOpenTime = closedBars.isEmpty() ? openTime : closedBars.getFirst().getOpenTime();
+            List<Candlestick> older = candles.stream()
+                    .filter(candle -> candle.getOpenTime() < firstOpenTime)
+                    .toList();
+            for (int i = older.size() - 1; i >= 0 && closedBars.size() < historySize; i--) {
+                closedBars.addFirst(older.get(i));
+            }
+        }
+
+        synchronized List<Candlestick> candles(final int count) {
+            List<Candlestick> candles = new ArrayList<>(closedBars);
+            if (openTime != Long.MIN_VALUE) {
+                candles.add(current().toCandlestick(openTime, openTime + duration - 1));
+            }
+            return candles.subList(Math.max(0, candles.size() - count), candles.size());
+        }
+
+        private Aggregate current() {
+            Aggregate current = new Aggregate();
+            current.add(closed);
+            current.add(forming);
+            return current;
+        }
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Aggregate {
+        long openTime;
+        double open;
+        double high;
+        double low;
+        double close;
+        double volume;
+        double quoteVolume;
+        long trades;
+        boolean empty = true;
+
+        boolean isEmpty() {
+            return empty;
+        }
+
+        void set(final Candle candle) {
+            openTime = candle.getOpenTime();
+            open = Double.parseDouble(candle.getOpen());
+            high = Double.parseDouble(candle.getHigh());
+            low = Double.parseDouble(candle.getLow());
+            close = Double.parseDouble(candle.getClose());
+            volume = Double.parseDouble(candle.getVolume());
+            quoteVolume = candle.getQuoteAssetVolume() == null ? 0 : Double.parseDouble(candle.getQuoteAssetVolume());
+            trades = candle.getNumberOfTrades() == null ? 0 : candle.getNumberOfTrades();
+            empty = false;
+        }
+
+        void add(final Aggregate other) {
+            if (other.empty) {
+                return;
+            }
+            if (empty) {
+                openTime = other.openTime;
+                open = other.open;
+                high = other.high;
+                low = other.low;
+                empty = false;
+            } else {
+                high = Math.max(high, other.high);
+                low = Math.min(low, other.low);
+            }
+            close = other.close;
+            volume += other.volume;
+            quoteVolume += other.quoteVolume;
+            trades += other.trades;
+        }
+
+        void clear() {
+            volume = 0;
+            quoteVolume = 0;
+            trades = 0;
+            empty = true;
+        }
+
+        Candlestick toCandlestick(final long openTime, final long closeTime) {
+            Candlestick candlestick = new Candlestick();
+            candlestick.setOpenTime(openTime);
+            candlestick.setCloseTime(closeTime);
+            candlestick.setOpen(decimal(open));
+            candlestick.setHigh(decimal(high));
+            candlestick.setLow(decimal(low));
+            candlestick.setClose(decimal(close));
+            candlestick.setVolume(decimal(volume));
+            candlestick.setQuoteAssetVolume(decimal(quoteVolume));
+            candlestick.setNumberOfTrades(trades);
+            return candlestick;
+        }
+
+        private static String decimal(final double value) {
+            return BigDecimal.valueOf(value).toPlainString();
+        }
+    }
+}
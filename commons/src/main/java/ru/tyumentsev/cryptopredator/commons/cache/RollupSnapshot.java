@@ -0,0 +1,23 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+
+import java.util.List;
+
+/**
+ * Copy of the latest bars of (symbol, interval) taken from {@link RollupEngine}.
+ * @param candles bars from the oldest, the last one is forming.
+ * @param stale   true if bars are incomplete or outdated, e.g. history of interval wasn't requested yet;
+ *                candles are returned as they are and caller decides whether to use them.
+ */
+public record RollupSnapshot(String symbol, CandlestickInterval interval, List<Candlestick> candles, boolean stale) {
+
+    public RollupSnapshot {
+        candles = List.copyOf(candles);
+    }
+
+    public int size() {
+        return candles.size();
+    }
+}
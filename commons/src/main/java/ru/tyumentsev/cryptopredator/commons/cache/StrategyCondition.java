@@ -9,11 +9,11 @@ import lombok.extern.slf4j.Slf4j;
 import ru.tyumentsev.cryptopredator.commons.domain.OpenedPosition;
 import ru.tyumentsev.cryptopredator.commons.domain.SellRecord;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Deque;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("unused")
 @RequiredArgsConstructor
@@ -22,19 +22,26 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public abstract class StrategyCondition {
 
-    Map<String, OpenedPosition> longPositions = new ConcurrentHashMap<>();
-    Map<String, OpenedPosition> shortPositions = new ConcurrentHashMap<>();
-    Map<String, SellRecord> sellJournal = new ConcurrentHashMap<>();
+    SymbolMap<OpenedPosition> longPositions = new SymbolMap<>();
+    SymbolMap<OpenedPosition> shortPositions = new SymbolMap<>();
+    SymbolMap<SellRecord> sellJournal = new SymbolMap<>();
+    /**
+     * Pairs which signals are ignored after selling, records of pairs are removed from journal when cooldown expires.
+     */
+    CooldownRegistry workedOutSignals = new CooldownRegistry(TimingWheel.shared(), pair -> {
+        log.debug("Period of signal ignoring for {} expired, remove pair from sell journal.", pair);
+        sellJournal.remove(pair);
+    });
 
     public void addOpenedPosition(String pair, float price, float qty, float priceDecreaseFactor,
                                   boolean rocketCandidate, String strategy) {
-        if (longPositions.containsKey(pair)) {
-            OpenedPosition position = longPositions.get(pair);
+        OpenedPosition position = longPositions.get(pair);
+        if (position != null) {
             var newQty = position.qty() + qty;
             position.avgPrice((position.avgPrice() * position.qty() + price * qty) / newQty)
                     .qty(newQty);
         } else {
-            var position = new OpenedPosition();
+            position = new OpenedPosition();
             position.symbol(pair)
                     .maxPrice(price)
                     .avgPrice(price)
@@ -68,10 +75,30 @@ public abstract class StrategyCondition {
 
 
     public void addSellRecordToJournal(final String pair, final String strategy) {
-        sellJournal.put(pair, new SellRecord(pair, LocalDateTime.now(), strategy));
+        addSellRecordToJournal(new SellRecord(pair, LocalDateTime.now(), strategy));
     }
 
-    protected abstract boolean thisSignalWorkedOutBefore(final String pair);
+    /**
+     * Put record into journal, signals of pair are ignored for {@link #workedOutSignalsIgnoringPeriod()} since selling.
+     */
+    public void addSellRecordToJournal(final SellRecord sellRecord) {
+        sellJournal.put(sellRecord.symbol(), sellRecord);
+        long sellTime = sellRecord.sellTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        workedOutSignals.start(sellRecord.symbol(), sellTime + workedOutSignalsIgnoringPeriod().toMillis());
+    }
+
+    public boolean thisSignalWorkedOutBefore(final int symbolId) {
+        return workedOutSignals.coolingDown(symbolId);
+    }
+
+    public boolean thisSignalWorkedOutBefore(final String pair) {
+        return workedOutSignals.coolingDown(pair);
+    }
+
+    /**
+     * Period of ignoring signals of pair after it was sold.
+     */
+    protected abstract Duration workedOutSignalsIgnoringPeriod();
 
     public void removeCandlestickEventsCacheForPair(final String ticker, Map<String, Deque<CandlestickEvent>> cachedCandlestickEvents) {
         cachedCandlestickEvents.get(ticker).clear();
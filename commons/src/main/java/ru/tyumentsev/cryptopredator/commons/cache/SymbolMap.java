@@ -0,0 +1,273 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Map of symbol to value, which keeps values in array indexed by id of {@link SymbolRegistry}.
+ * Handler of event resolves id of symbol once and reads state by id without hashing,
+ * methods with String key are left for the rest of code and for serialization.
+ * Reads are lock-free, writes are serialized on the map. Null values are not allowed.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SymbolMap<V> extends AbstractMap<String, V> {
+
+    SymbolRegistry registry;
+    @NonFinal
+    volatile AtomicReferenceArray<V> values;
+    @NonFinal
+    volatile int size;
+
+    public SymbolMap() {
+        this(SymbolRegistry.shared());
+    }
+
+    public SymbolMap(final SymbolRegistry registry) {
+        this.registry = registry;
+        this.values = new AtomicReferenceArray<>(Math.max(16, registry.size()));
+    }
+
+    public SymbolRegistry registry() {
+        return registry;
+    }
+
+    public V get(final int id) {
+        AtomicReferenceArray<V> current = values;
+        return id >= 0 && id < current.length() ? current.get(id) : null;
+    }
+
+    public V getOrDefault(final int id, final V defaultValue) {
+        V value = get(id);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean containsKey(final int id) {
+        return get(id) != null;
+    }
+
+    public synchronized V put(final int id, final V value) {
+        Objects.requireNonNull(value);
+        ensureCapacity(id);
+        V previous = values.getAndSet(id, value);
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    public synchronized V remove(final int id) {
+        AtomicReferenceArray<V> current = values;
+        if (id < 0 || id >= current.length()) {
+            return null;
+        }
+        V previous = current.getAndSet(id, null);
+        if (previous != null) {
+            size--;
+        }
+        return previous;
+    }
+
+    public synchronized V computeIfAbsent(final int id, final Function<? super String, ? extends V> mappingFunction) {
+        V value = get(id);
+        if (value == null) {
+            value = mappingFunction.apply(registry.symbolOf(id));
+            if (value != null) {
+                put(id, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public V get(final Object key) {
+        return key instanceof String symbol ? get(registry.idOf(symbol)) : null;
+    }
+
+    @Override
+    public V getOrDefault(final Object key, final V defaultValue) {
+        V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(final String key, final V value) {
+        return put(registry.register(key), value);
+    }
+
+    @Override
+    public V remove(final Object key) {
+        return key instanceof String symbol ? remove(registry.idOf(symbol)) : null;
+    }
+
+    @Override
+    public synchronized boolean remove(final Object key, final Object value) {
+        if (!(key instanceof String symbol) || value == null || !value.equals(get(symbol))) {
+            return false;
+        }
+        remove(registry.idOf(symbol));
+        return true;
+    }
+
+    @Override
+    public synchronized V putIfAbsent(final String key, final V value) {
+        V previous = get(key);
+        return previous != null ? previous : put(key, value);
+    }
+
+    @Override
+    public V computeIfAbsent(final String key, final Function<? super String, ? extends V> mappingFunction) {
+        return computeIfAbsent(registry.register(key), mappingFunction);
+    }
+
+    @Override
+    public synchronized V computeIfPresent(final String key, final BiFunction<? super String, ? super V, ? extends V> remappingFunction) {
+        V previous = get(key);
+        if (previous == null) {
+            return null;
+        }
+        return apply(key, remappingFunction.apply(key, previous));
+    }
+
+    @Override
+    public synchronized V compute(final String key, final BiFunction<? super String, ? super V, ? extends V> remappingFunction) {
+        return apply(key, remappingFunction.apply(key, get(key)));
+    }
+
+    @Override
+    public synchronized V merge(final String key, final V value, final BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        V previous = get(key);
+        return apply(key, previous == null ? value : remappingFunction.apply(previous, value));
+    }
+
+    @Override
+    public synchronized boolean replace(final String key, final V oldValue, final V newValue) {
+        V previous = get(key);
+        if (previous == null || !previous.equals(oldValue)) {
+            return false;
+        }
+        put(key, newValue);
+        return true;
+    }
+
+    @Override
+    public synchronized V replace(final String key, final V value) {
+        return get(key) != null ? put(key, value) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void clear() {
+        values = new AtomicReferenceArray<>(values.length());
+        size = 0;
+    }
+
+    /**
+     * Entries in order of ids. Iteration is weakly consistent, like iteration of concurrent maps.
+     */
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return SymbolMap.this.size();
+            }
+        };
+    }
+
+    private V apply(final String key, final V value) {
+        if (value == null) {
+            remove(key);
+        } else {
+            put(key, value);
+        }
+        return value;
+    }
+
+    private void ensureCapacity(final int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException(String.format("Symbol id %d is not valid", id));
+        }
+        AtomicReferenceArray<V> current = values;
+        if (id < current.length()) {
+            return;
+        }
+        AtomicReferenceArray<V> grown = new AtomicReferenceArray<>(Math.max(id + 1, current.length() * 2));
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        values = grown;
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private class EntryIterator implements Iterator<Entry<String, V>> {
+        final AtomicReferenceArray<V> snapshot = values;
+        int nextId = -1;
+        int lastId = -1;
+        V nextValue;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            nextValue = null;
+            while (++nextId < snapshot.length()) {
+                nextValue = snapshot.get(nextId);
+                if (nextValue != null) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextValue != null;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+            if (nextValue == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, V> entry = new SimpleImmutableEntry<>(registry.symbolOf(nextId), nextValue);
+            lastId = nextId;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastId < 0) {
+                throw new IllegalStateException();
+            }
+            SymbolMap.this.remove(lastId);
+            lastId = -1;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns exchange symbols to dense int ids, so state of symbol could be kept in arrays indexed by id.
+ * Ids are never reused and are valid only inside of process, so they shouldn't be stored or sent anywhere.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SymbolRegistry {
+
+    public static final int UNKNOWN = -1;
+
+    private static final SymbolRegistry SHARED = new SymbolRegistry();
+
+    Map<String, Integer> ids = new ConcurrentHashMap<>();
+    @NonFinal
+    volatile String[] symbols = new String[1024];
+    @NonFinal
+    int size;
+
+    /**
+     * Registry of all symbols of process, it's filled when available trade pairs are requested.
+     */
+    public static SymbolRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return id of symbol, new id is assigned to unknown symbol.
+     */
+    public int register(final String symbol) {
+        Integer id = ids.get(symbol);
+        return id != null ? id : registerNew(symbol);
+    }
+
+    public void registerAll(final Collection<String> symbols) {
+        symbols.forEach(this::register);
+    }
+
+    /**
+     * @return id of symbol or {@link #UNKNOWN} if symbol was never registered.
+     */
+    public int idOf(final String symbol) {
+        Integer id = ids.get(symbol);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public String symbolOf(final int id) {
+        String[] current = symbols;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Quantity of registered symbols, all ids are below it.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int registerNew(final String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+        }
+        symbols[size] = symbol;
+        // publish id after symbol, so symbolOf(idOf(symbol)) never returns null.
+        ids.put(symbol, size);
+        return size++;
+    }
+}
@@ -0,0 +1,165 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel: timeouts are put into slots by their deadlines (epoch millis) and expired in bulk
+ * when ticker thread passes their slot, timeouts of later rounds stay in slot. Scheduling takes O(1),
+ * expiration is precise to the tick.
+ * <p>
+ * Wheel keeps time of the last tick, it's coarse clock for checking deadlines without system calls.
+ * Actions of expired timeouts are run by ticker thread, so they must be short.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class TimingWheel {
+
+    private static final TimingWheel SHARED = new TimingWheel(1000, 512);
+
+    long tickMillis;
+    List<Timeout>[] slots;
+    @NonFinal
+    long lastTick;
+    @NonFinal
+    volatile long now = System.currentTimeMillis();
+    @NonFinal
+    volatile ScheduledExecutorService ticker;
+
+    /**
+     * @param tickMillis duration of tick.
+     * @param wheelSize  quantity of slots.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(final long tickMillis, final int wheelSize) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.lastTick = now / tickMillis;
+    }
+
+    /**
+     * Wheel with one second tick shared by all timeouts of process.
+     */
+    public static TimingWheel shared() {
+        return SHARED;
+    }
+
+    /**
+     * Run action by ticker thread when deadline comes, ticker is started by the first scheduled timeout.
+     * Timeout of passed deadline is expired by the next tick.
+     */
+    public synchronized Timeout schedule(final long deadlineMillis, final Runnable action) {
+        if (ticker == null) {
+            start();
+        }
+        Timeout timeout = new Timeout(deadlineMillis, action);
+        // first tick when deadline is passed.
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), lastTick + 1);
+        slots[slot(tick)].add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Coarse current time in epoch millis, updated on every tick. Until ticker is started, it's precise time.
+     */
+    public long currentTimeMillis() {
+        return ticker == null ? System.currentTimeMillis() : now;
+    }
+
+    /**
+     * Expire timeouts of ticks passed since the previous call, called by ticker thread.
+     */
+    public void tick() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long currentTime = System.currentTimeMillis();
+            now = currentTime;
+            long currentTick = currentTime / tickMillis;
+            // every slot is passed once at most, even if ticker was late for more than a round.
+            for (long tick = lastTick + 1; tick <= currentTick && tick <= lastTick + slots.length; tick++) {
+                for (Iterator<Timeout> iterator = slots[slot(tick)].iterator(); iterator.hasNext(); ) {
+                    Timeout timeout = iterator.next();
+                    if (timeout.cancelled || timeout.deadline <= currentTime) {
+                        iterator.remove();
+                        if (!timeout.cancelled) {
+                            expired.add(timeout);
+                        }
+                    }
+                }
+            }
+            lastTick = Math.max(lastTick, currentTick);
+        }
+        for (Timeout timeout : expired) {
+            try {
+                timeout.action.run();
+            } catch (Exception e) {
+                log.error("Action of expired timeout failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Quantity of timeouts waiting in wheel, including cancelled ones not removed yet.
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (List<Timeout> slot : slots) {
+            size += slot.size();
+        }
+        return size;
+    }
+
+    private void start() {
+        // clock wasn't updated while wheel was idle.
+        now = System.currentTimeMillis();
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "timing-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private int slot(final long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    public static final class Timeout {
+        long deadline;
+        Runnable action;
+        @NonFinal
+        volatile boolean cancelled;
+
+        Timeout(final long deadline, final Runnable action) {
+            this.deadline = deadline;
+            this.action = action;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Action isn't run then, timeout is removed from wheel when its slot is passed.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
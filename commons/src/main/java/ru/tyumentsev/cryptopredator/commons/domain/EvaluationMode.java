@@ -0,0 +1,16 @@
+package ru.tyumentsev.cryptopredator.commons.domain;
+
+/**
+ * When strategy evaluates its indicator rules.
+ */
+public enum EvaluationMode {
+    /**
+     * Rules are evaluated on every candlestick event, values of forming bar are provisional.
+     */
+    EVERY_TICK,
+    /**
+     * Rules are evaluated once on final event of bar and verdict is cached per symbol,
+     * events between bar closes run only price threshold checks.
+     */
+    BAR_CLOSE;
+}
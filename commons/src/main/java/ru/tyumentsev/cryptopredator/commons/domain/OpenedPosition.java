@@ -9,7 +9,9 @@ import lombok.experimental.Accessors;
 import lombok.experimental.FieldDefaults;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 @Getter
@@ -44,10 +46,21 @@ public class OpenedPosition implements Serializable {
     @JsonProperty
     volatile Float trendPriceStep; //bigasscandlesbot
     volatile int lastBarSeriesIndex; //bigasscandlesbot
+    /**
+     * Epoch milliseconds of the last price update, 0 if price wasn't updated since position was created or restored.
+     * Written after thread fields, so they are read consistently after reading it.
+     */
     @JsonIgnore
-    volatile LocalDateTime updateStamp; //threads debug
-    @JsonProperty
-    volatile String threadStatus; //threads debug
+    @Setter(AccessLevel.NONE)
+    volatile long updateTime; //threads debug
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    String updateThreadName; //threads debug
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    long updateThreadId; //threads debug
     @JsonProperty
     LocalDateTime lastDealTime;
 
@@ -61,8 +74,29 @@ public class OpenedPosition implements Serializable {
         if (lastPrice > maxPrice) {
             maxPrice(lastPrice);
         }
-        updateStamp(LocalDateTime.now());
-        threadStatus(String.format("[%s] %s:%s", updateStamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), Thread.currentThread().getName(), Thread.currentThread().getId()));
+        // called on every event, so only raw values are kept, they are formatted on reading.
+        Thread thread = Thread.currentThread();
+        updateThreadName = thread.getName();
+        updateThreadId = thread.getId();
+        updateTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return time of the last price update, null if price wasn't updated.
+     */
+    @JsonIgnore
+    public LocalDateTime updateStamp() {
+        long time = updateTime;
+        return time == 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    }
+
+    /**
+     * @return time and thread of the last price update, null if price wasn't updated.
+     */
+    @JsonProperty("threadStatus")
+    public String threadStatus() {
+        LocalDateTime stamp = updateStamp();
+        return stamp == null ? null : String.format("[%s] %s:%s", stamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), updateThreadName, updateThreadId);
     }
 
     public float calculateFutureAvgPrice(int orderVolume, final OrderSide side) {
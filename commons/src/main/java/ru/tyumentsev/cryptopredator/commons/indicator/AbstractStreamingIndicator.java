@@ -0,0 +1,56 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Arrays;
+
+/**
+ * Keeps ring of last committed values of indicator.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED)
+public abstract class AbstractStreamingIndicator implements StreamingIndicator {
+
+    public static final int DEFAULT_HISTORY_SIZE = 32;
+
+    final double[] history;
+    int head = -1;
+    long barCount;
+
+    protected AbstractStreamingIndicator(final int historySize) {
+        history = new double[historySize];
+        Arrays.fill(history, Double.NaN);
+    }
+
+    @Override
+    public double update(final double value) {
+        double result = calculate(value, true);
+        head = (head + 1) % history.length;
+        history[head] = result;
+        barCount++;
+        return result;
+    }
+
+    @Override
+    public double provisional(final double value) {
+        return calculate(value, false);
+    }
+
+    @Override
+    public double getValue(final int barsAgo) {
+        if (barsAgo < 0 || barsAgo >= history.length || barsAgo >= barCount) {
+            return Double.NaN;
+        }
+        return history[Math.floorMod(head - barsAgo, history.length)];
+    }
+
+    @Override
+    public long getBarCount() {
+        return barCount;
+    }
+
+    /**
+     * @param commit if true, internal state must be moved to the given value.
+     */
+    protected abstract double calculate(final double value, final boolean commit);
+}
@@ -0,0 +1,83 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Crossovers of fast and slow indicators on closed bars: indexes of bars of the last up-cross and down-cross
+ * and length of current regime. Fast indicator is above while it's greater or equal to slow one.
+ * Bars are indexed in order they're committed, from 0.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CrossoverTracker {
+
+    public static final long NEVER = -1;
+
+    @Getter
+    long barCount;
+    @Getter
+    boolean fastAbove;
+    @Getter
+    long lastUpCross = NEVER;
+    @Getter
+    long lastDownCross = NEVER;
+    long regimeStart;
+
+    /**
+     * Commit values of closed bar, bars with undefined values are skipped.
+     */
+    public void update(final double fast, final double slow) {
+        if (Double.isNaN(fast) || Double.isNaN(slow)) {
+            return;
+        }
+        boolean above = fast >= slow;
+        if (barCount > 0 && above != fastAbove) {
+            if (above) {
+                lastUpCross = barCount;
+            } else {
+                lastDownCross = barCount;
+            }
+            regimeStart = barCount;
+        }
+        fastAbove = above;
+        barCount++;
+    }
+
+    /**
+     * Quantity of bars fast indicator stays on the same side, including the last bar.
+     */
+    public long regimeLength() {
+        return barCount - regimeStart;
+    }
+
+    /**
+     * @return 0 if the last bar crossed up, {@link Long#MAX_VALUE} if there was no up-cross.
+     */
+    public long barsSinceUpCross() {
+        return lastUpCross == NEVER ? Long.MAX_VALUE : barCount - 1 - lastUpCross;
+    }
+
+    /**
+     * @return 0 if the last bar crossed down, {@link Long#MAX_VALUE} if there was no down-cross.
+     */
+    public long barsSinceDownCross() {
+        return lastDownCross == NEVER ? Long.MAX_VALUE : barCount - 1 - lastDownCross;
+    }
+
+    /**
+     * @param above side of fast indicator.
+     * @return bars ago fast indicator was on the side last time: 0 if it's on the side on the last bar,
+     * {@link Long#MAX_VALUE} if it never was.
+     */
+    public long barsSince(final boolean above) {
+        if (barCount == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (fastAbove == above) {
+            return 0;
+        }
+        long cross = above ? lastDownCross : lastUpCross;
+        return cross == NEVER ? Long.MAX_VALUE : barCount - cross;
+    }
+}
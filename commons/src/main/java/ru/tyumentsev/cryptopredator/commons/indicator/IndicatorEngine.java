@@ -0,0 +1,111 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolMap;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental indicators of all symbols of one candlestick stream.
+ * Indicators are defined once by keys rules read them with, values are kept in {@link IndicatorRegistry},
+ * so indicators of equal specs are computed once for all engines of the same interval.
+ * Indicators of symbols are kept by ids of {@link ru.tyumentsev.cryptopredator.commons.cache.SymbolRegistry},
+ * handlers of events should read them by id.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class IndicatorEngine {
+
+    IndicatorRegistry registry;
+    @Getter
+    CandlestickInterval interval;
+    Map<String, IndicatorSpec> definitions = new LinkedHashMap<>();
+    Map<String, SharedIndicators.Crossover> crossovers = new LinkedHashMap<>();
+    SymbolMap<SymbolIndicators> symbols = new SymbolMap<>();
+
+    public IndicatorEngine(final IndicatorRegistry registry, final CandlestickInterval interval) {
+        this.registry = registry;
+        this.interval = interval;
+    }
+
+    public IndicatorEngine(final CandlestickInterval interval) {
+        this(IndicatorRegistry.shared(), interval);
+    }
+
+    public synchronized IndicatorEngine define(final String key, final IndicatorSpec spec) {
+        if (!symbols.isEmpty()) {
+            throw new IllegalStateException("Indicators must be defined before any symbol is seeded.");
+        }
+        definitions.put(key, spec);
+        return this;
+    }
+
+    /**
+     * Track crossovers of two defined indicators, e.g. of short and long EMA.
+     */
+    public synchronized IndicatorEngine defineCrossover(final String key, final String fastKey, final String slowKey) {
+        if (!symbols.isEmpty()) {
+            throw new IllegalStateException("Indicators must be defined before any symbol is seeded.");
+        }
+        if (!definitions.containsKey(fastKey) || !definitions.containsKey(slowKey)) {
+            throw new IllegalArgumentException(String.format("Indicators '%s' and '%s' must be defined before crossover '%s'.", fastKey, slowKey, key));
+        }
+        crossovers.put(key, new SharedIndicators.Crossover(definitions.get(fastKey), definitions.get(slowKey)));
+        return this;
+    }
+
+    /**
+     * (Re)create indicators of symbol from candles history. Candles closed before now are committed,
+     * the last one is treated as forming bar if it's not closed yet.
+     * Indicators already computed for other engine are reused.
+     */
+    public SymbolIndicators seed(final String symbol, final List<? extends Candle> candles) {
+        SharedIndicators shared = registry.acquire(interval, symbol, this, definitions.values(), crossovers.values(), candles);
+        SymbolIndicators indicators = new SymbolIndicators(symbol, shared, Collections.unmodifiableMap(definitions),
+                Collections.unmodifiableMap(crossovers));
+        symbols.put(symbol, indicators);
+        return indicators;
+    }
+
+    /**
+     * Update indicators of symbol with event, events of not seeded symbols are ignored.
+     */
+    public void update(final CandlestickEvent event) {
+        update(symbols.registry().idOf(event.getSymbol()), event);
+    }
+
+    public void update(final int symbolId, final CandlestickEvent event) {
+        SymbolIndicators indicators = symbols.get(symbolId);
+        if (indicators != null) {
+            indicators.update(event);
+        }
+    }
+
+    /**
+     * @return indicators of symbol or null if symbol wasn't seeded.
+     */
+    public SymbolIndicators get(final int symbolId) {
+        return symbols.get(symbolId);
+    }
+
+    public SymbolIndicators get(final String symbol) {
+        return symbols.get(symbol);
+    }
+
+    public void remove(final String symbol) {
+        if (symbols.remove(symbol) != null) {
+            registry.release(interval, symbol, this);
+        }
+    }
+
+    public int size() {
+        return symbols.size();
+    }
+}
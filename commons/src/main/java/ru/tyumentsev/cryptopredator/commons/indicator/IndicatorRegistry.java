@@ -0,0 +1,73 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indicators keyed by (symbol, interval, {@link IndicatorSpec}), shared by all indicator engines of process.
+ * E.g. EMA7 of close price of the same symbol is computed once for market and opened positions streams
+ * and for every strategy working on the same interval.
+ * <p>
+ * Indicators of (symbol, interval) are kept while at least one consumer uses them.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class IndicatorRegistry {
+
+    private static final IndicatorRegistry SHARED = new IndicatorRegistry();
+
+    Map<CandlestickInterval, Map<String, SharedIndicators>> indicators = new EnumMap<>(CandlestickInterval.class);
+
+    public IndicatorRegistry() {
+        for (CandlestickInterval interval : CandlestickInterval.values()) {
+            indicators.put(interval, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Registry of all indicator engines of process.
+     */
+    public static IndicatorRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Attach consumer to indicators of (symbol, interval). Indicators are (re)created from candles
+     * if nobody else uses them, otherwise only indicators missing yet are added and existing ones are kept.
+     */
+    SharedIndicators acquire(final CandlestickInterval interval, final String symbol, final Object consumer,
+                             final Collection<IndicatorSpec> specs, final Collection<SharedIndicators.Crossover> crossovers,
+                             final List<? extends Candle> candles) {
+        return indicators.get(interval).compute(symbol, (key, existing) -> {
+            SharedIndicators result = existing;
+            if (existing == null || existing.usedOnlyBy(consumer)) {
+                result = new SharedIndicators(symbol, specs, crossovers, candles);
+            } else {
+                existing.define(specs, crossovers, candles);
+            }
+            result.attach(consumer);
+            return result;
+        });
+    }
+
+    /**
+     * Detach consumer, indicators are removed when they have no consumers anymore.
+     */
+    void release(final CandlestickInterval interval, final String symbol, final Object consumer) {
+        indicators.get(interval).computeIfPresent(symbol, (key, existing) -> existing.detach(consumer) ? null : existing);
+    }
+
+    /**
+     * Quantity of symbols which have indicators of interval.
+     */
+    public int size(final CandlestickInterval interval) {
+        return indicators.get(interval).size();
+    }
+}
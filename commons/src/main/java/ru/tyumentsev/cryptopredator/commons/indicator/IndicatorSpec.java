@@ -0,0 +1,59 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import java.util.List;
+
+/**
+ * Type, price source and parameters of indicator. Indicators of equal specs on the same (symbol, interval)
+ * are the same values, so they're computed once in {@link IndicatorRegistry}.
+ */
+public record IndicatorSpec(Type type, PriceSource source, List<Integer> parameters) {
+
+    public IndicatorSpec {
+        parameters = List.copyOf(parameters);
+    }
+
+    public static IndicatorSpec ema(final PriceSource source, final int barsQty) {
+        return new IndicatorSpec(Type.EMA, source, List.of(barsQty));
+    }
+
+    public static IndicatorSpec rsi(final PriceSource source, final int barsQty) {
+        return new IndicatorSpec(Type.RSI, source, List.of(barsQty));
+    }
+
+    public static IndicatorSpec macd(final PriceSource source, final int shortBarsQty, final int longBarsQty) {
+        return new IndicatorSpec(Type.MACD, source, List.of(shortBarsQty, longBarsQty));
+    }
+
+    /**
+     * Highest value of {@code window} bars, last {@code lag} bars are excluded (see {@link StreamingExtremum}).
+     */
+    public static IndicatorSpec highest(final PriceSource source, final int window, final int lag) {
+        return new IndicatorSpec(Type.HIGHEST, source, List.of(window, lag));
+    }
+
+    /**
+     * Lowest value of {@code window} bars, last {@code lag} bars are excluded (see {@link StreamingExtremum}).
+     */
+    public static IndicatorSpec lowest(final PriceSource source, final int window, final int lag) {
+        return new IndicatorSpec(Type.LOWEST, source, List.of(window, lag));
+    }
+
+    StreamingIndicator create() {
+        return switch (type) {
+            case EMA -> new StreamingEMA(parameters.get(0));
+            case RSI -> new StreamingRSI(parameters.get(0));
+            case MACD -> new StreamingMACD(parameters.get(0), parameters.get(1));
+            case HIGHEST -> StreamingExtremum.highest(parameters.get(0), parameters.get(1));
+            case LOWEST -> StreamingExtremum.lowest(parameters.get(0), parameters.get(1));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s(%s)", type, parameters, source);
+    }
+
+    public enum Type {
+        EMA, RSI, MACD, HIGHEST, LOWEST
+    }
+}
@@ -0,0 +1,27 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import com.binance.api.client.domain.Candle;
+
+import java.util.function.Function;
+
+/**
+ * Price of candle indicator is calculated on.
+ */
+public enum PriceSource {
+
+    OPEN(Candle::getOpen),
+    HIGH(Candle::getHigh),
+    LOW(Candle::getLow),
+    CLOSE(Candle::getClose),
+    VOLUME(Candle::getVolume);
+
+    private final Function<Candle, String> extractor;
+
+    PriceSource(final Function<Candle, String> extractor) {
+        this.extractor = extractor;
+    }
+
+    public double of(final Candle candle) {
+        return Double.parseDouble(extractor.apply(candle));
+    }
+}
@@ -0,0 +1,228 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import com.binance.api.client.domain.Candle;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indicators of one (symbol, interval) shared by all consumers. Closed bars are committed into indicators,
+ * forming bar is kept aside and used for provisional values only, provisional value is computed once per event.
+ * Every indicator is kept once per {@link IndicatorSpec}, whichever consumer defined it.
+ * Crossovers of indicators are tracked on commit of closed bars.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class SharedIndicators {
+
+    @Getter
+    final String symbol;
+    final Map<IndicatorSpec, IndicatorState> indicators = new LinkedHashMap<>();
+    final Map<Crossover, CrossoverTracker> crossovers = new LinkedHashMap<>();
+    final Set<Object> consumers = new HashSet<>();
+    @Getter
+    long lastClosedOpenTime = Long.MIN_VALUE;
+    long formingOpenTime = Long.MIN_VALUE;
+    long formingEventTime;
+    boolean hasFormingBar;
+
+    SharedIndicators(final String symbol, final Collection<IndicatorSpec> specs, final Collection<Crossover> crossovers,
+                     final List<? extends Candle> candles) {
+        this.symbol = symbol;
+        specs.forEach(spec -> indicators.putIfAbsent(spec, new IndicatorState(spec)));
+        crossovers.forEach(crossover -> this.crossovers.putIfAbsent(crossover, new CrossoverTracker()));
+        long now = System.currentTimeMillis();
+        candles.forEach(candle -> update(candle, candle.getCloseTime() < now, 0));
+    }
+
+    /**
+     * Update indicators with candle. Candles older than last closed one are ignored, as well as forming candle
+     * not newer than the last one, so the same event passed by several consumers is applied once.
+     * If forming bar was not closed by final event, it's committed when next bar opens.
+     * @param eventTime time of event, 0 if unknown.
+     */
+    synchronized void update(final Candle candle, final boolean closed, final long eventTime) {
+        long openTime = candle.getOpenTime();
+        if (openTime <= lastClosedOpenTime) {
+            return;
+        }
+        if (!closed && hasFormingBar && openTime == formingOpenTime
+                && eventTime > 0 && eventTime <= formingEventTime) {
+            return;
+        }
+        if (hasFormingBar && openTime > formingOpenTime) {
+            commitFormingBar();
+        }
+
+        if (closed) {
+            for (IndicatorState state : indicators.values()) {
+                state.indicator.update(state.spec.source().of(candle));
+            }
+            updateCrossovers();
+            lastClosedOpenTime = openTime;
+            hasFormingBar = false;
+        } else {
+            for (IndicatorState state : indicators.values()) {
+                state.setFormingValue(state.spec.source().of(candle));
+            }
+            formingOpenTime = openTime;
+            formingEventTime = eventTime;
+            hasFormingBar = true;
+        }
+    }
+
+    synchronized double getValue(final IndicatorSpec spec, final int barsAgo) {
+        IndicatorState state = indicators.get(spec);
+        if (state == null) {
+            throw new IllegalArgumentException(String.format("Indicator %s of %s is not defined.", spec, symbol));
+        }
+        if (!hasFormingBar) {
+            return state.indicator.getValue(barsAgo);
+        }
+        return barsAgo == 0 ? state.provisional() : state.indicator.getValue(barsAgo - 1);
+    }
+
+    synchronized double getClosedValue(final IndicatorSpec spec, final int closedBarsAgo) {
+        IndicatorState state = indicators.get(spec);
+        if (state == null) {
+            throw new IllegalArgumentException(String.format("Indicator %s of %s is not defined.", spec, symbol));
+        }
+        return state.indicator.getValue(closedBarsAgo);
+    }
+
+    synchronized boolean isStable(final IndicatorSpec spec) {
+        IndicatorState state = indicators.get(spec);
+        return state != null && state.indicator.isStable();
+    }
+
+    /**
+     * @return bars ago (0 - forming bar) fast indicator of crossover was on the side last time,
+     * {@link Long#MAX_VALUE} if it never was.
+     */
+    synchronized long barsSince(final Crossover crossover, final boolean above) {
+        CrossoverTracker tracker = crossovers.get(crossover);
+        if (tracker == null) {
+            throw new IllegalArgumentException(String.format("Crossover %s of %s is not defined.", crossover, symbol));
+        }
+        long closedBarsAgo = tracker.barsSince(above);
+        if (!hasFormingBar) {
+            return closedBarsAgo;
+        }
+        double fast = indicators.get(crossover.fast()).provisional();
+        double slow = indicators.get(crossover.slow()).provisional();
+        if (!Double.isNaN(fast) && !Double.isNaN(slow) && fast >= slow == above) {
+            return 0;
+        }
+        return closedBarsAgo == Long.MAX_VALUE ? Long.MAX_VALUE : closedBarsAgo + 1;
+    }
+
+    /**
+     * Add indicators missing yet, they're computed from candles up to the current bar of shared indicators.
+     * Missing crossovers are restored from history kept by indicators.
+     */
+    synchronized void define(final Collection<IndicatorSpec> specs, final Collection<Crossover> newCrossovers,
+                             final List<? extends Candle> candles) {
+        for (IndicatorSpec spec : specs) {
+            if (indicators.containsKey(spec)) {
+                continue;
+            }
+            IndicatorState state = new IndicatorState(spec);
+            for (Candle candle : candles) {
+                if (candle.getOpenTime() <= lastClosedOpenTime) {
+                    state.indicator.update(spec.source().of(candle));
+                } else if (hasFormingBar && candle.getOpenTime() == formingOpenTime) {
+                    state.setFormingValue(spec.source().of(candle));
+                }
+            }
+            indicators.put(spec, state);
+        }
+        for (Crossover crossover : newCrossovers) {
+            if (crossovers.containsKey(crossover)) {
+                continue;
+            }
+            // crossover is restored from history of indicators only.
+            StreamingIndicator fast = indicators.get(crossover.fast()).indicator;
+            StreamingIndicator slow = indicators.get(crossover.slow()).indicator;
+            CrossoverTracker tracker = new CrossoverTracker();
+            for (int barsAgo = AbstractStreamingIndicator.DEFAULT_HISTORY_SIZE - 1; barsAgo >= 0; barsAgo--) {
+                tracker.update(fast.getValue(barsAgo), slow.getValue(barsAgo));
+            }
+            crossovers.put(crossover, tracker);
+        }
+    }
+
+    /**
+     * @return false if consumer was already attached.
+     */
+    synchronized boolean attach(final Object consumer) {
+        return consumers.add(consumer);
+    }
+
+    /**
+     * @return true if indicators have no consumers anymore.
+     */
+    synchronized boolean detach(final Object consumer) {
+        consumers.remove(consumer);
+        return consumers.isEmpty();
+    }
+
+    /**
+     * @return true if nobody except consumer uses indicators.
+     */
+    synchronized boolean usedOnlyBy(final Object consumer) {
+        return consumers.isEmpty() || consumers.size() == 1 && consumers.contains(consumer);
+    }
+
+    private void commitFormingBar() {
+        for (IndicatorState state : indicators.values()) {
+            state.indicator.update(state.formingValue);
+        }
+        updateCrossovers();
+        lastClosedOpenTime = formingOpenTime;
+        hasFormingBar = false;
+    }
+
+    private void updateCrossovers() {
+        crossovers.forEach((crossover, tracker) -> tracker.update(
+                indicators.get(crossover.fast()).indicator.getValue(0), indicators.get(crossover.slow()).indicator.getValue(0)));
+    }
+
+    /**
+     * Crossover of fast indicator over slow one.
+     */
+    record Crossover(IndicatorSpec fast, IndicatorSpec slow) {
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class IndicatorState {
+        final IndicatorSpec spec;
+        final StreamingIndicator indicator;
+        double formingValue = Double.NaN;
+        double provisionalValue = Double.NaN;
+        boolean provisionalComputed;
+
+        IndicatorState(final IndicatorSpec spec) {
+            this.spec = spec;
+            this.indicator = spec.create();
+        }
+
+        void setFormingValue(final double value) {
+            formingValue = value;
+            provisionalComputed = false;
+        }
+
+        double provisional() {
+            if (!provisionalComputed) {
+                provisionalValue = indicator.provisional(formingValue);
+                provisionalComputed = true;
+            }
+            return provisionalValue;
+        }
+    }
+}
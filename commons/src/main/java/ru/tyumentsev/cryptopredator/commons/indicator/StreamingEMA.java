@@ -0,0 +1,41 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Exponential moving average, seeded with first value like ta4j {@code EMAIndicator}.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StreamingEMA extends AbstractStreamingIndicator {
+
+    @Getter
+    final int barsQty;
+    final double multiplier;
+    double ema = Double.NaN;
+
+    public StreamingEMA(final int barsQty) {
+        this(barsQty, DEFAULT_HISTORY_SIZE);
+    }
+
+    public StreamingEMA(final int barsQty, final int historySize) {
+        super(historySize);
+        this.barsQty = barsQty;
+        this.multiplier = 2.0 / (barsQty + 1);
+    }
+
+    @Override
+    protected double calculate(final double value, final boolean commit) {
+        double result = Double.isNaN(ema) ? value : ema + (value - ema) * multiplier;
+        if (commit) {
+            ema = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isStable() {
+        return barCount >= barsQty;
+    }
+}
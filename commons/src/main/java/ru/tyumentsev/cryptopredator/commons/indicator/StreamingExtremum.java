@@ -0,0 +1,105 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Highest or lowest value of the last {@code window} bars, e.g. resistance and support levels.
+ * Last {@code lag} bars are excluded from window, so value of bar {@code k} is extremum of bars
+ * {@code [k - lag - window + 1, k - lag]}.
+ * <p>
+ * Candidates are kept in monotonic deque: every value is added and removed once, so update takes amortized O(1)
+ * and value is read from head of deque.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StreamingExtremum extends AbstractStreamingIndicator {
+
+    final boolean highest;
+    @Getter
+    final int window;
+    @Getter
+    final int lag;
+    /**
+     * Last {@code lag} values which are not in window yet.
+     */
+    final double[] delayed;
+    final double[] values;
+    final long[] indexes;
+    int first;
+    int size;
+
+    public StreamingExtremum(final boolean highest, final int window, final int lag) {
+        this(highest, window, lag, DEFAULT_HISTORY_SIZE);
+    }
+
+    public StreamingExtremum(final boolean highest, final int window, final int lag, final int historySize) {
+        super(historySize);
+        if (window < 1 || lag < 0) {
+            throw new IllegalArgumentException("Window must be positive and lag must not be negative");
+        }
+        this.highest = highest;
+        this.window = window;
+        this.lag = lag;
+        this.delayed = new double[lag];
+        this.values = new double[window];
+        this.indexes = new long[window];
+    }
+
+    public static StreamingExtremum highest(final int window, final int lag) {
+        return new StreamingExtremum(true, window, lag);
+    }
+
+    public static StreamingExtremum lowest(final int window, final int lag) {
+        return new StreamingExtremum(false, window, lag);
+    }
+
+    @Override
+    protected double calculate(final double value, final boolean commit) {
+        // index of value entering window.
+        long entering = barCount - lag;
+        double enteringValue = Double.NaN;
+        if (entering >= 0) {
+            enteringValue = lag == 0 ? value : delayed[(int) (barCount % lag)];
+        }
+        if (lag > 0 && commit) {
+            delayed[(int) (barCount % lag)] = value;
+        }
+        if (!commit) {
+            // only head of deque could leave window, the next candidate is extremum of rest of window.
+            int head = size > 0 && indexes[first] <= entering - window ? 1 : 0;
+            double candidate = head < size ? values[(first + head) % window] : Double.NaN;
+            if (Double.isNaN(candidate) || !Double.isNaN(enteringValue) && !better(candidate, enteringValue)) {
+                candidate = enteringValue;
+            }
+            return candidate;
+        }
+
+        if (!Double.isNaN(enteringValue)) {
+            while (size > 0 && !better(values[(first + size - 1) % window], enteringValue)) {
+                size--;
+            }
+            if (size > 0 && indexes[first] <= entering - window) {
+                first = (first + 1) % window;
+                size--;
+            }
+            int last = (first + size) % window;
+            values[last] = enteringValue;
+            indexes[last] = entering;
+            size++;
+        }
+        return size > 0 ? values[first] : Double.NaN;
+    }
+
+    /**
+     * @return true if candidate is strictly better than other value.
+     */
+    private boolean better(final double candidate, final double other) {
+        return highest ? candidate > other : candidate < other;
+    }
+
+    @Override
+    public boolean isStable() {
+        return barCount >= window + lag;
+    }
+}
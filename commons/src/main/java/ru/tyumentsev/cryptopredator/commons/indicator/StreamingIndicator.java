@@ -0,0 +1,35 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+/**
+ * Indicator which state is updated once per closed bar in constant time.
+ */
+public interface StreamingIndicator {
+
+    /**
+     * Commit value of closed bar.
+     * @return new value of indicator.
+     */
+    double update(final double value);
+
+    /**
+     * Value of indicator if forming bar would close at given value. State is not changed.
+     */
+    double provisional(final double value);
+
+    /**
+     * Value of indicator on closed bar.
+     * @param barsAgo 0 - last closed bar.
+     * @return {@link Double#NaN} if there is no such bar in history.
+     */
+    double getValue(final int barsAgo);
+
+    /**
+     * Quantity of closed bars indicator was updated with.
+     */
+    long getBarCount();
+
+    /**
+     * @return true if indicator got enough bars to be meaningful.
+     */
+    boolean isStable();
+}
@@ -0,0 +1,39 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Moving average convergence divergence: difference between short and long EMA.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StreamingMACD extends AbstractStreamingIndicator {
+
+    StreamingEMA shortEma;
+    StreamingEMA longEma;
+
+    public StreamingMACD(final int shortBarsQty, final int longBarsQty) {
+        this(shortBarsQty, longBarsQty, DEFAULT_HISTORY_SIZE);
+    }
+
+    public StreamingMACD(final int shortBarsQty, final int longBarsQty, final int historySize) {
+        super(historySize);
+        if (shortBarsQty > longBarsQty) {
+            throw new IllegalArgumentException("Long term period count must be greater than short term period count");
+        }
+        this.shortEma = new StreamingEMA(shortBarsQty, 1);
+        this.longEma = new StreamingEMA(longBarsQty, 1);
+    }
+
+    @Override
+    protected double calculate(final double value, final boolean commit) {
+        return commit
+                ? shortEma.update(value) - longEma.update(value)
+                : shortEma.provisional(value) - longEma.provisional(value);
+    }
+
+    @Override
+    public boolean isStable() {
+        return longEma.isStable();
+    }
+}
@@ -0,0 +1,53 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Relative strength index with Wilder's smoothing of gains and losses, same rules as ta4j {@code RSIIndicator}.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StreamingRSI extends AbstractStreamingIndicator {
+
+    @Getter
+    final int barsQty;
+    final double multiplier;
+    double previousValue = Double.NaN;
+    double averageGain = Double.NaN;
+    double averageLoss = Double.NaN;
+
+    public StreamingRSI(final int barsQty) {
+        this(barsQty, DEFAULT_HISTORY_SIZE);
+    }
+
+    public StreamingRSI(final int barsQty, final int historySize) {
+        super(historySize);
+        this.barsQty = barsQty;
+        this.multiplier = 1.0 / barsQty;
+    }
+
+    @Override
+    protected double calculate(final double value, final boolean commit) {
+        double change = Double.isNaN(previousValue) ? 0 : value - previousValue;
+        double gain = Math.max(change, 0);
+        double loss = Math.max(-change, 0);
+        double newAverageGain = Double.isNaN(averageGain) ? gain : averageGain + (gain - averageGain) * multiplier;
+        double newAverageLoss = Double.isNaN(averageLoss) ? loss : averageLoss + (loss - averageLoss) * multiplier;
+        if (commit) {
+            previousValue = value;
+            averageGain = newAverageGain;
+            averageLoss = newAverageLoss;
+        }
+
+        if (newAverageLoss == 0) {
+            return newAverageGain == 0 ? 0 : 100;
+        }
+        return 100 - 100 / (1 + newAverageGain / newAverageLoss);
+    }
+
+    @Override
+    public boolean isStable() {
+        return barCount > barsQty;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import com.binance.api.client.domain.Candle;
+import com.binance.api.client.domain.event.CandlestickEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+/**
+ * Indicators of one symbol as defined by indicator engine, values are read from indicators shared in {@link IndicatorRegistry}.
+ * Values are addressed like in bar series: 0 - last (forming) bar, 1 - previous one and so on.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SymbolIndicators {
+
+    @Getter
+    String symbol;
+    SharedIndicators shared;
+    Map<String, IndicatorSpec> definitions;
+    Map<String, SharedIndicators.Crossover> crossovers;
+
+    SymbolIndicators(final String symbol, final SharedIndicators shared, final Map<String, IndicatorSpec> definitions,
+                     final Map<String, SharedIndicators.Crossover> crossovers) {
+        this.symbol = symbol;
+        this.shared = shared;
+        this.definitions = definitions;
+        this.crossovers = crossovers;
+    }
+
+    /**
+     * Update indicators with candle. Candles older than last closed one are ignored.
+     * If forming bar was not closed by final event, it's committed when next bar opens.
+     */
+    public void update(final Candle candle, final boolean closed) {
+        shared.update(candle, closed, 0);
+    }
+
+    /**
+     * Update indicators with event, event already applied through other engine is ignored.
+     */
+    void update(final CandlestickEvent event) {
+        shared.update(event, Boolean.TRUE.equals(event.getBarFinal()), event.getEventTime());
+    }
+
+    public double getValue(final String key, final int barsAgo) {
+        return shared.getValue(specOf(key), barsAgo);
+    }
+
+    /**
+     * Value of closed bar whether forming bar exists or not.
+     * @param closedBarsAgo 0 - last closed bar.
+     */
+    public double getClosedValue(final String key, final int closedBarsAgo) {
+        return shared.getClosedValue(specOf(key), closedBarsAgo);
+    }
+
+    public boolean isStable(final String key) {
+        IndicatorSpec spec = definitions.get(key);
+        return spec != null && shared.isStable(spec);
+    }
+
+    /**
+     * Bars ago fast indicator of crossover was below slow one last time, e.g. fast one is above for
+     * the last N bars if result is not less than N.
+     * @return 0 if it's below on the last (forming) bar, {@link Long#MAX_VALUE} if it never was below.
+     */
+    public long barsSinceFastBelow(final String crossoverKey) {
+        return shared.barsSince(crossoverOf(crossoverKey), false);
+    }
+
+    /**
+     * Bars ago fast indicator of crossover was above or equal to slow one last time.
+     * @return 0 if it's above on the last (forming) bar, {@link Long#MAX_VALUE} if it never was above.
+     */
+    public long barsSinceFastAbove(final String crossoverKey) {
+        return shared.barsSince(crossoverOf(crossoverKey), true);
+    }
+
+    public long getLastClosedOpenTime() {
+        return shared.getLastClosedOpenTime();
+    }
+
+    private IndicatorSpec specOf(final String key) {
+        IndicatorSpec spec = definitions.get(key);
+        if (spec == null) {
+            throw new IllegalArgumentException(String.format("Indicator '%s' is not defined.", key));
+        }
+        return spec;
+    }
+
+    private SharedIndicators.Crossover crossoverOf(final String key) {
+        SharedIndicators.Crossover crossover = crossovers.get(key);
+        if (crossover == null) {
+            throw new IllegalArgumentException(String.format("Crossover '%s' is not defined.", key));
+        }
+        return crossover;
+    }
+}
@@ -0,0 +1,211 @@
+package ru.tyumentsev.cryptopredator.commons.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Records received events to rolling memory-mapped segment files.
+ * Callers only put event into ring buffer, serialization and writing are done by single writer thread.
+ * If writer falls behind and buffer is full, events are dropped and counted.
+ * <p>
+ * Segment starts with {@link #MAGIC} and {@link #VERSION}, followed by records:
+ * payload length (int), event type (byte), receiving time in epoch millis (long), payload (JSON of event).
+ * Zero length marks the end of written records.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
+@Slf4j
+@SuppressWarnings("unused")
+public class EventJournal implements Closeable {
+
+    public static final int MAGIC = 0x4A524E4C;
+    public static final int VERSION = 1;
+    public static final int SEGMENT_HEADER_SIZE = 2 * Integer.BYTES;
+    public static final int RECORD_HEADER_SIZE = Integer.BYTES + Byte.BYTES + Long.BYTES;
+    public static final String SEGMENT_SUFFIX = ".journal";
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+    public static final int DEFAULT_BUFFER_CAPACITY = 1 << 16;
+    /**
+     * Pause of writer when there is nothing to write, nanoseconds.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    Path directory;
+    int segmentSize;
+    int maxSegments;
+    MpscRingBuffer<Entry> buffer;
+    ObjectMapper objectMapper = new ObjectMapper();
+    LongAdder droppedCount = new LongAdder();
+    LongAdder recordedCount = new LongAdder();
+    Thread writer;
+    // writer thread only.
+    @NonFinal
+    MappedByteBuffer segment;
+    @NonFinal
+    long segmentIndex;
+    @NonFinal
+    volatile boolean closed;
+
+    public EventJournal(final Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    public EventJournal(final Path directory, final int segmentSize, final int maxSegments, final int bufferCapacity) {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size is too small");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.buffer = new MpscRingBuffer<>(bufferCapacity);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.segmentIndex = segments(directory).stream()
+                .mapToLong(EventJournal::indexOf)
+                .max().orElse(-1);
+        this.writer = new Thread(this::writeLoop, "event-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Put event to journal, never blocks.
+     */
+    public void record(final JournalEventType type, final Object event) {
+        if (closed || !buffer.offer(new Entry(type, System.currentTimeMillis(), event))) {
+            droppedCount.increment();
+        }
+    }
+
+    public long getRecordedCount() {
+        return recordedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public int getBacklog() {
+        return buffer.size();
+    }
+
+    /**
+     * Segment files of directory in order of writing.
+     */
+    public static List<Path> segments(final Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long indexOf(final Path segment) {
+        String fileName = segment.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Entry entry = buffer.poll();
+            if (entry == null) {
+                if (closed) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                write(entry);
+                recordedCount.increment();
+            } catch (Exception e) {
+                droppedCount.increment();
+                log.error("Failed to write {} event to journal: {}", entry.type, e.getMessage());
+            }
+        }
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    private void write(final Entry entry) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(entry.event);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (SEGMENT_HEADER_SIZE + recordSize + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException(String.format("record of %d bytes exceeds segment size", recordSize));
+        }
+        MappedByteBuffer current = segment;
+        if (current == null || current.remaining() < recordSize + Integer.BYTES) { // keep space for end mark.
+            current = nextSegment();
+        }
+        int position = current.position();
+        current.position(position + Integer.BYTES);
+        current.put(entry.type.getId())
+                .putLong(entry.recordedAt)
+                .put(payload);
+        current.putInt(position, payload.length); // length is written last, so readers never see incomplete record.
+    }
+
+    private MappedByteBuffer nextSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        Path file = directory.resolve(String.format("%012d%s", ++segmentIndex, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.putInt(MAGIC).putInt(VERSION);
+        log.debug("Event journal segment {} created.", file);
+        removeOldSegments();
+        return segment;
+    }
+
+    private void removeOldSegments() {
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException e) {
+                log.warn("Failed to delete journal segment {}: {}", segments.get(i), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Entry(JournalEventType type, long recordedAt, Object event) {
+    }
+}
@@ -0,0 +1,91 @@
+package ru.tyumentsev.cryptopredator.commons.journal;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads events recorded by {@link EventJournal} in order of recording.
+ * Segment which is being written could be read too, reading stops at the last completely written record.
+ * Segment which was just created and has no header yet is read as empty.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class EventJournalReader {
+
+    Path directory;
+    ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public EventJournalReader(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Pass all recorded events to consumer.
+     * @return quantity of read events.
+     */
+    public long read(final Consumer<JournalRecord> consumer) {
+        long count = 0;
+        for (Path segment : EventJournal.segments(directory)) {
+            count += read(segment, consumer);
+        }
+        return count;
+    }
+
+    /**
+     * Pass events of one segment to consumer.
+     * @return quantity of read events, 0 if segment is just created.
+     */
+    public long read(final Path segment, final Consumer<JournalRecord> consumer) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (buffer.remaining() < EventJournal.SEGMENT_HEADER_SIZE) {
+            // file is created, but not mapped by writer yet.
+            return 0;
+        }
+        int magic = buffer.getInt();
+        int version = buffer.getInt();
+        if (magic == 0 || version == 0) {
+            // segment is mapped by writer, but header isn't written yet.
+            return 0;
+        }
+        if (magic != EventJournal.MAGIC) {
+            throw new IllegalStateException(String.format("%s is not a journal segment", segment));
+        }
+        if (version != EventJournal.VERSION) {
+            throw new IllegalStateException(String.format("Unsupported version %d of journal segment %s", version, segment));
+        }
+
+        long count = 0;
+        while (buffer.remaining() >= EventJournal.RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            if (length <= 0 || buffer.remaining() < length + Byte.BYTES + Long.BYTES) {
+                break;
+            }
+            JournalEventType type = JournalEventType.of(buffer.get());
+            long recordedAt = buffer.getLong();
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            try {
+                consumer.accept(new JournalRecord(type, recordedAt, objectMapper.readValue(payload, type.getEventClass())));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+        return count;
+    }
+}
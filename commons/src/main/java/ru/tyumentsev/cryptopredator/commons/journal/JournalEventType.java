@@ -0,0 +1,28 @@
+package ru.tyumentsev.cryptopredator.commons.journal;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.event.OrderTradeUpdateEvent;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public enum JournalEventType {
+    CANDLESTICK((byte) 1, CandlestickEvent.class),
+    ORDER_TRADE_UPDATE((byte) 2, OrderTradeUpdateEvent.class);
+
+    byte id;
+    Class<?> eventClass;
+
+    public static JournalEventType of(final byte id) {
+        for (JournalEventType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown journal event type: " + id);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.tyumentsev.cryptopredator.commons.journal;
+
+/**
+ * Event read from journal.
+ * @param recordedAt time of receiving of event, epoch milliseconds.
+ */
+public record JournalRecord(JournalEventType type, long recordedAt, Object event) {
+
+    public <T> T event(final Class<T> eventClass) {
+        return eventClass.cast(event);
+    }
+}
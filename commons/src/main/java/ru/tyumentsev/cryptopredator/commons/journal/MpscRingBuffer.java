@@ -0,0 +1,66 @@
+package ru.tyumentsev.cryptopredator.commons.journal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer.
+ * Every slot has sequence number: producer owns slot when sequence equals its position,
+ * consumer owns slot when sequence is position + 1.
+ */
+final class MpscRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // written by consumer only.
+
+    MpscRingBuffer(final int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two");
+        }
+        elements = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if buffer is full.
+     */
+    boolean offer(final E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference < 0) {
+                return false;
+            }
+            if (difference == 0 && tail.compareAndSet(position, position + 1)) {
+                elements[index] = element;
+                sequences.set(index, position + 1);
+                return true;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, head + elements.length);
+        head++;
+        return element;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
@@ -8,24 +8,60 @@ import org.ta4j.core.BaseBar;
 import org.ta4j.core.BaseBarBuilder;
 import org.ta4j.core.ConvertibleBaseBarBuilder;
 import org.ta4j.core.num.DoubleNum;
+import ru.tyumentsev.cryptopredator.commons.cache.PrimitiveBarSeries;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class CandlestickToBaseBarMapper {
 
     private static final BaseBarBuilder baseBarBuilder = BaseBar.builder();
+    private static final ZoneId ZONE_ID = ZoneId.systemDefault();
+    private static final Map<CandlestickInterval, Duration> DURATIONS = new EnumMap<>(CandlestickInterval.class);
+
+    static {
+        for (CandlestickInterval interval : CandlestickInterval.values()) {
+            DURATIONS.put(interval, Duration.parse(interval.getDurationIntervalId()));
+        }
+    }
+
+    public static Duration duration(final CandlestickInterval interval) {
+        return DURATIONS.get(interval);
+    }
+
+    /**
+     * Put candle into series without creating bar objects: last bar is updated in place
+     * if candle has the same close time, otherwise candle is appended as new bar.
+     * @return false if candle is older than last bar of series and was skipped.
+     */
+    public static boolean update(final PrimitiveBarSeries series, final Candle candle) {
+        long endTime = candle.getCloseTime();
+        boolean replace = false;
+        if (!series.isEmpty()) {
+            long lastEndTime = series.getEndTimeMillis(series.getEndIndex());
+            if (endTime < lastEndTime) {
+                return false;
+            }
+            replace = endTime == lastEndTime;
+        }
+        series.addBar(endTime, Double.parseDouble(candle.getOpen()), Double.parseDouble(candle.getHigh()),
+                Double.parseDouble(candle.getLow()), Double.parseDouble(candle.getClose()), Double.parseDouble(candle.getVolume()),
+                Double.parseDouble(candle.getQuoteAssetVolume()), candle.getNumberOfTrades() == null ? 0 : candle.getNumberOfTrades(), replace);
+        return true;
+    }
 
     public static Bar map(final Candle candle, final CandlestickInterval interval) {
         final ConvertibleBaseBarBuilder<String> convertibleBaseBarBuilder = BaseBar.builder(DoubleNum::valueOf, String.class);
 
-        convertibleBaseBarBuilder.timePeriod(Duration.parse(interval.getDurationIntervalId()))
-                .endTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(candle.getCloseTime()), ZoneId.systemDefault()))
+        convertibleBaseBarBuilder.timePeriod(DURATIONS.get(interval))
+                .endTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(candle.getCloseTime()), ZONE_ID))
                 .openPrice(candle.getOpen())
                 .closePrice(candle.getClose())
                 .highPrice(candle.getHigh())
@@ -41,8 +77,8 @@ public class CandlestickToBaseBarMapper {
         final ConvertibleBaseBarBuilder<String> convertibleBaseBarBuilder = BaseBar.builder(DoubleNum::valueOf, String.class);
 
         return candlesticks.stream().map(candle ->
-                        convertibleBaseBarBuilder.timePeriod(Duration.parse(interval.getDurationIntervalId()))
-                                .endTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(candle.getCloseTime()), ZoneId.systemDefault()))
+                        convertibleBaseBarBuilder.timePeriod(DURATIONS.get(interval))
+                                .endTime(ZonedDateTime.ofInstant(Instant.ofEpochMilli(candle.getCloseTime()), ZONE_ID))
                                 .openPrice(candle.getOpen())
                                 .closePrice(candle.getClose())
                                 .highPrice(candle.getHigh())
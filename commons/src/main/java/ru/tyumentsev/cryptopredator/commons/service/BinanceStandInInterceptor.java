@@ -0,0 +1,48 @@
+package ru.tyumentsev.cryptopredator.commons.service;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Redirects REST and websocket requests of Binance API client to stand-in server, keeping path and query.
+ * Requests to other hosts (e.g. state keeper) pass as is, as well as all requests while stand-in URL is blank.
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class BinanceStandInInterceptor implements Interceptor {
+
+    /**
+     * Read on every request, so it could be set after creation of HTTP client.
+     */
+    Supplier<String> standInUrl;
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        Request request = chain.request();
+        String url = standInUrl.get();
+        if (url == null || url.isBlank() || !isBinanceHost(request.url().host())) {
+            return chain.proceed(request);
+        }
+
+        HttpUrl standIn = HttpUrl.get(url);
+        return chain.proceed(request.newBuilder()
+                .url(request.url().newBuilder()
+                        .scheme(standIn.scheme())
+                        .host(standIn.host())
+                        .port(standIn.port())
+                        .build())
+                .build());
+    }
+
+    private static boolean isBinanceHost(final String host) {
+        return host.endsWith("binance.com") || host.endsWith("binance.vision");
+    }
+}
@@ -0,0 +1,313 @@
+package ru.tyumentsev.cryptopredator.commons.service;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import ru.tyumentsev.cryptopredator.commons.cache.CandleStore;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Loads candles history of symbols in background, so websocket callbacks never wait for REST calls.
+ * Only one request per (symbol, interval) is in flight, events received while it's loading are buffered
+ * per consumer and handed over to every consumer together with loaded history. History is handed over
+ * by executor of consumer (e.g. lane of symbol), so state of consumer is changed by its own thread only.
+ * If candle store is set, history is read from it and only bars missed since the last stored one are requested.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
+@Slf4j
+@SuppressWarnings("unused")
+public class CandleBackfillService implements TradingService {
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+    /**
+     * Pause before next attempt to load history after failed request, milliseconds.
+     * Events are kept buffered meanwhile and are handed over with history of the next attempt.
+     */
+    public static final long RETRY_DELAY = 30_000L;
+
+    MarketInfo marketInfo;
+    /**
+     * Keeps closed candles between restarts if set.
+     */
+    CandleStore candleStore;
+    ExecutorService executor;
+    Map<String, Backfill> inFlight = new ConcurrentHashMap<>();
+    LongAdder storedBarsUsed = new LongAdder();
+
+    public CandleBackfillService(MarketInfo marketInfo) {
+        this(marketInfo, DEFAULT_CONCURRENCY, null);
+    }
+
+    public CandleBackfillService(MarketInfo marketInfo, CandleStore candleStore) {
+        this(marketInfo, DEFAULT_CONCURRENCY, candleStore);
+    }
+
+    public CandleBackfillService(MarketInfo marketInfo, int concurrency, CandleStore candleStore) {
+        this.marketInfo = marketInfo;
+        this.candleStore = candleStore;
+        AtomicInteger threadsCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "candle-backfill-" + threadsCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Buffer event until history of its symbol is loaded, loading starts with first buffered event.
+     * Consumers buffering events of the same (symbol, interval) share one request, but every consumer
+     * gets its own buffered events and its own callback.
+     * @param limit    quantity of candles, request is made with limit of the first consumer,
+     *                 candles are cut to limit of every consumer.
+     * @param consumer identity of consumer, e.g. its indicator engine.
+     * @param executor runs callback of consumer, it must be the executor events of consumer are handled by
+     *                 (e.g. lane of symbol), so no event of consumer is handled between buffering and callback.
+     * @param onLoaded receives loaded candles and events buffered for consumer while loading (in order of receiving).
+     *                 Called once per consumer, events of consumer are buffered until it's called.
+     * @return false if history is already handed over to consumer and event should be handled by caller.
+     */
+    public boolean bufferUntilLoaded(final String symbol, final CandlestickInterval interval, final int limit, final Object consumer,
+                                     final CandlestickEvent event, final Executor executor,
+                                     final BiConsumer<List<Candlestick>, List<CandlestickEvent>> onLoaded) {
+        String key = symbol + ":" + interval.getIntervalId();
+        boolean[] buffered = new boolean[1];
+        // backfill is removed under lock of map too, so event is never offered to removed backfill.
+        Backfill backfill = inFlight.compute(key, (k, current) -> {
+            Backfill actual = current != null ? current : new Backfill(k, symbol, interval, limit);
+            if (current == null || current.retry()) {
+                this.executor.execute(() -> load(actual));
+            }
+            buffered[0] = actual.offer(consumer, limit, event, executor, onLoaded);
+            return actual;
+        });
+        handOver(backfill);
+        return buffered[0];
+    }
+
+    public boolean isLoading(final String symbol, final CandlestickInterval interval) {
+        return inFlight.containsKey(symbol + ":" + interval.getIntervalId());
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Quantity of bars taken from candle store instead of exchange.
+     */
+    public long getStoredBarsUsed() {
+        return storedBarsUsed.sum();
+    }
+
+    /**
+     * Keep closed bar of event in candle store, events of not closed bars are ignored.
+     */
+    public void store(final CandlestickInterval interval, final CandlestickEvent event) {
+        if (candleStore != null && Boolean.TRUE.equals(event.getBarFinal())) {
+            candleStore.append(event.getSymbol(), interval, event);
+        }
+    }
+
+    private void load(final Backfill backfill) {
+        List<Candlestick> candles;
+        try {
+            candles = loadCandles(backfill.symbol, backfill.interval, backfill.limit);
+        } catch (Exception e) {
+            log.warn("Failed to load {} candles of {}, next attempt not earlier than in {} ms: {}", backfill.interval, backfill.symbol, RETRY_DELAY, e.getMessage());
+            backfill.fail();
+            return;
+        }
+        backfill.loaded(candles);
+        handOver(backfill);
+    }
+
+    /**
+     * Pass loaded history to every consumer which didn't get it yet, by executor of consumer.
+     */
+    private void handOver(final Backfill backfill) {
+        for (Waiter waiter : backfill.readyWaiters()) {
+            waiter.executor.execute(() -> {
+                List<CandlestickEvent> events = backfill.take(waiter);
+                try {
+                    events.forEach(event -> store(backfill.interval, event));
+                    waiter.onLoaded.accept(backfill.candles.subList(Math.max(0, backfill.candles.size() - waiter.limit), backfill.candles.size()), events);
+                } catch (Exception e) {
+                    log.error("Error while applying loaded {} candles of {}: {}", backfill.interval, backfill.symbol, e.getMessage(), e);
+                }
+                // backfill is forgotten when all consumers got history, next consumers handle events by themselves.
+                inFlight.computeIfPresent(backfill.key, (k, current) -> current == backfill && backfill.handedOver() ? null : current);
+            });
+        }
+    }
+
+    /**
+     * Latest candles: stored ones completed with missed since the last stored,
+     * or requested from exchange entirely if store has not enough contiguous candles.
+     */
+    private List<Candlestick> loadCandles(final String symbol, final CandlestickInterval interval, final int limit) {
+        if (candleStore == null) {
+            return marketInfo.getCandleSticks(symbol, interval, limit);
+        }
+        long now = System.currentTimeMillis();
+        long duration = CandlestickToBaseBarMapper.duration(interval).toMillis();
+        List<Candlestick> stored = candleStore.read(symbol, interval, limit);
+        if (!stored.isEmpty()) {
+            long nextOpenTime = stored.get(stored.size() - 1).getOpenTime() + duration;
+            // including forming bar.
+            int missedCount = (int) Math.max(0, (now - nextOpenTime) / duration) + 1;
+            if (missedCount <= limit && stored.size() + missedCount >= limit) {
+                List<Candlestick> missed = marketInfo.getCandleSticks(symbol, interval, missedCount, nextOpenTime);
+                candleStore.appendAll(symbol, interval, closed(missed, now));
+                List<Candlestick> candles = new ArrayList<>(stored);
+                missed.stream().filter(candle -> candle.getOpenTime() >= nextOpenTime).forEach(candles::add);
+                storedBarsUsed.add(stored.size());
+                log.debug("Took {} {} candles of {} from store, requested {} missed.", stored.size(), interval, symbol, missed.size());
+                return candles.subList(Math.max(0, candles.size() - limit), candles.size());
+            }
+        }
+        List<Candlestick> candles = marketInfo.getCandleSticks(symbol, interval, limit);
+        candleStore.replace(symbol, interval, closed(candles, now));
+        return candles;
+    }
+
+    private static List<Candlestick> closed(final List<Candlestick> candles, final long now) {
+        return candles.stream().filter(candle -> candle.getCloseTime() < now).toList();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Backfill {
+        final String key;
+        final String symbol;
+        final CandlestickInterval interval;
+        final int limit;
+        /**
+         * Consumers in order of their first event.
+         */
+        final Map<Object, Waiter> waiters = new LinkedHashMap<>();
+        volatile List<Candlestick> candles;
+        boolean failed;
+        long retryAfter;
+
+        synchronized boolean offer(final Object consumer, final int consumerLimit, final CandlestickEvent event, final Executor executor,
+                                   final BiConsumer<List<Candlestick>, List<CandlestickEvent>> onLoaded) {
+            Waiter waiter = waiters.computeIfAbsent(consumer, key -> new Waiter(consumerLimit, executor, onLoaded));
+            if (waiter.taken) {
+                return false;
+            }
+            waiter.buffer(event);
+            return true;
+        }
+
+        synchronized void loaded(final List<Candlestick> loadedCandles) {
+            candles = loadedCandles;
+        }
+
+        /**
+         * Waiters which history should be handed over to, each of them is returned once.
+         */
+        synchronized List<Waiter> readyWaiters() {
+            if (candles == null) {
+                return List.of();
+            }
+            List<Waiter> ready = new ArrayList<>();
+            waiters.values().forEach(waiter -> {
+                if (!waiter.scheduled) {
+                    waiter.scheduled = true;
+                    ready.add(waiter);
+                }
+            });
+            return ready;
+        }
+
+        /**
+         * Take buffered events of waiter, next events of consumer aren't buffered.
+         */
+        synchronized List<CandlestickEvent> take(final Waiter waiter) {
+            waiter.taken = true;
+            List<CandlestickEvent> events = List.copyOf(waiter.events);
+            waiter.events.clear();
+            return events;
+        }
+
+        synchronized boolean handedOver() {
+            return candles != null && waiters.values().stream().allMatch(waiter -> waiter.taken);
+        }
+
+        synchronized void fail() {
+            retryAfter = System.currentTimeMillis() + RETRY_DELAY;
+            failed = true;
+        }
+
+        /**
+         * @return true if load failed and it's time for the next attempt, backfill is loading again then.
+         */
+        synchronized boolean retry() {
+            if (failed && retryAfter < System.currentTimeMillis()) {
+                failed = false;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class Waiter {
+        final int limit;
+        final Executor executor;
+        final BiConsumer<List<Candlestick>, List<CandlestickEvent>> onLoaded;
+        final List<CandlestickEvent> events = new ArrayList<>();
+        /**
+         * Handing over is passed to executor of consumer.
+         */
+        boolean scheduled;
+        /**
+         * Consumer got history, its events aren't buffered anymore.
+         */
+        boolean taken;
+
+        /**
+         * Keep event, update of forming bar replaces the previous update of the same bar. Buffer is bounded
+         * by limit of consumer even if loading fails for long, older bars are covered by history of the next attempt.
+         */
+        void buffer(final CandlestickEvent event) {
+            if (!events.isEmpty()) {
+                CandlestickEvent last = events.get(events.size() - 1);
+                if (!Boolean.TRUE.equals(last.getBarFinal()) && last.getOpenTime().equals(event.getOpenTime())) {
+                    events.remove(events.size() - 1);
+                }
+            }
+            events.add(event);
+            if (events.size() > limit) {
+                events.remove(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package ru.tyumentsev.cryptopredator.commons.service;
+
+import com.binance.api.client.BinanceApiCallback;
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import ru.tyumentsev.cryptopredator.commons.TradingStrategy;
+import ru.tyumentsev.cryptopredator.commons.journal.EventJournal;
+import ru.tyumentsev.cryptopredator.commons.journal.JournalEventType;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToEventMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Shares candlestick websocket streams between all strategies of the bot.
+ * Streams are opened as few big combined connections, subscriptions are reference-counted
+ * per (symbol, interval) and every event is fanned out to all subscribed strategies.
+ * Events of every (symbol, interval) are delivered in order of bars: outdated events and repeated final events are dropped,
+ * so connections could be replaced without gaps and duplicated bars. Failed and silent connections are replaced too.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
+@Slf4j
+@SuppressWarnings("unused")
+public class MarketDataHub implements TradingService {
+
+    /**
+     * Binance allows up to 1024 streams per connection, keep reserve for long stream URLs.
+     */
+    public static final int DEFAULT_STREAMS_PER_CONNECTION = 200;
+    /**
+     * Binance drops websocket connections after 24 hours, older connections are replaced on reconnect.
+     */
+    public static final Duration CONNECTION_MAX_AGE = Duration.ofHours(23);
+    /**
+     * Connection without events for this time is considered closed and is replaced on reconnect.
+     */
+    public static final Duration CONNECTION_SILENCE_TIMEOUT = Duration.ofMinutes(5);
+    /**
+     * Pause before replacement of failed connection, milliseconds.
+     */
+    public static final long FAILED_CONNECTION_REPLACE_DELAY = 5_000L;
+    /**
+     * Maximal quantity of candles returned by one REST request.
+     */
+    public static final int GAP_FILL_LIMIT = 1000;
+
+    MarketInfo marketInfo;
+    int streamsPerConnection;
+    /**
+     * Records events of subscribed streams if set, events of retired connections and dropped streams are not recorded.
+     */
+    EventJournal eventJournal;
+
+    Map<CandlestickInterval, Map<String, StreamSubscription>> subscriptions = new EnumMap<>(CandlestickInterval.class);
+    @Getter
+    Set<StreamConnection> connections = ConcurrentHashMap.newKeySet();
+    AtomicInteger connectionsCounter = new AtomicInteger();
+    ScheduledExecutorService gapFillExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "market-data-gap-fill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MarketDataHub(MarketInfo marketInfo) {
+        this(marketInfo, DEFAULT_STREAMS_PER_CONNECTION);
+    }
+
+    public MarketDataHub(MarketInfo marketInfo, int streamsPerConnection) {
+        this(marketInfo, streamsPerConnection, null);
+    }
+
+    public MarketDataHub(MarketInfo marketInfo, int streamsPerConnection, EventJournal eventJournal) {
+        this.marketInfo = marketInfo;
+        this.streamsPerConnection = streamsPerConnection;
+        this.eventJournal = eventJournal;
+        for (CandlestickInterval interval : CandlestickInterval.values()) {
+            subscriptions.put(interval, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Subscribe strategy callback to candlestick events of symbol.
+     * @return handle, closing of which cancels this subscription.
+     */
+    public Closeable subscribe(final String symbol, final CandlestickInterval interval,
+                               final TradingStrategy strategy, final BinanceApiCallback<CandlestickEvent> callback) {
+        return subscribe(List.of(symbol), interval, strategy, callback).get(symbol.toUpperCase());
+    }
+
+    /**
+     * Subscribe strategy callback to candlestick events of all symbols.
+     * Symbols which are still carried by running connection (were unsubscribed, but connection wasn't replaced yet)
+     * are taken back by it, the rest of not streamed symbols are combined into new connections.
+     * @return subscription handles by symbol.
+     */
+    public synchronized Map<String, Closeable> subscribe(final Collection<String> symbols, final CandlestickInterval interval,
+                                                         final TradingStrategy strategy, final BinanceApiCallback<CandlestickEvent> callback) {
+        Map<String, StreamSubscription> intervalSubscriptions = subscriptions.get(interval);
+        Map<String, Closeable> handles = new HashMap<>();
+        List<String> notStreamedSymbols = new ArrayList<>();
+
+        symbols.stream().map(String::toUpperCase).collect(Collectors.toCollection(LinkedHashSet::new)).forEach(symbol -> {
+            StreamSubscription subscription = intervalSubscriptions.computeIfAbsent(symbol, key -> new StreamSubscription(key, interval));
+            if (subscription.connection == null) {
+                findCarrying(symbol, interval).ifPresentOrElse(connection -> {
+                    connection.symbols.add(symbol);
+                    subscription.connection = connection;
+                }, () -> notStreamedSymbols.add(symbol));
+            }
+            Subscriber subscriber = new Subscriber(subscription, strategy, callback);
+            subscription.subscribers.add(subscriber);
+            handles.put(symbol, subscriber);
+        });
+
+        for (int i = 0; i < notStreamedSymbols.size(); i += streamsPerConnection) {
+            openConnection(notStreamedSymbols.subList(i, Math.min(i + streamsPerConnection, notStreamedSymbols.size())), interval, null);
+        }
+
+        return handles;
+    }
+
+    /**
+     * Replace connections which are older than {@link #CONNECTION_MAX_AGE}.
+     * @see #reconnect(Duration)
+     */
+    public int reconnect() {
+        return reconnect(CONNECTION_MAX_AGE);
+    }
+
+    /**
+     * Replace connections older than max age, silent connections (see {@link #CONNECTION_SILENCE_TIMEOUT})
+     * and connections carrying streams of unsubscribed symbols, so socket stops streaming them.
+     * Replacement connection is opened first, the old one keeps delivering events until replacement receives
+     * its first event, then it's closed and bars missed by the old connection are loaded by REST.
+     * @return quantity of replaced connections.
+     */
+    public synchronized int reconnect(final Duration maxAge) {
+        long now = System.currentTimeMillis();
+        long openedBefore = now - maxAge.toMillis();
+        long silentSince = now - CONNECTION_SILENCE_TIMEOUT.toMillis();
+        int replaced = 0;
+        for (StreamConnection connection : List.copyOf(connections)) {
+            if (connection.openedAt > openedBefore && connection.lastEventAt > silentSince
+                    && connection.symbols.size() == connection.streams.size()) {
+                continue;
+            }
+            if (replace(connection)) {
+                replaced++;
+            }
+        }
+        if (replaced > 0) {
+            log.info("Replacing {} market data connections, {} connections are running.", replaced, connections.size());
+        }
+        return replaced;
+    }
+
+    public int getSubscriptionsCount() {
+        return subscriptions.values().stream()
+                .mapToInt(intervalSubscriptions -> intervalSubscriptions.values().stream()
+                        .mapToInt(subscription -> subscription.subscribers.size())
+                        .sum())
+                .sum();
+    }
+
+    /**
+     * Replace running connection by the new one streaming its subscribed symbols, connection without them is closed.
+     * @return false if connection wasn't replaced.
+     */
+    private synchronized boolean replace(final StreamConnection connection) {
+        if (!connections.remove(connection)) {
+            return false;
+        }
+        if (connection.symbols.isEmpty()) {
+            closeConnection(connection);
+            return false;
+        }
+        try {
+            openConnection(new ArrayList<>(connection.symbols), connection.interval, connection);
+        } catch (Exception e) {
+            log.error("Failed to replace market data connection #{}, next attempt in {} ms: {}", connection.id, FAILED_CONNECTION_REPLACE_DELAY, e.getMessage());
+            connections.add(connection);
+            gapFillExecutor.schedule(() -> replace(connection), FAILED_CONNECTION_REPLACE_DELAY, TimeUnit.MILLISECONDS);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param replaced connection which keeps streaming symbols until the new one receives first event.
+     */
+    private void openConnection(final List<String> symbols, final CandlestickInterval interval, final StreamConnection replaced) {
+        StreamConnection connection = new StreamConnection(connectionsCounter.incrementAndGet(), interval, Set.copyOf(symbols),
+                ConcurrentHashMap.newKeySet(), System.currentTimeMillis());
+        connection.symbols.addAll(symbols);
+        connection.lastEventAt = connection.openedAt;
+        connection.replaced = replaced;
+        Map<String, StreamSubscription> intervalSubscriptions = subscriptions.get(interval);
+        symbols.forEach(symbol -> intervalSubscriptions.get(symbol).connection = connection);
+
+        try {
+            connection.socket = openSocket(connection, intervalSubscriptions);
+        } catch (RuntimeException e) {
+            symbols.forEach(symbol -> Optional.ofNullable(intervalSubscriptions.get(symbol)).ifPresent(subscription -> subscription.connection = replaced));
+            throw e;
+        }
+        connections.add(connection);
+        log.debug("Opened market data connection #{} with {} streams of {}.", connection.id, symbols.size(), interval);
+    }
+
+    private Closeable openSocket(final StreamConnection connection, final Map<String, StreamSubscription> intervalSubscriptions) {
+        CandlestickInterval interval = connection.interval;
+        return marketInfo.openCandleStickEventsStream(String.join(",", connection.streams).toLowerCase(), interval,
+                new BinanceApiCallback<>() {
+                    @Override
+                    public void onResponse(final CandlestickEvent event) {
+                        if (connection.retired) {
+                            return;
+                        }
+                        connection.lastEventAt = System.currentTimeMillis();
+                        if (connection.replaced != null) {
+                            switchOver(connection);
+                        }
+                        StreamSubscription subscription = intervalSubscriptions.get(event.getSymbol());
+                        if (subscription == null || !subscription.isStreamedBy(connection)) {
+                            return;
+                        }
+                        // after checks, so events of retired connections and dropped streams are not journaled.
+                        if (eventJournal != null) {
+                            eventJournal.record(JournalEventType.CANDLESTICK, event);
+                        }
+                        if (!connection.bufferGapFill(event)) {
+                            deliver(subscription, event);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable cause) {
+                        if (connection.retired) {
+                            return;
+                        }
+                        log.error("Market data connection #{} ({} streams of {}) failure, it will be replaced in {} ms: {}",
+                                connection.id, connection.symbols.size(), interval, FAILED_CONNECTION_REPLACE_DELAY, cause.getMessage());
+                        gapFillExecutor.schedule(() -> replace(connection), FAILED_CONNECTION_REPLACE_DELAY, TimeUnit.MILLISECONDS);
+                    }
+                });
+    }
+
+    /**
+     * Close connections replaced by the given one and load bars they missed. Called with the first event of connection,
+     * before it's delivered: the last seen bar of every symbol is taken first, events of symbols which missed closed bars
+     * are buffered until missed bars are delivered.
+     * Synchronized with subscribing and replacing, which change symbols and chain of replaced connections too.
+     */
+    private synchronized void switchOver(final StreamConnection connection) {
+        StreamConnection replaced = connection.replaced;
+        if (replaced == null || connection.retired) {
+            // switched over by the previous event or closed meanwhile.
+            return;
+        }
+        connection.replaced = null;
+        Map<String, StreamSubscription> intervalSubscriptions = subscriptions.get(connection.interval);
+        long barDuration = CandlestickToBaseBarMapper.duration(connection.interval).toMillis();
+        long now = System.currentTimeMillis();
+        Map<String, Long> missedOpenTimes = new HashMap<>();
+        for (String symbol : connection.symbols) {
+            StreamSubscription subscription = intervalSubscriptions.get(symbol);
+            long missedOpenTime = subscription == null ? Long.MIN_VALUE : subscription.missedOpenTime(barDuration);
+            if (missedOpenTime != Long.MIN_VALUE && missedOpenTime + barDuration <= now) {
+                missedOpenTimes.put(symbol, missedOpenTime);
+                connection.gapFills.put(symbol, new ArrayList<>());
+            }
+        }
+        closeConnection(replaced);
+        log.debug("Market data connection #{} replaced #{}, {} symbols missed bars.", connection.id, replaced.id, missedOpenTimes.size());
+        if (!missedOpenTimes.isEmpty()) {
+            gapFillExecutor.execute(() -> fillGaps(connection, missedOpenTimes));
+        }
+    }
+
+    /**
+     * Load by REST closed bars, final events of which were not received, then deliver events of connection
+     * buffered while they were loading.
+     * @param missedOpenTimes open time of the first missed bar by symbol.
+     */
+    private void fillGaps(final StreamConnection connection, final Map<String, Long> missedOpenTimes) {
+        Map<String, StreamSubscription> intervalSubscriptions = subscriptions.get(connection.interval);
+        missedOpenTimes.forEach((symbol, missedOpenTime) -> {
+            StreamSubscription subscription = intervalSubscriptions.get(symbol);
+            try {
+                if (subscription != null) {
+                    long now = System.currentTimeMillis();
+                    marketInfo.getCandleSticks(symbol, connection.interval, GAP_FILL_LIMIT, missedOpenTime).stream()
+                            .filter(candle -> candle.getCloseTime() < now)
+                            .forEach(candle -> CandlestickToEventMapper.map(symbol, candle).ifPresent(event -> {
+                                event.setIntervalId(connection.interval.getIntervalId());
+                                event.setEventTime(candle.getCloseTime());
+                                event.setBarFinal(true);
+                                deliver(subscription, event);
+                            }));
+                }
+            } catch (Exception e) {
+                log.warn("Failed to fill gap of {} {} bars since {}: {}", symbol, connection.interval, missedOpenTime, e.getMessage());
+            } finally {
+                connection.releaseGapFill(symbol, event -> {
+                    StreamSubscription current = intervalSubscriptions.get(symbol);
+                    if (current != null && current.isStreamedBy(connection)) {
+                        deliver(current, event);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return running connection, socket of which still streams symbol.
+     */
+    private Optional<StreamConnection> findCarrying(final String symbol, final CandlestickInterval interval) {
+        return connections.stream()
+                .filter(connection -> connection.interval == interval && !connection.retired && connection.streams.contains(symbol))
+                .findFirst();
+    }
+
+    private void deliver(final StreamSubscription subscription, final CandlestickEvent event) {
+        if (subscription == null) {
+            return;
+        }
+        synchronized (subscription) {
+            if (subscription.accept(event)) {
+                fanOut(subscription, event);
+            }
+        }
+    }
+
+    private void fanOut(final StreamSubscription subscription, final CandlestickEvent event) {
+        for (Subscriber subscriber : subscription.subscribers) {
+            try {
+                subscriber.callback.onResponse(event);
+            } catch (Exception e) {
+                log.error("Strategy '{}' failed to handle event of {}: {}", subscriber.strategy.getName(), event.getSymbol(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private synchronized void unsubscribe(final Subscriber subscriber) {
+        StreamSubscription subscription = subscriber.subscription;
+        if (!subscription.subscribers.remove(subscriber)) {
+            return;
+        }
+        if (subscriber.callback instanceof SymbolDispatcher.DispatchingCallback dispatching) {
+            dispatching.release(subscription.symbol, subscription.interval);
+        }
+        if (!subscription.subscribers.isEmpty()) {
+            return;
+        }
+        subscriptions.get(subscription.interval).remove(subscription.symbol);
+
+        StreamConnection connection = subscription.connection;
+        if (connection != null && connection.symbols.remove(subscription.symbol) && connection.symbols.isEmpty()) {
+            closeConnection(connection);
+        }
+    }
+
+    private void closeConnection(final StreamConnection connection) {
+        connections.remove(connection);
+        connection.retired = true;
+        Optional.ofNullable(connection.replaced).ifPresent(this::closeConnection);
+        try {
+            connection.socket.close();
+            log.debug("Market data connection #{} of {} closed.", connection.id, connection.interval);
+        } catch (IOException e) {
+            log.error("Error while closing market data connection #{}: {}", connection.id, e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        gapFillExecutor.shutdownNow();
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class StreamSubscription {
+        final String symbol;
+        final CandlestickInterval interval;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        volatile StreamConnection connection;
+        long lastOpenTime = Long.MIN_VALUE;
+        long lastEventTime;
+        boolean lastFinal;
+
+        /**
+         * @return false if event is older than the last delivered one or bar of event was already delivered as final.
+         */
+        synchronized boolean accept(final CandlestickEvent event) {
+            long openTime = event.getOpenTime();
+            boolean barFinal = Boolean.TRUE.equals(event.getBarFinal());
+            if (openTime < lastOpenTime
+                    || openTime == lastOpenTime && (lastFinal || !barFinal && event.getEventTime() < lastEventTime)) {
+                return false;
+            }
+            lastOpenTime = openTime;
+            lastEventTime = event.getEventTime();
+            lastFinal = barFinal;
+            return true;
+        }
+
+        /**
+         * @return true if events of connection are delivered to subscription: it's the connection of subscription
+         * or one of connections replaced by it, which keep streaming until replacement receives its first event.
+         * Events of connections, from which symbol was dropped, are ignored, so the same stream is never delivered twice.
+         */
+        boolean isStreamedBy(final StreamConnection streaming) {
+            for (StreamConnection current = connection; current != null; current = current.replaced) {
+                if (current == streaming) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return open time of the first bar, final event of which was not delivered, or Long.MIN_VALUE if nothing was delivered.
+         */
+        synchronized long missedOpenTime(final long barDuration) {
+            if (lastOpenTime == Long.MIN_VALUE) {
+                return Long.MIN_VALUE;
+            }
+            return lastFinal ? lastOpenTime + barDuration : lastOpenTime;
+        }
+    }
+
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    private class Subscriber implements Closeable {
+        StreamSubscription subscription;
+        TradingStrategy strategy;
+        BinanceApiCallback<CandlestickEvent> callback;
+
+        @Override
+        public void close() {
+            unsubscribe(this);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class StreamConnection {
+        final int id;
+        final CandlestickInterval interval;
+        /**
+         * Symbols streamed by socket.
+         */
+        final Set<String> streams;
+        /**
+         * Subscribed symbols, streams of unsubscribed ones are dropped on replacement of connection.
+         */
+        final Set<String> symbols;
+        final long openedAt;
+        /**
+         * Events of symbols, bars missed by replaced connection of which are loading, by symbol.
+         */
+        final Map<String, List<CandlestickEvent>> gapFills = new ConcurrentHashMap<>();
+        volatile Closeable socket;
+        volatile StreamConnection replaced;
+        volatile boolean retired;
+        volatile long lastEventAt;
+
+        /**
+         * @return true if event was buffered, because missed bars of its symbol are loading.
+         */
+        boolean bufferGapFill(final CandlestickEvent event) {
+            List<CandlestickEvent> buffer = gapFills.get(event.getSymbol());
+            if (buffer == null) {
+                return false;
+            }
+            synchronized (buffer) {
+                if (gapFills.get(event.getSymbol()) != buffer) {
+                    return false;
+                }
+                buffer.add(event);
+                return true;
+            }
+        }
+
+        /**
+         * Pass buffered events of symbol to consumer, the next events of symbol are not buffered.
+         */
+        void releaseGapFill(final String symbol, final Consumer<CandlestickEvent> consumer) {
+            List<CandlestickEvent> buffer = gapFills.get(symbol);
+            if (buffer == null) {
+                return;
+            }
+            synchronized (buffer) {
+                buffer.forEach(consumer);
+                gapFills.remove(symbol);
+            }
+        }
+    }
+}
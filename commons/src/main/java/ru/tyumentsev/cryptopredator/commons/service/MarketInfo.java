@@ -28,6 +28,8 @@ import com.binance.api.client.domain.market.TickerPrice;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolMap;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolRegistry;
 import ru.tyumentsev.cryptopredator.commons.domain.PlacedOrder;
 
 @RequiredArgsConstructor
@@ -39,12 +41,14 @@ public class MarketInfo implements TradingService {
     BinanceApiRestClient restClient;
     BinanceApiWebSocketClient binanceApiWebSocketClient;
 
+    @Getter
+    SymbolRegistry symbolRegistry = SymbolRegistry.shared();
     List<String> fiatAndStableCoins = List.of("EURUSDT", "AUDUSDT", "GBPUSDT", "BUSDUSDT", "USDCUSDT", "USDPUSDT", "BNBUSDT");
     /**
      * Store flags, which indicates that order already placed.
      */
     @Getter
-    Map<String, PlacedOrder> placedOrders = new ConcurrentHashMap<>();
+    SymbolMap<PlacedOrder> placedOrders = new SymbolMap<>(symbolRegistry);
     Map<String, List<String>> availablePairs = new HashMap<>();
     @Getter
     Map<String, List<String>> cheapPairs = new ConcurrentHashMap<>();
@@ -59,6 +63,7 @@ public class MarketInfo implements TradingService {
                         && !fiatAndStableCoins.contains(symbolInfo.getSymbol()))
                 .map(SymbolInfo::getSymbol)
                 .collect(Collectors.toList());
+        symbolRegistry.registerAll(pairs);
         availablePairs.put(quoteAsset, pairs);
         return pairs;
     }
@@ -107,14 +112,21 @@ public class MarketInfo implements TradingService {
         return restClient.getCandlestickBars(symbol, interval, limit);
     }
 
+    public List<Candlestick> getCandleSticks(String symbol, CandlestickInterval interval, Integer limit, Long startTime) {
+        return restClient.getCandlestickBars(symbol, interval, limit, startTime, null);
+    }
+
     public Closeable openCandleStickEventsStream(String asset, CandlestickInterval interval, BinanceApiCallback<CandlestickEvent> callback) {
         return binanceApiWebSocketClient.onCandlestickEvent(asset, interval, callback);
     }
 
     public boolean pairOrderIsProcessing(String symbol, Integer strategyId) {
-        return Optional.ofNullable(placedOrders.get(symbol))
-                .map(order -> order.strategyId().equals(strategyId))
-                .orElse(false);
+        return pairOrderIsProcessing(symbolRegistry.idOf(symbol), strategyId);
+    }
+
+    public boolean pairOrderIsProcessing(int symbolId, Integer strategyId) {
+        PlacedOrder order = placedOrders.get(symbolId);
+        return order != null && order.strategyId().equals(strategyId);
     }
 
     public void pairOrderPlaced(String symbol, final Integer strategyId, float qty, final OrderSide side) {
@@ -0,0 +1,313 @@
+package ru.tyumentsev.cryptopredator.commons.service;
+
+import com.binance.api.client.BinanceApiCallback;
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolMap;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolRegistry;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Moves handling of market events from websocket threads to fixed lanes.
+ * Every symbol is hashed to one lane, so events of symbol are handled in order of receiving,
+ * while slow symbol delays only symbols of its lane.
+ * Candlestick events wait for handling in mailboxes which keep only the latest update of forming bar.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
+@Slf4j
+@SuppressWarnings("unused")
+public class SymbolDispatcher implements TradingService {
+
+    public static final int DEFAULT_LANES_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    @Getter
+    String name;
+    Lane[] lanes;
+    LongAdder coalescedCount = new LongAdder();
+    LongAdder droppedCount = new LongAdder();
+
+    public SymbolDispatcher(final String name) {
+        this(name, DEFAULT_LANES_COUNT);
+    }
+
+    public SymbolDispatcher(final String name, final int lanesCount) {
+        if (lanesCount <= 0) {
+            throw new IllegalArgumentException("Lanes count must be strictly positive");
+        }
+        this.name = name;
+        this.lanes = new Lane[lanesCount];
+        for (int i = 0; i < lanesCount; i++) {
+            lanes[i] = new Lane(i);
+        }
+    }
+
+    /**
+     * Run task on the lane of symbol.
+     */
+    public void dispatch(final String symbol, final Runnable task) {
+        lanes[laneOf(symbol)].queue.add(new Task(task, System.nanoTime()));
+    }
+
+    /**
+     * Executor running tasks on the lane of symbol, in order with events of symbol.
+     */
+    public Executor laneExecutor(final String symbol) {
+        return task -> dispatch(symbol, task);
+    }
+
+    /**
+     * Wrap callback so events are handled on lanes instead of websocket thread.
+     * If callback lags, not handled update of forming bar is replaced by newer one,
+     * final events of bars are always delivered.
+     */
+    public DispatchingCallback dispatching(final BinanceApiCallback<CandlestickEvent> callback) {
+        return new DispatchingCallback(SymbolRegistry.shared(), (event, symbolId) -> callback.onResponse(event), callback);
+    }
+
+    /**
+     * Same as {@link #dispatching(BinanceApiCallback)}, but symbol of events is resolved to id once per symbol of stream,
+     * so handler gets id with every event and reads state of symbol by id.
+     */
+    public DispatchingCallback dispatching(final SymbolRegistry registry, final ObjIntConsumer<CandlestickEvent> handler) {
+        return new DispatchingCallback(registry, handler, event -> { });
+    }
+
+    public int laneOf(final String symbol) {
+        return Math.floorMod(symbol.hashCode(), lanes.length);
+    }
+
+    public int getLanesCount() {
+        return lanes.length;
+    }
+
+    public int getQueueDepth(final int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Time between dispatching and start of handling of the last task of lane.
+     */
+    public double getLagMillis(final int lane) {
+        return lanes[lane].lagNanos / 1_000_000D;
+    }
+
+    public long getProcessedCount(final int lane) {
+        return lanes[lane].processed.get();
+    }
+
+    /**
+     * Quantity of forming bar updates replaced by newer update before handling.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Quantity of forming bar updates dropped because final event of the bar arrived before handling.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private record Task(Runnable runnable, long dispatchedAt) {
+    }
+
+    /**
+     * Callback putting events into mailboxes of (symbol, interval), mailboxes are kept by id of symbol per interval.
+     * Mailbox of stream should be released when stream is unsubscribed, {@link MarketDataHub} does it on closing of subscription.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    public class DispatchingCallback implements BinanceApiCallback<CandlestickEvent> {
+        SymbolRegistry registry;
+        ObjIntConsumer<CandlestickEvent> handler;
+        /**
+         * Callback which failures of stream are passed to.
+         */
+        BinanceApiCallback<CandlestickEvent> failures;
+        /**
+         * Mailboxes by interval id.
+         */
+        Map<String, SymbolMap<Mailbox>> mailboxes = new ConcurrentHashMap<>();
+
+        DispatchingCallback(final SymbolRegistry registry, final ObjIntConsumer<CandlestickEvent> handler,
+                            final BinanceApiCallback<CandlestickEvent> failures) {
+            this.registry = registry;
+            this.handler = handler;
+            this.failures = failures;
+        }
+
+        @Override
+        public void onResponse(final CandlestickEvent event) {
+            SymbolMap<Mailbox> intervalMailboxes = mailboxes.get(event.getIntervalId());
+            if (intervalMailboxes == null) {
+                intervalMailboxes = mailboxes.computeIfAbsent(event.getIntervalId(), key -> new SymbolMap<>(registry));
+            }
+            int symbolId = registry.register(event.getSymbol());
+            Mailbox mailbox = intervalMailboxes.get(symbolId);
+            if (mailbox == null) {
+                mailbox = intervalMailboxes.computeIfAbsent(symbolId, symbol -> new Mailbox(symbol, symbolId, handler));
+            }
+            if (mailbox.offer(event)) {
+                dispatch(mailbox.symbol, mailbox);
+            }
+        }
+
+        @Override
+        public void onFailure(final Throwable cause) {
+            failures.onFailure(cause);
+        }
+
+        /**
+         * Forget mailbox of unsubscribed stream, events already in it are still handled.
+         */
+        public void release(final String symbol, final CandlestickInterval interval) {
+            Optional.ofNullable(mailboxes.get(interval.getIntervalId())).ifPresent(intervalMailboxes -> intervalMailboxes.remove(symbol));
+        }
+
+        public int getMailboxesCount() {
+            return mailboxes.values().stream().mapToInt(SymbolMap::size).sum();
+        }
+    }
+
+    /**
+     * Not handled events of one (symbol, interval) of callback. Handles one event per lane task,
+     * so symbols of lane are served in turn.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private class Mailbox implements Runnable {
+        final String symbol;
+        final int symbolId;
+        final ObjIntConsumer<CandlestickEvent> handler;
+        final Deque<CandlestickEvent> finalEvents = new ArrayDeque<>();
+        CandlestickEvent latestEvent;
+        boolean scheduled;
+
+        Mailbox(final String symbol, final int symbolId, final ObjIntConsumer<CandlestickEvent> handler) {
+            this.symbol = symbol;
+            this.symbolId = symbolId;
+            this.handler = handler;
+        }
+
+        /**
+         * @return true if mailbox should be scheduled on lane.
+         */
+        synchronized boolean offer(final CandlestickEvent event) {
+            if (Boolean.TRUE.equals(event.getBarFinal())) {
+                if (latestEvent != null && latestEvent.getOpenTime() <= event.getOpenTime()) {
+                    latestEvent = null;
+                    droppedCount.increment();
+                }
+                finalEvents.add(event);
+            } else {
+                if (latestEvent != null) {
+                    coalescedCount.increment();
+                }
+                latestEvent = event;
+            }
+            if (scheduled) {
+                return false;
+            }
+            scheduled = true;
+            return true;
+        }
+
+        private synchronized CandlestickEvent poll() {
+            if (!finalEvents.isEmpty()) {
+                return finalEvents.poll();
+            }
+            CandlestickEvent event = latestEvent;
+            latestEvent = null;
+            return event;
+        }
+
+        private synchronized boolean reschedule() {
+            scheduled = !finalEvents.isEmpty() || latestEvent != null;
+            return scheduled;
+        }
+
+        @Override
+        public void run() {
+            CandlestickEvent event = poll();
+            try {
+                if (event != null) {
+                    handler.accept(event, symbolId);
+                }
+            } finally {
+                if (reschedule()) {
+                    dispatch(symbol, this);
+                }
+            }
+        }
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private class Lane implements Runnable {
+        final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+        final AtomicLong processed = new AtomicLong();
+        final Thread thread;
+        volatile long lagNanos;
+
+        Lane(final int id) {
+            thread = new Thread(this, String.format("%s-lane-%d", name, id));
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                lagNanos = System.nanoTime() - task.dispatchedAt();
+                try {
+                    task.runnable().run();
+                } catch (Exception e) {
+                    log.error("Error while handling task on {}: {}", thread.getName(), e.getMessage(), e);
+                }
+                processed.incrementAndGet();
+            }
+        }
+    }
+}
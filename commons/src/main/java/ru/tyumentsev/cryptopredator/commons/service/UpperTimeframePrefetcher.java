@@ -0,0 +1,180 @@
+package ru.tyumentsev.cryptopredator.commons.service;
+
+import com.binance.api.client.domain.market.CandlestickInterval;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import ru.tyumentsev.cryptopredator.commons.cache.RollupEngine;
+import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Requests bars of higher timeframes for {@link RollupEngine} in background, so checks of higher timeframes
+ * never wait for exchange. Symbols of interest are refreshed right after every close of bar of each interval
+ * of engine, single symbol could be refreshed at once when it becomes interesting (e.g. it's taken on monitoring).
+ * Requests go in parallel, but not more often than rate budget allows, only one request per (symbol, interval)
+ * is in flight.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
+@Slf4j
+@SuppressWarnings("unused")
+public class UpperTimeframePrefetcher implements TradingService {
+
+    public static final int DEFAULT_CONCURRENCY = 2;
+    public static final int DEFAULT_REQUESTS_PER_SECOND = 5;
+    /**
+     * Pause after close of bar before refreshing, so exchange has the bar closed, milliseconds.
+     */
+    public static final long CLOSE_DELAY = 2_000L;
+
+    RollupEngine rollupEngine;
+    ExecutorService executor;
+    ScheduledExecutorService scheduler;
+    /**
+     * Minimal pause between starts of requests, nanoseconds.
+     */
+    long permitInterval;
+    Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    AtomicBoolean started = new AtomicBoolean();
+    LongAdder refreshedCount = new LongAdder();
+    LongAdder failedCount = new LongAdder();
+    @NonFinal
+    volatile Supplier<? extends Collection<String>> symbols = Collections::emptyList;
+    @NonFinal
+    long nextPermitTime = Long.MIN_VALUE;
+
+    public UpperTimeframePrefetcher(RollupEngine rollupEngine) {
+        this(rollupEngine, DEFAULT_CONCURRENCY, DEFAULT_REQUESTS_PER_SECOND);
+    }
+
+    public UpperTimeframePrefetcher(RollupEngine rollupEngine, int concurrency, int requestsPerSecond) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException(String.format("Requests per second must be positive, but it's %s", requestsPerSecond));
+        }
+        this.rollupEngine = rollupEngine;
+        this.permitInterval = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        AtomicInteger threadsCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "upper-timeframe-prefetch-" + threadsCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upper-timeframe-prefetch-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start refreshing of symbols after every close of bar of intervals of engine, repeated calls only replace symbols.
+     * @param symbols symbols of interest, asked on every close.
+     */
+    public void start(final Supplier<? extends Collection<String>> symbols) {
+        this.symbols = symbols;
+        if (started.compareAndSet(false, true)) {
+            rollupEngine.getIntervals().forEach(this::scheduleNextClose);
+        }
+    }
+
+    /**
+     * Refresh bars of all intervals of symbol in background, symbols with complete history are skipped.
+     */
+    public void prefetch(final String symbol) {
+        rollupEngine.getIntervals().forEach(interval -> prefetch(symbol, interval));
+    }
+
+    public void prefetch(final String symbol, final CandlestickInterval interval) {
+        if (!rollupEngine.needsHistory(symbol, interval)) {
+            return;
+        }
+        String key = symbol + ":" + interval.getIntervalId();
+        if (inFlight.add(key)) {
+            executor.execute(() -> refresh(key, symbol, interval));
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public long getRefreshedCount() {
+        return refreshedCount.sum();
+    }
+
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    private void refresh(final String key, final String symbol, final CandlestickInterval interval) {
+        try {
+            acquirePermit();
+            if (rollupEngine.refresh(symbol, interval)) {
+                refreshedCount.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failedCount.increment();
+            log.warn("Failed to load {} candles of {}, next attempt after close of bar: {}", interval, symbol, e.getMessage());
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    /**
+     * Wait for turn of request, turns are given in order of calls.
+     */
+    private void acquirePermit() throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permitTime = Math.max(nextPermitTime, now);
+            nextPermitTime = permitTime + permitInterval;
+            wait = permitTime - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private void scheduleNextClose(final CandlestickInterval interval) {
+        long duration = CandlestickToBaseBarMapper.duration(interval).toMillis();
+        long now = System.currentTimeMillis();
+        long nextClose = now - Math.floorMod(now, duration) + duration;
+        scheduler.schedule(() -> {
+            try {
+                symbols.get().forEach(symbol -> prefetch(symbol, interval));
+            } catch (Exception e) {
+                log.error("Error while prefetching {} candles: {}", interval, e.getMessage(), e);
+            } finally {
+                if (!scheduler.isShutdown()) {
+                    scheduleNextClose(interval);
+                }
+            }
+        }, nextClose - now + CLOSE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ru.tyumentsev.cryptopredator.commons.archive;
+
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CandleArchiveTest {
+
+    private static final long MINUTE = 60_000L;
+    /**
+     * 2024-01-31T23:55:00Z, so candles of tests cross the border of months.
+     */
+    private static final long START = 1_706_745_300_000L;
+
+    @TempDir
+    Path directory;
+    private CandleArchive archive;
+
+    @BeforeEach
+    void createArchive() {
+        archive = new CandleArchive(directory);
+    }
+
+    private static Candlestick candleOf(final int i) {
+        Candlestick candle = new Candlestick();
+        candle.setOpenTime(START + i * MINUTE);
+        candle.setCloseTime(START + (i + 1) * MINUTE - 1);
+        candle.setOpen(String.valueOf(100 + i));
+        candle.setHigh((102 + i) + ".25");
+        candle.setLow((99 + i) + ".5");
+        candle.setClose((101 + i) + ".125");
+        candle.setVolume(i % 3 == 0 ? "0" : "12.00100000");
+        candle.setQuoteAssetVolume("1234.5678");
+        candle.setTakerBuyBaseAssetVolume("6.0005");
+        candle.setTakerBuyQuoteAssetVolume("617");
+        candle.setNumberOfTrades(10L + i * i);
+        return candle;
+    }
+
+    private static void assertSameCandle(final Candlestick expected, final Candlestick actual) {
+        assertEquals(expected.getOpenTime(), actual.getOpenTime());
+        assertEquals(expected.getCloseTime(), actual.getCloseTime());
+        assertEquals(Double.parseDouble(expected.getOpen()), Double.parseDouble(actual.getOpen()));
+        assertEquals(Double.parseDouble(expected.getHigh()), Double.parseDouble(actual.getHigh()));
+        assertEquals(Double.parseDouble(expected.getLow()), Double.parseDouble(actual.getLow()));
+        assertEquals(Double.parseDouble(expected.getClose()), Double.parseDouble(actual.getClose()));
+        assertEquals(Double.parseDouble(expected.getVolume()), Double.parseDouble(actual.getVolume()));
+        assertEquals(Double.parseDouble(expected.getQuoteAssetVolume()), Double.parseDouble(actual.getQuoteAssetVolume()));
+        assertEquals(Double.parseDouble(expected.getTakerBuyBaseAssetVolume()), Double.parseDouble(actual.getTakerBuyBaseAssetVolume()));
+        assertEquals(Double.parseDouble(expected.getTakerBuyQuoteAssetVolume()), Double.parseDouble(actual.getTakerBuyQuoteAssetVolume()));
+        assertEquals(expected.getNumberOfTrades(), actual.getNumberOfTrades());
+    }
+
+    private List<Candlestick> readAll() {
+        List<Candlestick> candles = new ArrayList<>();
+        archive.reader("BTCUSDT", CandlestickInterval.ONE_MINUTE).forEach(candles::add);
+        return candles;
+    }
+
+    @Test
+    void blockIsDecodedAsEncoded() {
+        List<Candlestick> candles = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // gap in open times is kept too.
+            candles.add(candleOf(i == 10 ? 15 : i));
+        }
+
+        CandleBlock block = CandleBlock.decode(ByteBuffer.wrap(CandleBlock.of(candles).encode()));
+
+        assertEquals(candles.size(), block.size());
+        for (int i = 0; i < candles.size(); i++) {
+            assertSameCandle(candles.get(i), block.candle(i));
+        }
+        assertEquals(101.125, block.value(CandleBlock.CLOSE, 0));
+        assertEquals("12.001", block.decimal(CandleBlock.VOLUME, 1));
+    }
+
+    @Test
+    void brokenBlockIsRejected() {
+        byte[] encoded = CandleBlock.of(List.of(candleOf(0))).encode();
+        encoded[0] = 0;
+
+        assertThrows(IllegalStateException.class, () -> CandleBlock.decode(ByteBuffer.wrap(encoded)));
+    }
+
+    @Test
+    void candlesAppendedAfterFlushAreAddedToBlockOfMonth() {
+        try (CandleArchiveWriter writer = archive.writer("BTCUSDT", CandlestickInterval.ONE_MINUTE)) {
+            for (int i = 0; i < 10; i++) {
+                writer.append(candleOf(i));
+            }
+            writer.flush();
+            writer.flush();
+            for (int i = 10; i < 20; i++) {
+                writer.append(candleOf(i));
+            }
+            writer.flush();
+            assertFalse(writer.append(candleOf(19)));
+        }
+
+        List<Candlestick> candles = readAll();
+        assertEquals(List.of(YearMonth.of(2024, 1), YearMonth.of(2024, 2)), archive.months("BTCUSDT", CandlestickInterval.ONE_MINUTE));
+        assertEquals(20, candles.size());
+        for (int i = 0; i < candles.size(); i++) {
+            assertSameCandle(candleOf(i), candles.get(i));
+        }
+    }
+
+    @Test
+    void newWriterAppendsToArchivedMonth() {
+        try (CandleArchiveWriter writer = archive.writer("BTCUSDT", CandlestickInterval.ONE_MINUTE)) {
+            for (int i = 0; i < 10; i++) {
+                writer.append(candleOf(i));
+            }
+        }
+        try (CandleArchiveWriter writer = archive.writer("BTCUSDT", CandlestickInterval.ONE_MINUTE)) {
+            assertFalse(writer.append(candleOf(9)));
+            for (int i = 10; i < 15; i++) {
+                writer.append(candleOf(i));
+            }
+            assertEquals(5, writer.getWritten());
+        }
+
+        List<Candlestick> candles = readAll();
+        assertEquals(15, candles.size());
+        assertSameCandle(candleOf(0), candles.get(0));
+        assertSameCandle(candleOf(14), candles.get(14));
+    }
+}
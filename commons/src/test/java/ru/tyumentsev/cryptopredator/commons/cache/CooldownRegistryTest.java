@@ -0,0 +1,85 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CooldownRegistryTest {
+
+    private static final long WAIT_MILLIS = 5_000;
+
+    private final TimingWheel wheel = new TimingWheel(1, 512);
+    private final List<String> expired = new CopyOnWriteArrayList<>();
+    private final CooldownRegistry registry = new CooldownRegistry(wheel, expired::add);
+
+    private void awaitExpired(final int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (expired.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, expired.size());
+    }
+
+    @Test
+    void cooldownExpiresAtDeadline() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 50;
+        registry.start("BTCUSDT", deadline);
+
+        assertTrue(registry.coolingDown("BTCUSDT"));
+        assertTrue(registry.coolingDown(SymbolRegistry.shared().idOf("BTCUSDT")));
+        assertFalse(registry.coolingDown("ETHUSDT"));
+
+        awaitExpired(1);
+        assertTrue(System.currentTimeMillis() >= deadline);
+        assertEquals(List.of("BTCUSDT"), expired);
+        assertFalse(registry.coolingDown("BTCUSDT"));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void prolongedCooldownExpiresByLastDeadline() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        registry.start("BTCUSDT", now + 20);
+        // longer than rotation of wheel.
+        long deadline = now + 700;
+        registry.start("BTCUSDT", deadline);
+        registry.start("ETHUSDT", now + 30);
+
+        awaitExpired(1);
+        assertEquals(List.of("ETHUSDT"), expired);
+        assertTrue(registry.coolingDown("BTCUSDT"));
+
+        awaitExpired(2);
+        assertTrue(System.currentTimeMillis() >= deadline);
+        assertEquals(List.of("ETHUSDT", "BTCUSDT"), expired);
+    }
+
+    @Test
+    void cancelledCooldownIsNotExpired() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        registry.start("BTCUSDT", now + 20);
+        registry.start("ETHUSDT", now + 60);
+
+        registry.cancel("BTCUSDT");
+
+        assertFalse(registry.coolingDown("BTCUSDT"));
+        awaitExpired(1);
+        assertEquals(List.of("ETHUSDT"), expired);
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void cooldownOfPassedDeadlineIsNotRunning() throws InterruptedException {
+        // wheel is idle before the first cooldown, but its clock isn't stale.
+        Thread.sleep(20);
+        registry.start("BTCUSDT", System.currentTimeMillis() - 10);
+
+        assertFalse(registry.coolingDown("BTCUSDT"));
+        awaitExpired(1);
+    }
+}
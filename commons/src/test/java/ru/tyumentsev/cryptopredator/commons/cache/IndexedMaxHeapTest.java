@@ -0,0 +1,134 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexedMaxHeapTest {
+
+    /**
+     * Remove ids from top one by one.
+     */
+    private static List<Integer> drain(final IndexedMaxHeap heap) {
+        List<Integer> ids = new ArrayList<>();
+        while (heap.peek() != IndexedMaxHeap.EMPTY) {
+            ids.add(heap.peek());
+            assertTrue(heap.remove(heap.peek()));
+        }
+        return ids;
+    }
+
+    /**
+     * Ids in expected order of heap: by weight descending, then by id.
+     */
+    private static List<Integer> expectedOrder(final TreeMap<Integer, Integer> weights) {
+        List<Integer> ids = new ArrayList<>(weights.keySet());
+        ids.sort(Comparator.<Integer>comparingInt(weights::get).reversed().thenComparingInt(id -> id));
+        return ids;
+    }
+
+    @Test
+    void idsComeInOrderOfWeight() {
+        IndexedMaxHeap heap = new IndexedMaxHeap();
+        TreeMap<Integer, Integer> weights = new TreeMap<>();
+        Random random = new Random(42);
+        // more ids than initial capacity, so arrays grow.
+        for (int i = 0; i < 200; i++) {
+            int id = random.nextInt(100);
+            int weight = random.nextInt(50) - 25;
+            heap.put(id, weight);
+            weights.put(id, weight);
+        }
+
+        assertEquals(weights.size(), heap.size());
+        weights.forEach((id, weight) -> assertEquals(weight, heap.weightOf(id)));
+        assertEquals(expectedOrder(weights), drain(heap));
+        assertEquals(0, heap.size());
+    }
+
+    @Test
+    void updateMovesIdUpAndDown() {
+        IndexedMaxHeap heap = new IndexedMaxHeap();
+        for (int id = 0; id < 10; id++) {
+            heap.put(id, id * 10);
+        }
+        assertEquals(9, heap.peek());
+
+        assertTrue(heap.update(3, 1000));
+        assertEquals(3, heap.peek());
+        assertTrue(heap.update(3, -1));
+        assertEquals(9, heap.peek());
+        assertTrue(heap.update(9, 5));
+        assertEquals(8, heap.peek());
+
+        assertFalse(heap.update(10, 2000));
+        assertFalse(heap.contains(10));
+        assertEquals(List.of(8, 7, 6, 5, 4, 2, 1, 9, 0, 3), drain(heap));
+    }
+
+    @Test
+    void removeByIdKeepsOrderOfOthers() {
+        IndexedMaxHeap heap = new IndexedMaxHeap();
+        TreeMap<Integer, Integer> weights = new TreeMap<>();
+        for (int id = 0; id < 31; id++) {
+            int weight = (id * 7) % 31;
+            heap.put(id, weight);
+            weights.put(id, weight);
+        }
+
+        // ids from the middle of heap and the top.
+        for (int id : new int[]{13, 27, 0, heap.peek()}) {
+            assertTrue(heap.remove(id));
+            assertFalse(heap.contains(id));
+            assertEquals(0, heap.weightOf(id));
+            weights.remove(id);
+        }
+        assertFalse(heap.remove(13));
+        assertFalse(heap.remove(1000));
+
+        assertEquals(weights.size(), heap.size());
+        assertEquals(expectedOrder(weights), drain(heap));
+        assertEquals(IndexedMaxHeap.EMPTY, heap.peek());
+    }
+
+    @Test
+    void lowestIdIsOnTopOfEqualWeights() {
+        IndexedMaxHeap heap = new IndexedMaxHeap();
+        heap.put(5, 1);
+        heap.put(7, 1);
+        assertEquals(5, heap.peek());
+        heap.put(2, 1);
+        assertEquals(2, heap.peek());
+        heap.put(2, 0);
+        assertEquals(5, heap.peek());
+        heap.put(7, 2);
+        heap.put(3, 2);
+
+        assertEquals(List.of(3, 7, 5, 2), drain(heap));
+    }
+
+    @Test
+    void clearRemovesAllIds() {
+        IndexedMaxHeap heap = new IndexedMaxHeap();
+        heap.put(1, 1);
+        heap.put(20, 2);
+
+        heap.clear();
+
+        assertEquals(IndexedMaxHeap.EMPTY, heap.peek());
+        assertFalse(heap.contains(20));
+        heap.put(1, 3);
+        assertEquals(1, heap.peek());
+        assertEquals(1, heap.size());
+        assertThrows(IllegalArgumentException.class, () -> heap.put(-1, 1));
+    }
+}
@@ -0,0 +1,132 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.Bar;
+import org.ta4j.core.num.DoubleNum;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrimitiveBarSeriesTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private static PrimitiveBarSeries seriesOf(final int maximumBarCount, final int barCount) {
+        PrimitiveBarSeries series = new PrimitiveBarSeries("TEST", Duration.ofMinutes(1), maximumBarCount);
+        for (int i = 0; i < barCount; i++) {
+            addBar(series, i, false);
+        }
+        return series;
+    }
+
+    /**
+     * Bar #i opens at i minutes and closes at price i, end time is the last millisecond of bar like in candles of exchange.
+     */
+    private static void addBar(final PrimitiveBarSeries series, final int i, final boolean replace) {
+        series.addBar((i + 1) * MINUTE - 1, i, i + 0.5, i - 0.5, i, 1, i, 1, replace);
+    }
+
+    @Test
+    void ringWrapAroundKeepsLastBars() {
+        PrimitiveBarSeries series = seriesOf(3, 7);
+
+        assertEquals(3, series.getBarCount());
+        assertEquals(4, series.getRemovedBarsCount());
+        assertEquals(0, series.getBeginIndex());
+        assertEquals(6, series.getEndIndex());
+        assertEquals(4, series.getClose(4));
+        assertEquals(6, series.getClose(6));
+        assertEquals(7 * MINUTE - 1, series.getEndTimeMillis(6));
+        // like in BaseBarSeries, index of removed bar points to the first bar.
+        assertEquals(4, series.getClose(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> series.getClose(7));
+    }
+
+    @Test
+    void replaceUpdatesLastBarOnly() {
+        PrimitiveBarSeries series = seriesOf(3, 5);
+        series.addBar(5 * MINUTE - 1, 4, 10, 1, 9, 2, 18, 3, true);
+
+        assertEquals(4, series.getEndIndex());
+        assertEquals(9, series.getClose(4));
+        assertEquals(10, series.getHigh(4));
+        assertEquals(3, series.getClose(3));
+        assertThrows(IllegalArgumentException.class, () -> addBar(series, 4, false));
+    }
+
+    @Test
+    void barIsCopyWhichDoesNotChangeWithSeries() {
+        PrimitiveBarSeries series = seriesOf(2, 2);
+        Bar last = series.getBar(1);
+        List<Bar> bars = series.getBarData();
+
+        series.addBar(2 * MINUTE - 1, 1, 20, 0, 15, 1, 15, 1, true);
+        addBar(series, 2, false);
+        addBar(series, 3, false);
+
+        assertEquals(DoubleNum.valueOf(1), last.getClosePrice());
+        assertEquals(2 * MINUTE - 1, last.getEndTime().toInstant().toEpochMilli());
+        assertEquals(2, bars.size());
+        assertEquals(DoubleNum.valueOf(0), bars.get(0).getClosePrice());
+        assertEquals(DoubleNum.valueOf(3), series.getBar(3).getClosePrice());
+        assertThrows(UnsupportedOperationException.class, () -> last.addPrice(DoubleNum.valueOf(1)));
+    }
+
+    @Test
+    void subSeriesCopiesExistingBarsOfRange() {
+        PrimitiveBarSeries series = seriesOf(4, 6);
+
+        PrimitiveBarSeries subSeries = series.getSubSeries(0, 4);
+
+        // bars #0 and #1 were removed, so only #2 and #3 are copied.
+        assertEquals(2, subSeries.getBarCount());
+        assertEquals(2, subSeries.getClose(0));
+        assertEquals(3, subSeries.getClose(1));
+        assertEquals(4 * MINUTE - 1, subSeries.getEndTimeMillis(1));
+
+        addBar(series, 6, false);
+        assertEquals(2, subSeries.getClose(0));
+        assertThrows(IllegalArgumentException.class, () -> series.getSubSeries(3, 3));
+    }
+
+    @Test
+    void setMaximumBarCountKeepsLastBars() {
+        PrimitiveBarSeries series = seriesOf(3, 5);
+
+        series.setMaximumBarCount(5);
+        addBar(series, 5, false);
+        addBar(series, 6, false);
+
+        assertEquals(5, series.getBarCount());
+        assertEquals(2, series.getClose(2));
+        assertEquals(6, series.getClose(6));
+
+        series.setMaximumBarCount(2);
+        assertEquals(2, series.getBarCount());
+        assertEquals(5, series.getClose(5));
+        assertEquals(6, series.getClose(6));
+    }
+
+    @Test
+    void snapshotIsCopiedAgainOnlyAfterChange() {
+        PrimitiveBarSeries series = seriesOf(3, 5);
+
+        BarSeriesSnapshot snapshot = series.snapshot();
+        assertSame(snapshot, series.snapshot());
+        assertEquals(3, snapshot.bars().size());
+        BarSeriesSnapshot.Bar first = snapshot.bars().get(0);
+        assertEquals(2 * MINUTE, first.openTime());
+        assertEquals(3 * MINUTE - 1, first.closeTime());
+        assertEquals(2, first.close());
+
+        addBar(series, 5, false);
+        BarSeriesSnapshot changed = series.snapshot();
+        assertEquals(3, changed.bars().get(0).close());
+        assertEquals(5, changed.bars().get(2).close());
+        assertEquals(2, snapshot.bars().get(0).close());
+    }
+}
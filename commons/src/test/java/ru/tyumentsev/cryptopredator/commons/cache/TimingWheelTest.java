@@ -0,0 +1,111 @@
+package ru.tyumentsev.cryptopredator.commons.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long WAIT_SECONDS = 5;
+
+    /**
+     * Schedule timeouts with given delays and wait for all of them.
+     * @return real times of expiration by deadline.
+     */
+    private static Map<Long, Long> expireAll(final TimingWheel wheel, final long... delays) throws InterruptedException {
+        Map<Long, Long> expiredAt = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        long now = System.currentTimeMillis();
+        for (long delay : delays) {
+            long deadline = now + delay;
+            wheel.schedule(deadline, () -> {
+                expiredAt.put(deadline, System.currentTimeMillis());
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        return expiredAt;
+    }
+
+    @Test
+    void timeoutsExpireAfterDeadlinesAcrossWrapAround() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(1, 512);
+        long[] delays = new long[30];
+        for (int i = 0; i < delays.length; i++) {
+            // deadlines of the first and the second round of wheel share slots.
+            delays[i] = i * 41L;
+        }
+
+        Map<Long, Long> expiredAt = expireAll(wheel, delays);
+
+        assertEquals(delays.length, expiredAt.size());
+        expiredAt.forEach((deadline, time) -> assertTrue(time >= deadline, "expired before deadline"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void delayLongerThanRotationWaitsForItsRound() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(1, 16);
+
+        // slot of timeouts is passed several times before their deadlines.
+        Map<Long, Long> expiredAt = expireAll(wheel, 10, 100, 250);
+
+        assertEquals(3, expiredAt.size());
+        expiredAt.forEach((deadline, time) -> assertTrue(time >= deadline, "expired before deadline"));
+    }
+
+    @Test
+    void cancelledTimeoutIsNotRun() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(1, 64);
+        CountDownLatch cancelledRun = new CountDownLatch(1);
+        long now = System.currentTimeMillis();
+        TimingWheel.Timeout timeout = wheel.schedule(now + 20, cancelledRun::countDown);
+        // same slot in the next round.
+        wheel.schedule(now + 84, () -> { });
+
+        timeout.cancel();
+        expireAll(wheel, 100);
+
+        assertFalse(cancelledRun.await(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void passedDeadlineExpiresOnNextTick() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(1, 8);
+
+        Map<Long, Long> expiredAt = expireAll(wheel, -1_000, 0);
+
+        assertEquals(2, expiredAt.size());
+    }
+
+    @Test
+    void clockIsPreciseBeforeTickerIsStarted() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(1000, 8);
+        Thread.sleep(20);
+
+        long before = System.currentTimeMillis();
+        assertTrue(wheel.currentTimeMillis() >= before);
+
+        Thread.sleep(20);
+        before = System.currentTimeMillis();
+        // ticker is started, but its first tick is a second later.
+        wheel.schedule(before + 60_000, () -> { });
+        assertTrue(wheel.currentTimeMillis() >= before);
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void invalidWheelIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(0, 8));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(1, 0));
+    }
+}
@@ -0,0 +1,205 @@
+package ru.tyumentsev.cryptopredator.commons.indicator;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseBarSeriesBuilder;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.MACDIndicator;
+import org.ta4j.core.indicators.RSIIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.num.DoubleNum;
+import org.ta4j.core.num.Num;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Streaming indicators must give the same values as ta4j indicators used by strategies before.
+ */
+class StreamingIndicatorsTest {
+
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+    private static final double DELTA = 1e-9;
+    private static final int BARS_COUNT = 120;
+
+    /**
+     * Random walk with flat and rising bars at the beginning, so RSI without losses is covered too.
+     */
+    private static double[] prices() {
+        double[] prices = new double[BARS_COUNT];
+        double price = 100;
+        for (int i = 0; i < prices.length; i++) {
+            if (i >= 3 && i < 8) {
+                price += 0.5;
+            } else if (i >= 8) {
+                price += Math.sin(i * 0.7) * 2 + Math.cos(i * 1.3);
+            }
+            prices[i] = price;
+        }
+        return prices;
+    }
+
+    private static ZonedDateTime endTimeOf(final long openTime) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(openTime + MINUTE - 1), ZoneOffset.UTC);
+    }
+
+    private static BarSeries ta4jSeriesOf(final double[] prices, final int count) {
+        BarSeries series = new BaseBarSeriesBuilder().withNumTypeOf(DoubleNum::valueOf).build();
+        for (int i = 0; i < count; i++) {
+            series.addBar(endTimeOf(i * MINUTE), prices[i], prices[i], prices[i], prices[i], 1);
+        }
+        return series;
+    }
+
+    private static void replaceLastBar(final BarSeries series, final double price) {
+        series.addBar(new BaseBar(Duration.ofMinutes(1), series.getLastBar().getEndTime(), price, price, price, price,
+                1, 0, 0, series.function()), true);
+    }
+
+    private static double valueOf(final Indicator<Num> indicator, final int index) {
+        return indicator.getValue(index).doubleValue();
+    }
+
+    private static void assertMatchesTa4j(final IntFunction<StreamingIndicator> streaming,
+                                          final Function<ClosePriceIndicator, Indicator<Num>> ta4j, final int barsQty) {
+        double[] prices = prices();
+        BarSeries series = ta4jSeriesOf(prices, prices.length);
+        Indicator<Num> expected = ta4j.apply(new ClosePriceIndicator(series));
+        StreamingIndicator indicator = streaming.apply(barsQty);
+
+        for (int i = 0; i < prices.length; i++) {
+            assertEquals(valueOf(expected, i), indicator.update(prices[i]), DELTA, "bar " + i);
+        }
+        for (int barsAgo = 0; barsAgo < AbstractStreamingIndicator.DEFAULT_HISTORY_SIZE; barsAgo++) {
+            assertEquals(valueOf(expected, series.getEndIndex() - barsAgo), indicator.getValue(barsAgo), DELTA);
+        }
+    }
+
+    /**
+     * Provisional value of forming bar is value of ta4j series, last bar of which is replaced by forming one.
+     */
+    private static void assertFormingBarMatchesTa4j(final StreamingIndicator indicator,
+                                                    final Function<ClosePriceIndicator, Indicator<Num>> ta4j) {
+        double[] prices = prices();
+        int closedCount = prices.length - 1;
+        for (int i = 0; i < closedCount; i++) {
+            indicator.update(prices[i]);
+        }
+        BarSeries series = ta4jSeriesOf(prices, prices.length);
+
+        for (double formingPrice : new double[]{prices[closedCount], prices[closedCount] + 3, prices[closedCount] - 5}) {
+            replaceLastBar(series, formingPrice);
+            double expected = valueOf(ta4j.apply(new ClosePriceIndicator(series)), series.getEndIndex());
+            assertEquals(expected, indicator.provisional(formingPrice), DELTA);
+        }
+        // provisional values don't change state.
+        assertEquals(closedCount, indicator.getBarCount());
+        double expected = valueOf(ta4j.apply(new ClosePriceIndicator(series)), series.getEndIndex());
+        assertEquals(expected, indicator.update(prices[closedCount] - 5), DELTA);
+    }
+
+    @Test
+    void emaMatchesTa4j() {
+        assertMatchesTa4j(StreamingEMA::new, close -> new EMAIndicator(close, 9), 9);
+    }
+
+    @Test
+    void rsiMatchesTa4j() {
+        assertMatchesTa4j(StreamingRSI::new, close -> new RSIIndicator(close, 14), 14);
+    }
+
+    @Test
+    void macdMatchesTa4j() {
+        assertMatchesTa4j(barsQty -> new StreamingMACD(12, 26), close -> new MACDIndicator(close, 12, 26), 26);
+    }
+
+    @Test
+    void formingBarValuesMatchTa4jSeriesWithReplacedLastBar() {
+        assertFormingBarMatchesTa4j(new StreamingEMA(9), close -> new EMAIndicator(close, 9));
+        assertFormingBarMatchesTa4j(new StreamingRSI(14), close -> new RSIIndicator(close, 14));
+        assertFormingBarMatchesTa4j(new StreamingMACD(12, 26), close -> new MACDIndicator(close, 12, 26));
+    }
+
+    @Test
+    void seededEngineMatchesTa4jWhileFormingBarIsReplaced() {
+        double[] prices = prices();
+        // the last candle is forming: it closes after now.
+        long firstOpenTime = System.currentTimeMillis() / MINUTE * MINUTE - (prices.length - 1) * MINUTE;
+        List<Candlestick> candles = new ArrayList<>();
+        for (int i = 0; i < prices.length; i++) {
+            Candlestick candle = new Candlestick();
+            candle.setOpenTime(firstOpenTime + i * MINUTE);
+            candle.setCloseTime(firstOpenTime + (i + 1) * MINUTE - 1);
+            candle.setOpen(String.valueOf(prices[i]));
+            candle.setHigh(String.valueOf(prices[i]));
+            candle.setLow(String.valueOf(prices[i]));
+            candle.setClose(String.valueOf(prices[i]));
+            candle.setVolume("1");
+            candles.add(candle);
+        }
+        IndicatorEngine engine = new IndicatorEngine(new IndicatorRegistry(), CandlestickInterval.ONE_MINUTE)
+                .define("ema", IndicatorSpec.ema(PriceSource.CLOSE, 9))
+                .define("rsi", IndicatorSpec.rsi(PriceSource.CLOSE, 14))
+                .define("macd", IndicatorSpec.macd(PriceSource.CLOSE, 12, 26));
+        SymbolIndicators indicators = engine.seed("BTCUSDT", candles);
+        BarSeries series = ta4jSeriesOf(prices, prices.length);
+
+        assertEngineMatchesTa4j(indicators, series);
+
+        long formingOpenTime = candles.get(candles.size() - 1).getOpenTime();
+        double formingPrice = prices[prices.length - 1];
+        for (int update = 1; update <= 3; update++) {
+            formingPrice += update % 2 == 0 ? -2.5 : 4;
+            engine.update(eventOf(formingOpenTime, update, formingPrice, false));
+            replaceLastBar(series, formingPrice);
+            assertEngineMatchesTa4j(indicators, series);
+        }
+        // forming bar is closed and the next one opens.
+        engine.update(eventOf(formingOpenTime, 4, formingPrice, true));
+        assertEngineMatchesTa4j(indicators, series);
+        engine.update(eventOf(formingOpenTime + MINUTE, 5, formingPrice + 1, false));
+        series.addBar(endTimeOf(prices.length * MINUTE), formingPrice + 1, formingPrice + 1, formingPrice + 1, formingPrice + 1, 1);
+        assertEngineMatchesTa4j(indicators, series);
+    }
+
+    private static CandlestickEvent eventOf(final long openTime, final long eventTime, final double price, final boolean barFinal) {
+        CandlestickEvent event = new CandlestickEvent();
+        event.setSymbol("BTCUSDT");
+        event.setOpenTime(openTime);
+        event.setCloseTime(openTime + MINUTE - 1);
+        event.setEventTime(eventTime);
+        event.setOpen(String.valueOf(price));
+        event.setHigh(String.valueOf(price));
+        event.setLow(String.valueOf(price));
+        event.setClose(String.valueOf(price));
+        event.setVolume("1");
+        event.setBarFinal(barFinal);
+        return event;
+    }
+
+    private static void assertEngineMatchesTa4j(final SymbolIndicators indicators, final BarSeries series) {
+        ClosePriceIndicator close = new ClosePriceIndicator(series);
+        Indicator<Num> ema = new EMAIndicator(close, 9);
+        Indicator<Num> rsi = new RSIIndicator(close, 14);
+        Indicator<Num> macd = new MACDIndicator(close, 12, 26);
+        for (int barsAgo = 0; barsAgo < 10; barsAgo++) {
+            int index = series.getEndIndex() - barsAgo;
+            assertEquals(valueOf(ema, index), indicators.getValue("ema", barsAgo), DELTA);
+            assertEquals(valueOf(rsi, index), indicators.getValue("rsi", barsAgo), DELTA);
+            assertEquals(valueOf(macd, index), indicators.getValue("macd", barsAgo), DELTA);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.tyumentsev.cryptopredator.commons.journal;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventJournalTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    private static CandlestickEvent eventOf(final int i) {
+        CandlestickEvent event = new CandlestickEvent();
+        event.setSymbol("BTCUSDT");
+        event.setEventTime(1_000L + i);
+        event.setOpenTime(60_000L * i);
+        event.setClose(String.valueOf(i));
+        event.setBarFinal(i % 2 == 0);
+        return event;
+    }
+
+    private List<JournalRecord> writeAndReadBack(final int count, final int maxSegments) {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_SIZE, maxSegments, 1024)) {
+            for (int i = 0; i < count; i++) {
+                journal.record(JournalEventType.CANDLESTICK, eventOf(i));
+            }
+        }
+        List<JournalRecord> records = new ArrayList<>();
+        new EventJournalReader(directory).read(records::add);
+        return records;
+    }
+
+    @Test
+    void eventsAreReadInOrderAcrossRolledSegments() {
+        List<JournalRecord> records = writeAndReadBack(50, 100);
+
+        assertTrue(EventJournal.segments(directory).size() > 1);
+        assertEquals(50, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            CandlestickEvent event = records.get(i).event(CandlestickEvent.class);
+            assertEquals(JournalEventType.CANDLESTICK, records.get(i).type());
+            assertEquals(1_000L + i, event.getEventTime());
+            assertEquals(String.valueOf(i), event.getClose());
+            assertEquals(i % 2 == 0, event.getBarFinal());
+        }
+    }
+
+    @Test
+    void oldSegmentsAreRemoved() {
+        List<JournalRecord> records = writeAndReadBack(50, 2);
+
+        assertEquals(2, EventJournal.segments(directory).size());
+        assertTrue(records.size() < 50);
+        // the last events are kept.
+        assertEquals(1_049L, records.get(records.size() - 1).event(CandlestickEvent.class).getEventTime());
+    }
+
+    @Test
+    void justCreatedSegmentIsReadAsEmpty() throws IOException {
+        List<JournalRecord> written = writeAndReadBack(10, 100);
+        List<Path> segments = EventJournal.segments(directory);
+        String lastName = segments.get(segments.size() - 1).getFileName().toString();
+        long lastIndex = Long.parseLong(lastName.substring(0, lastName.length() - EventJournal.SEGMENT_SUFFIX.length()));
+        // segment which is mapped by writer, but header isn't written yet.
+        Path zeroFilled = directory.resolve(String.format("%012d%s", lastIndex + 1, EventJournal.SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(zeroFilled, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(SEGMENT_SIZE));
+        }
+        // segment which is created, but not mapped yet.
+        Files.createFile(directory.resolve(String.format("%012d%s", lastIndex + 2, EventJournal.SEGMENT_SUFFIX)));
+
+        List<JournalRecord> records = new ArrayList<>();
+        long count = new EventJournalReader(directory).read(records::add);
+
+        assertEquals(written.size(), count);
+        assertEquals(written.size(), records.size());
+    }
+}
@@ -0,0 +1,159 @@
+package ru.tyumentsev.cryptopredator.commons.service;
+
+import com.binance.api.client.domain.event.CandlestickEvent;
+import com.binance.api.client.domain.market.CandlestickInterval;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SymbolDispatcherTest {
+
+    private static final long WAIT_MILLIS = 5_000;
+
+    private final SymbolDispatcher dispatcher = new SymbolDispatcher("test", 2);
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    private static CandlestickEvent eventOf(final String symbol, final long openTime, final long eventTime, final boolean barFinal) {
+        CandlestickEvent event = new CandlestickEvent();
+        event.setSymbol(symbol);
+        event.setIntervalId(CandlestickInterval.ONE_MINUTE.getIntervalId());
+        event.setOpenTime(openTime);
+        event.setEventTime(eventTime);
+        event.setBarFinal(barFinal);
+        return event;
+    }
+
+    private static String describe(final CandlestickEvent event) {
+        return String.format("%s %d/%d%s", event.getSymbol(), event.getOpenTime(), event.getEventTime(), event.getBarFinal() ? " final" : "");
+    }
+
+    /**
+     * Hold lane of symbol until returned latch is released, so events of symbol wait in mailbox.
+     */
+    private CountDownLatch blockLane(final String symbol) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(symbol, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        return release;
+    }
+
+    private void awaitHandled(final int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (handled.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, handled.size());
+    }
+
+    @Test
+    void eventsOfSymbolAreHandledInOrderOfReceiving() throws InterruptedException {
+        Map<String, List<Long>> handledBySymbol = new ConcurrentHashMap<>();
+        var callback = dispatcher.dispatching(event -> {
+            handledBySymbol.computeIfAbsent(event.getSymbol(), symbol -> new CopyOnWriteArrayList<>()).add(event.getOpenTime());
+            handled.add(describe(event));
+        });
+        List<String> symbols = List.of("BTCUSDT", "ETHUSDT", "BNBUSDT", "XRPUSDT", "ADAUSDT");
+        List<Long> openTimes = new ArrayList<>();
+        for (long openTime = 0; openTime < 200; openTime++) {
+            openTimes.add(openTime);
+            for (String symbol : symbols) {
+                callback.onResponse(eventOf(symbol, openTime, openTime, true));
+            }
+        }
+
+        awaitHandled(symbols.size() * openTimes.size());
+        symbols.forEach(symbol -> assertEquals(openTimes, handledBySymbol.get(symbol)));
+    }
+
+    @Test
+    void tasksRunOnLaneOfSymbolInOrderWithItsEvents() throws InterruptedException {
+        var callback = dispatcher.dispatching(event -> handled.add(describe(event)));
+        CountDownLatch release = blockLane("BTCUSDT");
+
+        callback.onResponse(eventOf("BTCUSDT", 0, 1, true));
+        dispatcher.laneExecutor("BTCUSDT").execute(() -> handled.add("task"));
+        callback.onResponse(eventOf("BTCUSDT", 60_000, 60_001, true));
+        release.countDown();
+
+        awaitHandled(3);
+        assertEquals(List.of("BTCUSDT 0/1 final", "task", "BTCUSDT 60000/60001 final"), handled);
+    }
+
+    @Test
+    void formingBarUpdatesAreCoalesced() throws InterruptedException {
+        var callback = dispatcher.dispatching(event -> handled.add(describe(event)));
+        CountDownLatch release = blockLane("BTCUSDT");
+
+        for (long eventTime = 1; eventTime <= 5; eventTime++) {
+            callback.onResponse(eventOf("BTCUSDT", 0, eventTime, false));
+        }
+        release.countDown();
+
+        awaitHandled(1);
+        Thread.sleep(50);
+        assertEquals(List.of("BTCUSDT 0/5"), handled);
+        assertEquals(4, dispatcher.getCoalescedCount());
+    }
+
+    @Test
+    void finalEventsAreAlwaysDelivered() throws InterruptedException {
+        var callback = dispatcher.dispatching(event -> handled.add(describe(event)));
+        CountDownLatch release = blockLane("BTCUSDT");
+
+        callback.onResponse(eventOf("BTCUSDT", 0, 1, false));
+        callback.onResponse(eventOf("BTCUSDT", 0, 2, true));
+        callback.onResponse(eventOf("BTCUSDT", 60_000, 60_001, false));
+        callback.onResponse(eventOf("BTCUSDT", 60_000, 60_002, true));
+        callback.onResponse(eventOf("BTCUSDT", 120_000, 120_001, false));
+        release.countDown();
+
+        awaitHandled(3);
+        Thread.sleep(50);
+        assertEquals(List.of("BTCUSDT 0/2 final", "BTCUSDT 60000/60002 final", "BTCUSDT 120000/120001"), handled);
+        // forming updates of closed bars are dropped, not replaced.
+        assertEquals(2, dispatcher.getDroppedCount());
+        assertEquals(0, dispatcher.getCoalescedCount());
+    }
+
+    @Test
+    void handlerGetsIdOfSymbolAndReleasedMailboxIsForgotten() throws InterruptedException {
+        SymbolRegistry registry = new SymbolRegistry();
+        int btcId = registry.register("BTCUSDT");
+        var callback = dispatcher.dispatching(registry, (event, symbolId) -> handled.add(symbolId + " " + describe(event)));
+
+        callback.onResponse(eventOf("BTCUSDT", 0, 1, true));
+        callback.onResponse(eventOf("ETHUSDT", 0, 1, true));
+
+        awaitHandled(2);
+        assertTrue(handled.contains(btcId + " BTCUSDT 0/1 final"));
+        assertTrue(handled.contains(registry.idOf("ETHUSDT") + " ETHUSDT 0/1 final"));
+        assertEquals(2, callback.getMailboxesCount());
+
+        callback.release("BTCUSDT", CandlestickInterval.ONE_MINUTE);
+        assertEquals(1, callback.getMailboxesCount());
+    }
+}
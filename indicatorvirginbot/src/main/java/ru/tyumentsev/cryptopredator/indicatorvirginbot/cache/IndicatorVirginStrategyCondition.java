@@ -1,6 +1,5 @@
 package ru.tyumentsev.cryptopredator.indicatorvirginbot.cache;
 
-import com.binance.api.client.domain.market.Candlestick;
 import com.binance.api.client.domain.market.CandlestickInterval;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -9,24 +8,17 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.ta4j.core.BaseBarSeries;
-import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import ru.tyumentsev.cryptopredator.commons.cache.MonitoredPositions;
+import ru.tyumentsev.cryptopredator.commons.cache.RollupEngine;
 import ru.tyumentsev.cryptopredator.commons.cache.StrategyCondition;
+import ru.tyumentsev.cryptopredator.commons.cache.TimingWheel;
 import ru.tyumentsev.cryptopredator.commons.domain.MonitoredPosition;
-import ru.tyumentsev.cryptopredator.commons.domain.SellRecord;
-import ru.tyumentsev.cryptopredator.commons.service.MarketInfo;
-
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.Comparator;
-import java.util.List;
+import ru.tyumentsev.cryptopredator.commons.indicator.SymbolIndicators;
+
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
@@ -34,10 +26,16 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Slf4j
 public class IndicatorVirginStrategyCondition extends StrategyCondition {
 
+    public static final String EMA_7 = "ema7";
+    public static final String EMA_25 = "ema25";
+    /**
+     * Crossover of EMA7 over EMA25.
+     */
+    public static final String EMA_CROSS = "ema7Over25";
+    public static final String EMA_25_HIGH = "ema25High";
+
     @Getter
-    final Map<String, MonitoredPosition> monitoredPositions = new ConcurrentHashMap<>();
-    @Getter
-    final Map<String, List<Candlestick>> upperTimeframeCandles = new ConcurrentHashMap<>();
+    final MonitoredPositions monitoredPositions = new MonitoredPositions(TimingWheel.shared());
     @Getter
     final Map<String, Boolean> pingPongs = new ConcurrentHashMap<>();
 
@@ -55,51 +53,34 @@ public class IndicatorVirginStrategyCondition extends StrategyCondition {
     }
 
     @Override
-    public boolean thisSignalWorkedOutBefore(final String pair) {
-        AtomicBoolean ignoreSignal = new AtomicBoolean(false);
-
-        if (sellJournal.containsKey(pair)) {
-            SellRecord sellRecord = sellJournal.get(pair);
-            if (sellRecord.sellTime().isAfter(LocalDateTime.now().minusHours(workedOutSignalsIgnoringPeriod))) {
-                ignoreSignal.set(true);
-            } else {
-                log.debug("Period of signal ignoring for {} expired, remove pair from sell journal.", pair);
-                sellJournal.remove(pair);
-            }
-        }
-
-        return ignoreSignal.get();
+    protected Duration workedOutSignalsIgnoringPeriod() {
+        return Duration.ofHours(workedOutSignalsIgnoringPeriod);
     }
 
+    /**
+     * Pair stays on monitoring for {@link #monitoringExpirationTime} hours at most.
+     */
     public void addPairToMonitoring(final String symbol, final float price) {
-        monitoredPositions.putIfAbsent(symbol, new MonitoredPosition(symbol, price, ZonedDateTime.now()));
-    }
-
-    public void setMonitoredPairWeight(final String symbol, final int percentageDiff) {
-        monitoredPositions.get(symbol).setWeight(percentageDiff);
+        monitoredPositions.add(symbol, price, Duration.ofHours(monitoringExpirationTime));
     }
 
-    public boolean pairOnMonitoring(final String symbol, final BaseBarSeries series) {
-        if (monitoredPositions.containsKey(symbol)) {
-            MonitoredPosition monitoredPosition = monitoredPositions.get(symbol);
-            if (monitoredPosition.getBeginMonitoringTime().isBefore(ZonedDateTime.now().minusHours(monitoringExpirationTime)) ||
-                    monitoredPairPriceTurnedBack(series)) {
-                monitoredPositions.remove(symbol);
-            }
-        }
-        return monitoredPositions.containsKey(symbol);
+    public void setMonitoredPairWeight(final int symbolId, final int percentageDiff) {
+        monitoredPositions.setWeight(symbolId, percentageDiff);
     }
 
-    private boolean monitoredPairPriceTurnedBack(final BaseBarSeries series) {
-        if (series.getBarData().isEmpty()) {
+    /**
+     * Pair leaves monitoring if its price turned back on closed bar, the rest of events only read monitored pairs.
+     */
+    public boolean pairOnMonitoring(final int symbolId, final SymbolIndicators indicators) {
+        if (!monitoredPositions.contains(symbolId)) {
             return false;
         }
-        var endBarSeriesIndex = series.getEndIndex();
-
-        EMAIndicator ema7 = new EMAIndicator(new ClosePriceIndicator(series), 7);
-        EMAIndicator ema25 = new EMAIndicator(new ClosePriceIndicator(series), 25);
+        return indicators == null || monitoredPositions.checkOnBarClose(symbolId, indicators.getLastClosedOpenTime(),
+                () -> monitoredPairPriceTurnedBack(indicators));
+    }
 
-        return ema25.getValue(endBarSeriesIndex - 1).isGreaterThan(ema7.getValue(endBarSeriesIndex - 1));
+    private boolean monitoredPairPriceTurnedBack(final SymbolIndicators indicators) {
+        return indicators.getClosedValue(EMA_25, 0) > indicators.getClosedValue(EMA_7, 0);
     }
 
     public Optional<Float> getMonitoredPositionPrice(final String symbol) {
@@ -110,21 +91,18 @@ public class IndicatorVirginStrategyCondition extends StrategyCondition {
         monitoredPositions.remove(symbol);
     }
 
-    public boolean pairOnUptrend(String symbol, float currentPrice, CandlestickInterval interval, MarketInfo marketInfo) {
-        if (upperTimeframeCandles.containsKey(symbol)) {
-            List<Candlestick> candles = upperTimeframeCandles.get(symbol);
-            if (candles.size() > 2) {
-                if (ZonedDateTime.ofInstant(Instant.ofEpochMilli(candles.get(2).getCloseTime()), ZoneId.systemDefault()).isBefore(ZonedDateTime.now(ZoneId.systemDefault()))) {
-                    upperTimeframeCandles.put(symbol, marketInfo.getCandleSticks(symbol, interval, 3));
-                }
-            }
-        } else {
-            upperTimeframeCandles.put(symbol, marketInfo.getCandleSticks(symbol, interval, 3));
-        }
-
-        var candles = upperTimeframeCandles.get(symbol);
+    /**
+     * Price is on uptrend if it's higher than highs of two previous bars of interval, bars are rolled up locally.
+     * Stale bars (history isn't prefetched yet or events were missed) are not trusted, pair isn't on uptrend then.
+     */
+    public boolean pairOnUptrend(String symbol, float currentPrice, CandlestickInterval interval, RollupEngine rollupEngine) {
+        var snapshot = rollupEngine.snapshot(symbol, interval, 3);
+        var candles = snapshot.candles();
 
-        if (candles.size() > 2) {
+        if (snapshot.stale()) {
+            log.debug("{} candles of {} are stale, uptrend isn't checked: {}.", interval, symbol, candles);
+            return false;
+        } else if (candles.size() > 2) {
             return currentPrice > Float.parseFloat(candles.get(1).getHigh()) && currentPrice > Float.parseFloat(candles.get(0).getHigh());
         } else {
             log.info("List of candles of {} is less then 3 and contains {} elements: {}.", symbol, candles.size(), candles);
@@ -132,11 +110,8 @@ public class IndicatorVirginStrategyCondition extends StrategyCondition {
         }
     }
 
-    public boolean itsHeaviestMonitoredPair(final String symbol) {
-        return monitoredPositions.values().stream()
-                .max(Comparator.comparing(MonitoredPosition::getWeight))
-                .map(heaviestPair -> heaviestPair.getSymbol().equals(symbol))
-                .orElse(false);
+    public boolean itsHeaviestMonitoredPair(final int symbolId) {
+        return monitoredPositions.isHeaviest(symbolId);
     }
 
 }
@@ -7,19 +7,14 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.ta4j.core.BaseBarSeries;
-import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import ru.tyumentsev.cryptopredator.commons.cache.MonitoredPositions;
 import ru.tyumentsev.cryptopredator.commons.cache.StrategyCondition;
+import ru.tyumentsev.cryptopredator.commons.cache.TimingWheel;
 import ru.tyumentsev.cryptopredator.commons.domain.MonitoredPosition;
-import ru.tyumentsev.cryptopredator.commons.domain.SellRecord;
+import ru.tyumentsev.cryptopredator.commons.indicator.SymbolIndicators;
 
-import java.time.LocalDateTime;
-import java.time.ZonedDateTime;
-import java.util.Map;
+import java.time.Duration;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
@@ -27,55 +22,47 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Slf4j
 public class LevelsStrategyCondition extends StrategyCondition {
 
+    public static final String EMA_7 = "ema7";
+    public static final String EMA_25 = "ema25";
+    /**
+     * Crossover of EMA7 over EMA25.
+     */
+    public static final String EMA_CROSS = "ema7Over25";
+    public static final String RSI_14 = "rsi14";
+    public static final String RESISTANCE = "resistance";
+
     @Getter
-    final Map<String, MonitoredPosition> monitoredPositions = new ConcurrentHashMap<>();
+    final MonitoredPositions monitoredPositions = new MonitoredPositions(TimingWheel.shared());
     @Value("${strategy.levels.workedOutSignalsIgnoringPeriod}")
     int workedOutSignalsIgnoringPeriod;
     @Value("${strategy.levels.monitoringExpirationTime}")
     long monitoringExpirationTime;
 
     @Override
-    public boolean thisSignalWorkedOutBefore(final String pair) {
-        AtomicBoolean ignoreSignal = new AtomicBoolean(false);
-
-        if (sellJournal.containsKey(pair)) {
-            SellRecord sellRecord = sellJournal.get(pair);
-            if (sellRecord.sellTime().isAfter(LocalDateTime.now().minusHours(workedOutSignalsIgnoringPeriod))) {
-                ignoreSignal.set(true);
-            } else {
-                log.debug("Period of signal ignoring for {} expired, remove pair from sell journal.", pair);
-                sellJournal.remove(pair);
-            }
-        }
-
-        return ignoreSignal.get();
+    protected Duration workedOutSignalsIgnoringPeriod() {
+        return Duration.ofHours(workedOutSignalsIgnoringPeriod);
     }
 
+    /**
+     * Pair stays on monitoring for {@link #monitoringExpirationTime} hours at most.
+     */
     public void addPairToMonitoring(final String symbol, final float price) {
-        monitoredPositions.putIfAbsent(symbol, new MonitoredPosition(symbol, price, ZonedDateTime.now()));
+        monitoredPositions.add(symbol, price, Duration.ofHours(monitoringExpirationTime));
     }
 
-    public boolean pairOnMonitoring(final String symbol, final BaseBarSeries series) {
-        if (monitoredPositions.containsKey(symbol)) {
-            MonitoredPosition monitoredPosition = monitoredPositions.get(symbol);
-            if (monitoredPosition.getBeginMonitoringTime().isBefore(ZonedDateTime.now().minusHours(monitoringExpirationTime)) ||
-                    monitoredPairPriceTurnedBack(series)) {
-                monitoredPositions.remove(symbol);
-            }
-        }
-        return monitoredPositions.containsKey(symbol);
-    }
-
-    private boolean monitoredPairPriceTurnedBack(final BaseBarSeries series) {
-        if (series.getBarData().isEmpty()) {
+    /**
+     * Pair leaves monitoring if its price turned back on closed bar, the rest of events only read monitored pairs.
+     */
+    public boolean pairOnMonitoring(final int symbolId, final SymbolIndicators indicators) {
+        if (!monitoredPositions.contains(symbolId)) {
             return false;
         }
-        var endBarSeriesIndex = series.getEndIndex();
-
-        EMAIndicator ema7 = new EMAIndicator(new ClosePriceIndicator(series), 7);
-        EMAIndicator ema25 = new EMAIndicator(new ClosePriceIndicator(series), 25);
+        return indicators == null || monitoredPositions.checkOnBarClose(symbolId, indicators.getLastClosedOpenTime(),
+                () -> monitoredPairPriceTurnedBack(indicators));
+    }
 
-        return ema25.getValue(endBarSeriesIndex - 1).isGreaterThan(ema7.getValue(endBarSeriesIndex - 1));
+    private boolean monitoredPairPriceTurnedBack(final SymbolIndicators indicators) {
+        return indicators.getClosedValue(EMA_25, 0) > indicators.getClosedValue(EMA_7, 0);
     }
 
     public Optional<Float> getMonitoredPositionPrice(final String symbol) {
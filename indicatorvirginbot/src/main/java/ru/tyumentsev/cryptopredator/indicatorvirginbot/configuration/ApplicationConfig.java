@@ -2,8 +2,14 @@ package ru.tyumentsev.cryptopredator.indicatorvirginbot.configuration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,6 +20,7 @@ import com.binance.api.client.BinanceApiAsyncRestClient;
 import com.binance.api.client.BinanceApiClientFactory;
 import com.binance.api.client.BinanceApiRestClient;
 import com.binance.api.client.BinanceApiWebSocketClient;
+import com.binance.api.client.domain.market.CandlestickInterval;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -21,15 +28,27 @@ import lombok.Setter;
 import lombok.experimental.FieldDefaults;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
+import ru.tyumentsev.cryptopredator.commons.cache.BarCache;
+import ru.tyumentsev.cryptopredator.commons.cache.BarSeriesFeed;
+import ru.tyumentsev.cryptopredator.commons.cache.CandleStore;
+import ru.tyumentsev.cryptopredator.commons.cache.RollupEngine;
+import ru.tyumentsev.cryptopredator.commons.journal.EventJournal;
 import ru.tyumentsev.cryptopredator.commons.service.AccountInfo;
 import ru.tyumentsev.cryptopredator.commons.service.AccountServiceClient;
 import ru.tyumentsev.cryptopredator.commons.service.BotStateService;
+import ru.tyumentsev.cryptopredator.commons.service.BinanceStandInInterceptor;
 import ru.tyumentsev.cryptopredator.commons.service.BotStateServiceClient;
 import ru.tyumentsev.cryptopredator.commons.service.CacheServiceClient;
+import ru.tyumentsev.cryptopredator.commons.service.CandleBackfillService;
 import ru.tyumentsev.cryptopredator.commons.service.DataService;
+import ru.tyumentsev.cryptopredator.commons.service.MarketDataHub;
 import ru.tyumentsev.cryptopredator.commons.service.MarketInfo;
 import ru.tyumentsev.cryptopredator.commons.service.SpotTrading;
+import ru.tyumentsev.cryptopredator.commons.service.SymbolDispatcher;
+import ru.tyumentsev.cryptopredator.commons.service.UpperTimeframePrefetcher;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Getter
@@ -47,7 +66,18 @@ public class ApplicationConfig {
     String secret;
     boolean useTestnet;
     boolean useTestnetStreaming;
+    /**
+     * Address of local Binance stand-in server, requests go to Binance if blank.
+     */
+    String binanceStandInURL;
     String stateKeeperURL;
+    int dispatcherLanes;
+    /**
+     * Rate budget of requests of higher timeframe candles, default is used if not positive.
+     */
+    int upperTimeframeRequestsPerSecond;
+    String journalDirectory;
+    String candleStoreDirectory;
 
     {
         Dispatcher dispatcher = new Dispatcher();
@@ -56,6 +86,7 @@ public class ApplicationConfig {
         sharedClient = new OkHttpClient.Builder()
                 .dispatcher(dispatcher)
                 .callTimeout(90, TimeUnit.SECONDS)
+                .addInterceptor(new BinanceStandInInterceptor(() -> binanceStandInURL))
                 .build();
     }
 
@@ -91,6 +122,95 @@ public class ApplicationConfig {
         return new MarketInfo(binanceApiRestClient(), binanceApiWebSocketClient());
     }
 
+    @Bean
+    @ConditionalOnExpression("!'${applicationconfig.journalDirectory:}'.isBlank()")
+    public EventJournal eventJournal() {
+        return new EventJournal(Path.of(journalDirectory));
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${applicationconfig.journalDirectory:}'.isBlank()")
+    public MeterBinder eventJournalMetrics(EventJournal eventJournal) {
+        return registry -> {
+            FunctionCounter.builder("event.journal.recorded", eventJournal, EventJournal::getRecordedCount)
+                    .description("Events written to journal").register(registry);
+            FunctionCounter.builder("event.journal.dropped", eventJournal, EventJournal::getDroppedCount)
+                    .description("Events dropped because journal writer fell behind").register(registry);
+            Gauge.builder("event.journal.backlog", eventJournal, EventJournal::getBacklog)
+                    .description("Events waiting for writing to journal").register(registry);
+        };
+    }
+
+    @Bean
+    @DependsOn("marketInfo")
+    public MarketDataHub marketDataHub(ObjectProvider<EventJournal> eventJournal) {
+        return new MarketDataHub(marketInfo(), MarketDataHub.DEFAULT_STREAMS_PER_CONNECTION, eventJournal.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${applicationconfig.candleStoreDirectory:}'.isBlank()")
+    public CandleStore candleStore() {
+        return new CandleStore(Path.of(candleStoreDirectory));
+    }
+
+    @Bean
+    @DependsOn("marketInfo")
+    public CandleBackfillService candleBackfillService(ObjectProvider<CandleStore> candleStore) {
+        return new CandleBackfillService(marketInfo(), candleStore.getIfAvailable());
+    }
+
+    @Bean
+    public BarCache barCache() {
+        return new BarCache();
+    }
+
+    @Bean
+    public BarSeriesFeed barSeriesFeed(BarCache barCache, CandleBackfillService candleBackfillService, SymbolDispatcher symbolDispatcher) {
+        return new BarSeriesFeed(barCache, candleBackfillService, symbolDispatcher);
+    }
+
+    @Bean
+    @DependsOn("marketInfo")
+    public RollupEngine rollupEngine() {
+        return new RollupEngine(marketInfo(), CandlestickInterval.HALF_HOURLY,
+                List.of(CandlestickInterval.HOURLY, CandlestickInterval.FOUR_HOURLY, CandlestickInterval.DAILY), 3);
+    }
+
+    @Bean
+    @DependsOn("rollupEngine")
+    public UpperTimeframePrefetcher upperTimeframePrefetcher() {
+        return new UpperTimeframePrefetcher(rollupEngine(), UpperTimeframePrefetcher.DEFAULT_CONCURRENCY,
+                upperTimeframeRequestsPerSecond > 0 ? upperTimeframeRequestsPerSecond : UpperTimeframePrefetcher.DEFAULT_REQUESTS_PER_SECOND);
+    }
+
+    @Bean
+    public SymbolDispatcher symbolDispatcher() {
+        return new SymbolDispatcher("market-events", dispatcherLanes > 0 ? dispatcherLanes : SymbolDispatcher.DEFAULT_LANES_COUNT);
+    }
+
+    @Bean
+    @DependsOn("symbolDispatcher")
+    public MeterBinder symbolDispatcherMetrics() {
+        SymbolDispatcher dispatcher = symbolDispatcher();
+        return registry -> {
+            Tags dispatcherTags = Tags.of("dispatcher", dispatcher.getName());
+            FunctionCounter.builder("symbol.dispatcher.coalesced", dispatcher, SymbolDispatcher::getCoalescedCount).tags(dispatcherTags)
+                    .description("Forming bar updates replaced by newer update before handling").register(registry);
+            FunctionCounter.builder("symbol.dispatcher.dropped", dispatcher, SymbolDispatcher::getDroppedCount).tags(dispatcherTags)
+                    .description("Forming bar updates dropped because the bar was closed before handling").register(registry);
+            for (int i = 0; i < dispatcher.getLanesCount(); i++) {
+                final int lane = i;
+                Tags tags = Tags.of("dispatcher", dispatcher.getName(), "lane", String.valueOf(lane));
+                Gauge.builder("symbol.dispatcher.queue.depth", dispatcher, d -> d.getQueueDepth(lane)).tags(tags)
+                        .description("Events waiting for handling on lane").register(registry);
+                Gauge.builder("symbol.dispatcher.lag", dispatcher, d -> d.getLagMillis(lane)).tags(tags).baseUnit("milliseconds")
+                        .description("Time the last handled event of lane waited in queue").register(registry);
+                FunctionCounter.builder("symbol.dispatcher.processed", dispatcher, d -> d.getProcessedCount(lane)).tags(tags)
+                        .description("Events handled on lane").register(registry);
+            }
+        };
+    }
+
     @Bean
     @DependsOn({"accountInfo", "botStateService"})
     public SpotTrading spotTrading() {
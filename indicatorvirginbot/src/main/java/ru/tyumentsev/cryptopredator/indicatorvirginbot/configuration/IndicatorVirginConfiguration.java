@@ -8,6 +8,7 @@ import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import ru.tyumentsev.cryptopredator.commons.domain.EvaluationMode;
 
 @Component
 @Getter
@@ -31,6 +32,7 @@ public class IndicatorVirginConfiguration {
     boolean followBtcTrend;
     int ordersQtyLimit;
     boolean averagingEnabled;
+    EvaluationMode evaluationMode;
 
     public static String STRATEGY_NAME = "indicatorvirgin";
     public static Integer STRATEGY_ID = 1021;
@@ -44,7 +46,8 @@ public class IndicatorVirginConfiguration {
                                         @Value("${strategy.indicatorVirgin.enabled}") boolean indicatorVirginEnabled,
                                         @Value("${strategy.indicatorVirgin.followBtcTrend}") boolean followBtcTrend,
                                         @Value("${strategy.indicatorVirgin.ordersQtyLimit}") int ordersQtyLimit,
-                                        @Value("${strategy.indicatorVirgin.averagingEnabled}") boolean averagingEnabled) {
+                                        @Value("${strategy.indicatorVirgin.averagingEnabled}") boolean averagingEnabled,
+                                        @Value("${strategy.indicatorVirgin.evaluationMode}") EvaluationMode evaluationMode) {
         this.testLaunch = globalStrategyConfiguration.testLaunch();
         this.tradingAsset = globalStrategyConfiguration.tradingAsset();
         this.minimalAssetBalance = globalStrategyConfiguration.minimalAssetBalance();
@@ -57,5 +60,6 @@ public class IndicatorVirginConfiguration {
         this.followBtcTrend = followBtcTrend;
         this.ordersQtyLimit = ordersQtyLimit;
         this.averagingEnabled = averagingEnabled;
+        this.evaluationMode = evaluationMode;
     }
 }
@@ -8,6 +8,7 @@ import lombok.experimental.FieldDefaults;
 import lombok.experimental.NonFinal;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import ru.tyumentsev.cryptopredator.commons.domain.EvaluationMode;
 
 @Component
 @Getter
@@ -30,6 +31,7 @@ public class LevelsConfiguration {
     float pairTakeProfitFactor;
     float takeProfitPriceDecreaseFactor;
     float averagingTrigger;
+    EvaluationMode evaluationMode;
 
     public static String STRATEGY_NAME = "levels";
     public static Integer STRATEGY_ID = 1022;
@@ -43,7 +45,8 @@ public class LevelsConfiguration {
                                @Value("${strategy.levels.priceDecreaseFactor}") float priceDecreaseFactor,
                                @Value("${strategy.levels.pairTakeProfitFactor}") float pairTakeProfitFactor,
                                @Value("${strategy.levels.takeProfitPriceDecreaseFactor}") float takeProfitPriceDecreaseFactor,
-                               @Value("${strategy.levels.averagingTrigger}") float averagingTrigger) {
+                               @Value("${strategy.levels.averagingTrigger}") float averagingTrigger,
+                               @Value("${strategy.levels.evaluationMode}") EvaluationMode evaluationMode) {
         this.testLaunch = globalStrategyConfiguration.testLaunch();
         this.tradingAsset = globalStrategyConfiguration.tradingAsset();
         this.minimalAssetBalance = globalStrategyConfiguration.minimalAssetBalance();
@@ -56,5 +59,6 @@ public class LevelsConfiguration {
         this.pairTakeProfitFactor = pairTakeProfitFactor;
         this.takeProfitPriceDecreaseFactor = takeProfitPriceDecreaseFactor;
         this.averagingTrigger = averagingTrigger;
+        this.evaluationMode = evaluationMode;
     }
 }
@@ -1,11 +1,12 @@
 package ru.tyumentsev.cryptopredator.indicatorvirginbot.controller;
 
 import com.binance.api.client.domain.event.OrderTradeUpdateEvent;
-import com.binance.api.client.domain.market.Candlestick;
+import com.binance.api.client.domain.market.CandlestickInterval;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,21 +14,27 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.ta4j.core.BarSeries;
+import ru.tyumentsev.cryptopredator.commons.cache.BarCache;
+import ru.tyumentsev.cryptopredator.commons.cache.BarSeriesSnapshot;
+import ru.tyumentsev.cryptopredator.commons.cache.RollupEngine;
+import ru.tyumentsev.cryptopredator.commons.cache.RollupSnapshot;
 import ru.tyumentsev.cryptopredator.commons.domain.BTCTrend;
 import ru.tyumentsev.cryptopredator.commons.domain.MonitoredPosition;
 import ru.tyumentsev.cryptopredator.commons.domain.OpenedPosition;
 import ru.tyumentsev.cryptopredator.commons.domain.PlacedOrder;
 import ru.tyumentsev.cryptopredator.commons.domain.SellRecord;
+import ru.tyumentsev.cryptopredator.commons.journal.EventJournal;
+import ru.tyumentsev.cryptopredator.commons.journal.JournalEventType;
 import ru.tyumentsev.cryptopredator.commons.service.MarketInfo;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.IndicatorVirginStrategyCondition;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.strategy.IndicatorVirgin;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @RestController
@@ -41,6 +48,9 @@ public class IndicatorVirginController {
     MarketInfo marketInfo;
     IndicatorVirginStrategyCondition indicatorVirginStrategyCondition;
     IndicatorVirgin indicatorVirgin;
+    RollupEngine rollupEngine;
+    BarCache barCache;
+    ObjectProvider<EventJournal> eventJournal;
 
     @GetMapping("/ping/{pair}")
     public void ping(@PathVariable String pair) {
@@ -67,7 +77,7 @@ public class IndicatorVirginController {
     @GetMapping("/openedPositions/long")
     public Map<String, List<OpenedPosition>> getOpenedLongPositions() {
         return indicatorVirginStrategyCondition.getLongPositions().values().stream()
-                .sorted(Comparator.comparing(OpenedPosition::updateStamp))
+                .sorted(Comparator.comparingLong(OpenedPosition::updateTime))
                 .collect(Collectors.groupingBy(position -> {
                     if (position.isProfitable()) return "Profitable";
                     else return "NOT profitable";
@@ -77,7 +87,7 @@ public class IndicatorVirginController {
     @GetMapping("/openedPositions/short")
     public List<OpenedPosition> getOpenedShortPositions() {
         return indicatorVirginStrategyCondition.getShortPositions().values().stream()
-                .sorted(Comparator.comparing(OpenedPosition::updateStamp))
+                .sorted(Comparator.comparingLong(OpenedPosition::updateTime))
                 .collect(Collectors.toList());
     }
 
@@ -106,33 +116,35 @@ public class IndicatorVirginController {
     }
 
     @GetMapping("/barSeries/market")
-    public List<BarSeries> getAllMarketBarSeries() {
-        return new ArrayList<>(indicatorVirgin.getMarketBarSeriesMap().values());
+    public List<BarSeriesSnapshot> getAllMarketBarSeries() {
+        return snapshots(indicatorVirgin.getMarketCandleStickEventsStreams().keySet(), indicatorVirgin.getMarketCandlestickInterval());
     }
 
     @GetMapping("/barSeries/opened")
-    public List<BarSeries> getAllOpenedPositionsBarSeries() {
-        return new ArrayList<>(indicatorVirgin.getOpenedPositionsBarSeriesMap().values());
+    public List<BarSeriesSnapshot> getAllOpenedPositionsBarSeries() {
+        return snapshots(indicatorVirgin.getOpenedPositionsCandleStickEventsStreams().keySet(), indicatorVirgin.getOpenedPositionsCandlestickInterval());
     }
 
     @GetMapping("/barSeries/market/{symbol}")
-    public BarSeries getMarketBarSeries(@PathVariable String symbol) {
-        return indicatorVirgin.getMarketBarSeriesMap().get(symbol);
+    public BarSeriesSnapshot getMarketBarSeries(@PathVariable String symbol) {
+        return barCache.snapshot(symbol, indicatorVirgin.getMarketCandlestickInterval());
     }
 
     @GetMapping("/barSeries/opened/{symbol}")
-    public BarSeries getOpenedPositionBarSeries(@PathVariable String symbol) {
-        return indicatorVirgin.getOpenedPositionsBarSeriesMap().get(symbol);
+    public BarSeriesSnapshot getOpenedPositionBarSeries(@PathVariable String symbol) {
+        return barCache.snapshot(symbol, indicatorVirgin.getOpenedPositionsCandlestickInterval());
     }
 
     @GetMapping("/upperTimeframeCandles")
-    public Map<String, List<Candlestick>> getUpperTimeframeCandles() {
-        return indicatorVirginStrategyCondition.getUpperTimeframeCandles();
+    public Map<String, RollupSnapshot> getUpperTimeframeCandles() {
+        return indicatorVirgin.getMarketCandleStickEventsStreams().keySet().stream()
+                .collect(Collectors.toMap(symbol -> symbol, symbol -> rollupEngine.snapshot(symbol, CandlestickInterval.DAILY, 3)));
     }
 
     @PostMapping("/userDataUpdateEvent")
     public void handleUserDataUpdateEvent(@RequestBody OrderTradeUpdateEvent event) {
         log.debug("Get order trade update event: {}", event);
+        eventJournal.ifAvailable(journal -> journal.record(JournalEventType.ORDER_TRADE_UPDATE, event));
         switch (event.getSide()) {
             case BUY -> {
                 indicatorVirgin.handleBuying(event);
@@ -142,4 +154,11 @@ public class IndicatorVirginController {
             }
         }
     }
+
+    private List<BarSeriesSnapshot> snapshots(final Collection<String> symbols, final CandlestickInterval interval) {
+        return symbols.stream()
+                .map(symbol -> barCache.snapshot(symbol, interval))
+                .filter(Objects::nonNull)
+                .toList();
+    }
 }
@@ -1,10 +1,12 @@
 package ru.tyumentsev.cryptopredator.indicatorvirginbot.controller;
 
 import com.binance.api.client.domain.event.OrderTradeUpdateEvent;
+import com.binance.api.client.domain.market.CandlestickInterval;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -12,22 +14,26 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.ta4j.core.BarSeries;
+import ru.tyumentsev.cryptopredator.commons.cache.BarCache;
+import ru.tyumentsev.cryptopredator.commons.cache.BarSeriesSnapshot;
 import ru.tyumentsev.cryptopredator.commons.domain.BTCTrend;
 import ru.tyumentsev.cryptopredator.commons.domain.MonitoredPosition;
 import ru.tyumentsev.cryptopredator.commons.domain.OpenedPosition;
 import ru.tyumentsev.cryptopredator.commons.domain.PlacedOrder;
 import ru.tyumentsev.cryptopredator.commons.domain.SellRecord;
+import ru.tyumentsev.cryptopredator.commons.journal.EventJournal;
+import ru.tyumentsev.cryptopredator.commons.journal.JournalEventType;
 import ru.tyumentsev.cryptopredator.commons.service.MarketInfo;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.IndicatorVirginStrategyCondition;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.LevelsStrategyCondition;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.strategy.Levels;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @RestController
@@ -41,6 +47,8 @@ public class LevelsController {
     MarketInfo marketInfo;
     LevelsStrategyCondition levelsStrategyCondition;
     Levels levels;
+    BarCache barCache;
+    ObjectProvider<EventJournal> eventJournal;
 
     @GetMapping("/btcTrend")
     public BTCTrend getBtcTrend() {
@@ -62,14 +70,14 @@ public class LevelsController {
     @GetMapping("/openedPositions/long")
     public List<OpenedPosition> getOpenedLongPositions() {
         return levelsStrategyCondition.getLongPositions().values().stream()
-                .sorted(Comparator.comparing(OpenedPosition::updateStamp))
+                .sorted(Comparator.comparingLong(OpenedPosition::updateTime))
                 .collect(Collectors.toList());
     }
 
     @GetMapping("/openedPositions/short")
     public List<OpenedPosition> getOpenedShortPositions() {
         return levelsStrategyCondition.getShortPositions().values().stream()
-                .sorted(Comparator.comparing(OpenedPosition::updateStamp))
+                .sorted(Comparator.comparingLong(OpenedPosition::updateTime))
                 .collect(Collectors.toList());
     }
 
@@ -98,28 +106,29 @@ public class LevelsController {
     }
 
     @GetMapping("/barSeries/market")
-    public List<BarSeries> getAllMarketBarSeries() {
-        return new ArrayList<>(levels.getMarketBarSeriesMap().values());
+    public List<BarSeriesSnapshot> getAllMarketBarSeries() {
+        return snapshots(levels.getMarketCandleStickEventsStreams().keySet(), levels.getMarketCandlestickInterval());
     }
 
     @GetMapping("/barSeries/opened")
-    public List<BarSeries> getAllOpenedPositionsBarSeries() {
-        return new ArrayList<>(levels.getOpenedPositionsBarSeriesMap().values());
+    public List<BarSeriesSnapshot> getAllOpenedPositionsBarSeries() {
+        return snapshots(levels.getOpenedPositionsCandleStickEventsStreams().keySet(), levels.getOpenedPositionsCandlestickInterval());
     }
 
     @GetMapping("/barSeries/market/{symbol}")
-    public BarSeries getMarketBarSeries(@PathVariable String symbol) {
-        return levels.getMarketBarSeriesMap().get(symbol);
+    public BarSeriesSnapshot getMarketBarSeries(@PathVariable String symbol) {
+        return barCache.snapshot(symbol, levels.getMarketCandlestickInterval());
     }
 
     @GetMapping("/barSeries/opened/{symbol}")
-    public BarSeries getOpenedPositionBarSeries(@PathVariable String symbol) {
-        return levels.getOpenedPositionsBarSeriesMap().get(symbol);
+    public BarSeriesSnapshot getOpenedPositionBarSeries(@PathVariable String symbol) {
+        return barCache.snapshot(symbol, levels.getOpenedPositionsCandlestickInterval());
     }
 
     @PostMapping("/userDataUpdateEvent")
     public void handleUserDataUpdateEvent(@RequestBody OrderTradeUpdateEvent event) {
         log.debug("Get order trade update event: {}", event);
+        eventJournal.ifAvailable(journal -> journal.record(JournalEventType.ORDER_TRADE_UPDATE, event));
         switch (event.getSide()) {
             case BUY -> {
                 levels.handleBuying(event);
@@ -129,4 +138,11 @@ public class LevelsController {
             }
         }
     }
+
+    private List<BarSeriesSnapshot> snapshots(final Collection<String> symbols, final CandlestickInterval interval) {
+        return symbols.stream()
+                .map(symbol -> barCache.snapshot(symbol, interval))
+                .filter(Objects::nonNull)
+                .toList();
+    }
 }
@@ -1,7 +1,6 @@
 package ru.tyumentsev.cryptopredator.indicatorvirginbot.strategy;
 
 import com.binance.api.client.BinanceApiCallback;
-import com.binance.api.client.domain.Candle;
 import com.binance.api.client.domain.OrderSide;
 import com.binance.api.client.domain.event.CandlestickEvent;
 import com.binance.api.client.domain.event.OrderTradeUpdateEvent;
@@ -15,46 +14,59 @@ import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.ta4j.core.BaseBarSeries;
-import org.ta4j.core.BaseBarSeriesBuilder;
-import org.ta4j.core.indicators.EMAIndicator;
 import org.ta4j.core.indicators.MACDIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
-import org.ta4j.core.indicators.helpers.HighPriceIndicator;
 import org.ta4j.core.num.DoubleNum;
 import ru.tyumentsev.cryptopredator.commons.TradingStrategy;
 import ru.tyumentsev.cryptopredator.commons.backtesting.EmulatorService;
+import ru.tyumentsev.cryptopredator.commons.cache.BarCache;
+import ru.tyumentsev.cryptopredator.commons.cache.BarSeriesFeed;
+import ru.tyumentsev.cryptopredator.commons.cache.PrimitiveBarSeries;
+import ru.tyumentsev.cryptopredator.commons.cache.RollupEngine;
+import ru.tyumentsev.cryptopredator.commons.cache.RollupSnapshot;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolMap;
 import ru.tyumentsev.cryptopredator.commons.domain.BTCTrend;
+import ru.tyumentsev.cryptopredator.commons.domain.EvaluationMode;
 import ru.tyumentsev.cryptopredator.commons.domain.OpenedPosition;
+import ru.tyumentsev.cryptopredator.commons.domain.SellRecord;
+import ru.tyumentsev.cryptopredator.commons.indicator.IndicatorEngine;
+import ru.tyumentsev.cryptopredator.commons.indicator.PriceSource;
+import ru.tyumentsev.cryptopredator.commons.indicator.IndicatorSpec;
+import ru.tyumentsev.cryptopredator.commons.indicator.SymbolIndicators;
 import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
 import ru.tyumentsev.cryptopredator.commons.service.BotStateService;
+import ru.tyumentsev.cryptopredator.commons.service.CandleBackfillService;
 import ru.tyumentsev.cryptopredator.commons.service.DataService;
+import ru.tyumentsev.cryptopredator.commons.service.MarketDataHub;
 import ru.tyumentsev.cryptopredator.commons.service.MarketInfo;
 import ru.tyumentsev.cryptopredator.commons.service.SpotTrading;
+import ru.tyumentsev.cryptopredator.commons.service.SymbolDispatcher;
+import ru.tyumentsev.cryptopredator.commons.service.UpperTimeframePrefetcher;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.IndicatorVirginStrategyCondition;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.configuration.IndicatorVirginConfiguration;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.IndicatorVirginStrategyCondition.EMA_7;
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.IndicatorVirginStrategyCondition.EMA_25;
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.IndicatorVirginStrategyCondition.EMA_25_HIGH;
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.IndicatorVirginStrategyCondition.EMA_CROSS;
+
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -64,6 +76,13 @@ public class IndicatorVirgin implements TradingStrategy {
     IndicatorVirginConfiguration configuration;
     IndicatorVirginStrategyCondition strategyCondition;
     MarketInfo marketInfo;
+    MarketDataHub marketDataHub;
+    CandleBackfillService candleBackfillService;
+    BarCache barCache;
+    BarSeriesFeed barSeriesFeed;
+    RollupEngine rollupEngine;
+    UpperTimeframePrefetcher upperTimeframePrefetcher;
+    SymbolDispatcher symbolDispatcher;
     SpotTrading spotTrading;
     DataService dataService;
     BotStateService botStateService;
@@ -71,26 +90,49 @@ public class IndicatorVirgin implements TradingStrategy {
     @Getter
     EmulatorService emulatorService;
     Lock lock = new ReentrantLock();
+    @Getter
     CandlestickInterval marketCandlestickInterval = CandlestickInterval.HALF_HOURLY;
+    @Getter
     CandlestickInterval openedPositionsCandlestickInterval = CandlestickInterval.HALF_HOURLY;
     int baseBarSeriesLimit = 100;
     @Getter
     Map<String, Closeable> marketCandleStickEventsStreams = new ConcurrentHashMap<>();
     @Getter
     Map<String, Closeable> openedPositionsCandleStickEventsStreams = new ConcurrentHashMap<>();
+
+    PrimitiveBarSeries emptyBarSeries = new PrimitiveBarSeries("EmptyBarSeries", CandlestickToBaseBarMapper.duration(marketCandlestickInterval), 1);
     @Getter
-    Map<String, BaseBarSeries> marketBarSeriesMap = new ConcurrentHashMap<>();
+    IndicatorEngine marketIndicators = new IndicatorEngine(marketCandlestickInterval)
+            .define(EMA_7, IndicatorSpec.ema(PriceSource.CLOSE, 7))
+            .define(EMA_25, IndicatorSpec.ema(PriceSource.CLOSE, 25))
+            .defineCrossover(EMA_CROSS, EMA_7, EMA_25);
     @Getter
-    Map<String, BaseBarSeries> openedPositionsBarSeriesMap = new ConcurrentHashMap<>();
-
-    BaseBarSeriesBuilder barSeriesBuilder = new BaseBarSeriesBuilder();
-    BaseBarSeries emptyBarSeries = new BaseBarSeries("EmptyBarSeries");
+    IndicatorEngine openedPositionsIndicators = new IndicatorEngine(openedPositionsCandlestickInterval)
+            .define(EMA_7, IndicatorSpec.ema(PriceSource.CLOSE, 7))
+            .define(EMA_25_HIGH, IndicatorSpec.ema(PriceSource.HIGH, 25));
+    /**
+     * Verdicts of indicator rules evaluated on bar close, used in {@link EvaluationMode#BAR_CLOSE} mode only.
+     */
+    SymbolMap<Boolean> marketSignals = new SymbolMap<>();
+    SymbolMap<Boolean> openedPositionsSignals = new SymbolMap<>();
     @Getter
     BTCTrend btcTrend = new BTCTrend(CandlestickInterval.DAILY);
+    /**
+     * Stream of BTC candles for rolling up BTC trend locally, used if BTC is not among market pairs.
+     */
+    @NonFinal
+    Closeable btcCandleStickEventsStream;
 
     @Scheduled(fixedDelayString = "${strategy.indicatorVirgin.updateBtcTrend.fixedDelay}", initialDelayString = "${strategy.indicatorVirgin.updateBtcTrend.initialDelay}")
     public void indicatorVirgin_updateBTCTrend() {
         if (configuration.indicatorVirginEnabled() && configuration.followBtcTrend()) {
+            RollupSnapshot btcCandles = rollupEngine.snapshot(btcTrend.getSymbol(), btcTrend.getInterval(), 2);
+            if (!btcCandles.stale()) {
+                btcTrend.setLastCandles(btcCandles.candles());
+                return;
+            }
+            // BTC bars are not rolled up yet or outdated, state keeper is asked.
+            upperTimeframePrefetcher.prefetch(btcTrend.getSymbol(), btcTrend.getInterval());
             Optional.ofNullable(dataService.getBTCTrend()).map(BTCTrend::getLastCandles)
                     .ifPresentOrElse(btcTrend::setLastCandles,
                             () -> {
@@ -124,6 +166,7 @@ public class IndicatorVirgin implements TradingStrategy {
 
     @Override
     public void prepareData() {
+        upperTimeframePrefetcher.start(this::upperTimeframeSymbols);
         if (configuration.testLaunch()) {
             injectEmulatorService();
         } else {
@@ -142,10 +185,9 @@ public class IndicatorVirgin implements TradingStrategy {
     }
 
     private void restoreSellJournalFromCache() {
-        var sellJournal = strategyCondition.getSellJournal();
-        dataService.findAllSellRecords(this)
-                .forEach(record -> sellJournal.put(record.symbol(), record));
-        dataService.deleteAllSellRecords(sellJournal.values(), this);
+        List<SellRecord> sellRecords = dataService.findAllSellRecords(this);
+        sellRecords.forEach(strategyCondition::addSellRecordToJournal);
+        dataService.deleteAllSellRecords(sellRecords, this);
     }
 
     private void prepareOpenedLongPositions() {
@@ -156,8 +198,6 @@ public class IndicatorVirgin implements TradingStrategy {
         log.debug("Found next cached opened positions: {}", cachedOpenedPositions);
         cachedOpenedPositions.forEach(pos -> {
             if (accountPositions.contains(pos.symbol())) {
-                pos.threadStatus(null)
-                        .updateStamp(null);
                 strategyCondition.getLongPositions().put(pos.symbol(), pos);
             }
         });
@@ -208,8 +248,7 @@ public class IndicatorVirgin implements TradingStrategy {
             Optional.ofNullable(openedPositionsCandleStickEventsStreams.get(symbol)).ifPresentOrElse(stream -> {
             }, () -> { // do nothing if stream is already running.
                 openedPositionsCandleStickEventsStreams.put(symbol,
-                        marketInfo.openCandleStickEventsStream(symbol.toLowerCase(), openedPositionsCandlestickInterval,
-                                openedPositionMonitoringCallback())
+                        marketDataHub.subscribe(symbol, openedPositionsCandlestickInterval, this, openedPositionMonitoringCallback())
                 );
             });
         }
@@ -243,118 +282,171 @@ public class IndicatorVirgin implements TradingStrategy {
             }, () -> {
                 log.warn("Sell event of {} recieved, but have no opened position monitoring stream.", symbol);
             });
-            openedPositionsBarSeriesMap.remove(symbol);
+            barCache.release(symbol, openedPositionsCandlestickInterval, openedPositionsIndicators);
+            openedPositionsIndicators.remove(symbol);
+            openedPositionsSignals.remove(symbol);
 
             marketInfo.pairOrderFilled(symbol, getId());
         }
     }
 
+    /**
+     * Subscribe to streams of new cheap pairs and opened positions, unsubscribe from pairs which are not cheap anymore.
+     * Streams of still monitored pairs are kept, market data hub replaces their old connections without gaps.
+     */
     public void startCandlstickEventsCacheUpdating() {
-        closeOpenedWebSocketStreams();
-        AtomicInteger marketMonitoringThreadsCounter = new AtomicInteger();
-        AtomicInteger openedPositionsMonitoringThreadsCounter = new AtomicInteger();
-
-        Deque<String> marketTickers = marketInfo.getCheapPairs().get(configuration.tradingAsset()).stream().sorted().collect(Collectors.toCollection(LinkedList::new));
-
-        var streamsCount = marketTickers.size() / 2 + marketTickers.size() % 2;
-        List<List<String>> combinedPairsList = new ArrayList<>();
-        for (int i = streamsCount; i > 0; i--) {
-            List<String> combinedPair = new ArrayList<>();
-            if (!marketTickers.isEmpty()) {
-                combinedPair.add(marketTickers.poll());
-            }
-            if (!marketTickers.isEmpty()) {
-                combinedPair.add(marketTickers.poll());
-            }
-            if (!combinedPair.isEmpty()) {
-                combinedPairsList.add(combinedPair);
-            }
+        List<String> marketTickers = marketInfo.getCheapPairs().get(configuration.tradingAsset()).stream().sorted().toList();
+        List.copyOf(marketCandleStickEventsStreams.keySet()).stream()
+                .filter(symbol -> !marketTickers.contains(symbol))
+                .forEach(this::closeMarketStream);
+
+        marketCandleStickEventsStreams.putAll(marketDataHub.subscribe(marketTickers.stream()
+                        .filter(symbol -> !marketCandleStickEventsStreams.containsKey(symbol)).toList(),
+                marketCandlestickInterval, this, marketMonitoringCallback()));
+        openedPositionsCandleStickEventsStreams.putAll(marketDataHub.subscribe(strategyCondition.getLongPositions().keySet().stream()
+                        .filter(symbol -> !openedPositionsCandleStickEventsStreams.containsKey(symbol)).toList(),
+                openedPositionsCandlestickInterval, this, openedPositionMonitoringCallback()));
+        subscribeToBtcCandleStickEvents();
+        int replacedConnections = marketDataHub.reconnect();
+
+        log.info("Subscribed to {} market streams and {} opened positions streams, market data hub runs {} connections ({} replaced).",
+                marketCandleStickEventsStreams.size(), openedPositionsCandleStickEventsStreams.size(), marketDataHub.getConnections().size(), replacedConnections);
+    }
+
+    private void subscribeToBtcCandleStickEvents() {
+        if (configuration.followBtcTrend() && btcCandleStickEventsStream == null
+                && !marketCandleStickEventsStreams.containsKey(btcTrend.getSymbol())) {
+            btcCandleStickEventsStream = marketDataHub.subscribe(btcTrend.getSymbol(), marketCandlestickInterval, this, btcMonitoringCallback());
         }
+    }
 
-        combinedPairsList.forEach(combinedPair -> {
-            marketCandleStickEventsStreams.put(String.join(",", combinedPair),
-                    marketInfo.openCandleStickEventsStream(String.join(",", combinedPair).toLowerCase(), marketCandlestickInterval,
-                            marketMonitoringCallback()));
-            marketMonitoringThreadsCounter.getAndIncrement();
-        });
-
-        strategyCondition.getLongPositions().keySet().forEach(symbol -> {
-            openedPositionsCandleStickEventsStreams.put(symbol,
-                    marketInfo.openCandleStickEventsStream(symbol.toLowerCase(), openedPositionsCandlestickInterval,
-                            openedPositionMonitoringCallback()));
-            openedPositionsMonitoringThreadsCounter.getAndIncrement();
+    private void closeMarketStream(final String symbol) {
+        Optional.ofNullable(marketCandleStickEventsStreams.remove(symbol)).ifPresent(stream -> {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
         });
-
-        log.info("Runned {} market monitoring threads and {} opened positions monitoring threads.", marketMonitoringThreadsCounter, openedPositionsMonitoringThreadsCounter);
+        // series would have a gap if pair is subscribed again.
+        barCache.release(symbol, marketCandlestickInterval, marketIndicators);
+        marketIndicators.remove(symbol);
+        marketSignals.remove(symbol);
+        rollupEngine.remove(symbol);
     }
 
     private BinanceApiCallback<CandlestickEvent> marketMonitoringCallback() {
-        return event -> {
-            addEventToBaseBarSeries(event, marketBarSeriesMap, marketCandlestickInterval);
+        // symbol is resolved to id once per stream of symbol, state of symbol is read by id.
+        return symbolDispatcher.dispatching(marketInfo.getSymbolRegistry(), (event, symbolId) -> {
+            barSeriesFeed.addEvent(event, symbolId, marketCandlestickInterval, baseBarSeriesLimit, marketIndicators, rollupEngine);
+            if (evaluatesOnBarClose(event)) {
+                marketSignals.put(symbolId, openRulesPassed(symbolId));
+            }
 
-            if (!strategyCondition.getLongPositions().containsKey(event.getSymbol())) {
-                analizeMarketPosition(event);
+            if (!strategyCondition.getLongPositions().containsKey(symbolId)) {
+                analizeMarketPosition(event, symbolId);
             }
-        };
+        });
     }
 
     private BinanceApiCallback<CandlestickEvent> openedPositionMonitoringCallback() {
-        return event -> {
-            addEventToBaseBarSeries(event, openedPositionsBarSeriesMap, openedPositionsCandlestickInterval);
+        return symbolDispatcher.dispatching(marketInfo.getSymbolRegistry(), (event, symbolId) -> {
+            barSeriesFeed.addEvent(event, symbolId, openedPositionsCandlestickInterval, baseBarSeriesLimit, openedPositionsIndicators);
+
+            OpenedPosition openedPosition = strategyCondition.getLongPositions().get(symbolId);
+            if (openedPosition != null) {
+                if (evaluatesOnBarClose(event)) {
+                    openedPositionsSignals.put(symbolId, closeRulesPassed(symbolId, openedPosition, 0));
+                }
+                analizeOpenedPosition(event, symbolId, openedPosition);
+            }
+        });
+    }
 
-            if (strategyCondition.getLongPositions().containsKey(event.getSymbol())) {
-                analizeOpenedPosition(event, strategyCondition.getLongPositions().get(event.getSymbol()));
+    /**
+     * BTC bars are only rolled up to higher timeframes, no series or indicators are kept for them.
+     */
+    private BinanceApiCallback<CandlestickEvent> btcMonitoringCallback() {
+        return symbolDispatcher.dispatching(marketInfo.getSymbolRegistry(), (event, symbolId) -> {
+            if (!rollupEngine.isSeeded(event.getSymbol())
+                    && candleBackfillService.bufferUntilLoaded(event.getSymbol(), marketCandlestickInterval, baseBarSeriesLimit, rollupEngine, event,
+                    symbolDispatcher.laneExecutor(event.getSymbol()), (candles, bufferedEvents) -> {
+                        rollupEngine.seed(event.getSymbol(), candles);
+                        bufferedEvents.forEach(rollupEngine::update);
+                        upperTimeframePrefetcher.prefetch(event.getSymbol());
+                    })) {
+                return;
             }
-        };
+            rollupEngine.update(symbolId, event);
+        });
     }
 
-    private void analizeMarketPosition(final CandlestickEvent event) {
+    private void analizeMarketPosition(final CandlestickEvent event, final int symbolId) {
         if (strategyCondition.pong(event.getSymbol())) {
             log.info("Pong from market monitoring event for pair {}:\nisAlive:{}/state:{}.\n{}", event.getSymbol(), Thread.currentThread().isAlive(), Thread.currentThread().getState(), event);
         }
-        if (marketBarSeriesMap.get(event.getSymbol()).getBarCount() < baseBarSeriesLimit - 1) {
+        if (marketSeries(symbolId).getBarCount() < baseBarSeriesLimit - 1) {
             return;
         }
-        if (strategyCondition.pairOnMonitoring(event.getSymbol(), marketBarSeriesMap.getOrDefault(event.getSymbol(), emptyBarSeries))) {
+        if (strategyCondition.pairOnMonitoring(symbolId, marketIndicators.get(symbolId))) {
 //        if (strategyCondition.pairOnMonitoring(event.getSymbol(), Optional.ofNullable(marketBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new))) {
-            analizeMonitoredPosition(event);
+            analizeMonitoredPosition(event, symbolId);
 //            buyFast(event.getSymbol(), parsedFloat(event.getClose()), tradingAsset, false);
-        } else if (signalToOpenLongPosition(event)) {
+        } else if (signalToOpenLongPosition(event, symbolId)) {
             strategyCondition.addPairToMonitoring(event.getSymbol(), parsedFloat(event.getClose()));
+            // bars of higher timeframes are checked before buying, they are requested while pair is monitored.
+            upperTimeframePrefetcher.prefetch(event.getSymbol());
         }
     }
 
-    private boolean signalToOpenLongPosition(final CandlestickEvent event) {
+    /**
+     * Symbols which bars of higher timeframes are kept fresh: monitored, opened and BTC if its trend is followed.
+     */
+    private Collection<String> upperTimeframeSymbols() {
+        Set<String> symbols = new HashSet<>(strategyCondition.getLongPositions().keySet());
+        strategyCondition.getMonitoredPositions().values().forEach(position -> symbols.add(position.getSymbol()));
+        if (configuration.followBtcTrend()) {
+            symbols.add(btcTrend.getSymbol());
+        }
+        return symbols;
+    }
+
+    private boolean signalToOpenLongPosition(final CandlestickEvent event, final int symbolId) {
 //        if (Optional.ofNullable(emulatedPositions.get(event.getSymbol())).map(AtomicBoolean::get).orElse(false)) {
 //            return false;
 //        }
-        if ((marketInfo.pairOrderIsProcessing(event.getSymbol(), getId()) || strategyCondition.thisSignalWorkedOutBefore(event.getSymbol()))
+        if ((marketInfo.pairOrderIsProcessing(symbolId, getId()) || strategyCondition.thisSignalWorkedOutBefore(symbolId))
                 || (configuration.followBtcTrend() && btcTrend.isBearish())) {
             return false;
         }
 
-        BaseBarSeries series = marketBarSeriesMap.getOrDefault(event.getSymbol(), emptyBarSeries);
-//        BaseBarSeries series = Optional.ofNullable(marketBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new);
-        if (series.getBarData().isEmpty()) {
-            return false;
+        if (configuration.evaluationMode() == EvaluationMode.BAR_CLOSE) {
+            return marketSignals.getOrDefault(symbolId, Boolean.FALSE);
         }
-        var endBarSeriesIndex = series.getEndIndex();
+        return openRulesPassed(symbolId);
+    }
 
-//        SMAIndicator sma200 = new SMAIndicator(new ClosePriceIndicator(series), 200);
-        EMAIndicator ema7 = new EMAIndicator(new ClosePriceIndicator(series), 7);
-        EMAIndicator ema25 = new EMAIndicator(new ClosePriceIndicator(series), 25);
-//        RSIIndicator rsi14 = new RSIIndicator(new ClosePriceIndicator(series), 14);
-//        MACDIndicator macd = new MACDIndicator(new ClosePriceIndicator(series), 12, 26);
+    /**
+     * True if event closes bar and rules should be evaluated now.
+     */
+    private boolean evaluatesOnBarClose(final CandlestickEvent event) {
+        return configuration.evaluationMode() == EvaluationMode.BAR_CLOSE && Boolean.TRUE.equals(event.getBarFinal());
+    }
+
+    private boolean openRulesPassed(final int symbolId) {
+        SymbolIndicators indicators = marketIndicators.get(symbolId);
+        if (indicators == null) {
+            return false;
+        }
 
-        var ema7Value = ema7.getValue(endBarSeriesIndex);
-        var ema25Value = ema25.getValue(endBarSeriesIndex);
-//        var rsi14Value = rsi14.getValue(endBarSeriesIndex);
+        var ema7Value = indicators.getValue(EMA_7, 0);
+        var ema25Value = indicators.getValue(EMA_25, 0);
 
         if (//ema25.getValue(series.getEndIndex() - 1).isGreaterThanOrEqual(sma200.getValue(endBarSeriesIndex)) &&
-                ema7Value.isGreaterThan(ema25Value) &&
+                ema7Value > ema25Value &&
 //                rsi14.getValue(endBarSeriesIndex).isGreaterThan(DoubleNum.valueOf(73)) &&
-                (itsSustainableGrowth(ema7, ema25, endBarSeriesIndex, 2) &&
-                        haveBreakdown(ema7, ema25, endBarSeriesIndex, 8) //&&
+                (itsSustainableGrowth(indicators, 2) &&
+                        haveBreakdown(indicators, 8) //&&
 //                        rsi14.getValue(endBarSeriesIndex - 1).isGreaterThan(DoubleNum.valueOf(72))
                     )
             ) {
@@ -368,34 +460,25 @@ public class IndicatorVirgin implements TradingStrategy {
 
     /**
      * Growth is sustainable if short MA of last N bars are higher or equal than their long MA.
-     * @param ema7 short MA
-     * @param ema25 long MA
-     * @param endBarSeriesIndex last bar index
+     * @param indicators short and long MA of pair
      * @param barsQty quantity of bars to analize
      * @return True if growth is sustainable.
      */
-    private boolean itsSustainableGrowth(final EMAIndicator ema7, final EMAIndicator ema25, final int endBarSeriesIndex, final int barsQty) {
-        for (int i = endBarSeriesIndex; i > endBarSeriesIndex - barsQty; i--) {
-            if (ema25.getValue(i).isGreaterThan(ema7.getValue(i))) {
-                return false;
-            }
-        }
-        return true;
+    private boolean itsSustainableGrowth(final SymbolIndicators indicators, final int barsQty) {
+        return indicators.barsSinceFastBelow(EMA_CROSS) >= barsQty;
     }
 
-    private boolean haveBreakdown(final EMAIndicator ema7, final EMAIndicator ema25, final int endBarSeriesIndex, final int barsQty) {
-        for (int i = endBarSeriesIndex; i > endBarSeriesIndex - barsQty; i--) {
-            if (ema25.getValue(i).isGreaterThan(ema7.getValue(i))) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Breakdown is short MA lower than long MA on any of last N bars.
+     */
+    private boolean haveBreakdown(final SymbolIndicators indicators, final int barsQty) {
+        return indicators.barsSinceFastBelow(EMA_CROSS) < barsQty;
     }
 
-    private void analizeMonitoredPosition(final CandlestickEvent event) {
-        BaseBarSeries series = marketBarSeriesMap.getOrDefault(event.getSymbol(), emptyBarSeries);
+    private void analizeMonitoredPosition(final CandlestickEvent event, final int symbolId) {
+        PrimitiveBarSeries series = marketSeries(symbolId);
 //        BaseBarSeries series = Optional.ofNullable(marketBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new);
-        if (series.getBarData().isEmpty() || !strategyHaveAvailableOrdersLimit()) {
+        if (series.getBarCount() == 0 || !strategyHaveAvailableOrdersLimit()) {
             return;
         }
 
@@ -405,7 +488,7 @@ public class IndicatorVirgin implements TradingStrategy {
             var endBarSeriesIndex = series.getEndIndex();
 
             // set weight
-            strategyCondition.setMonitoredPairWeight(symbol, (int) percentageDifference(currentPrice, startPrice));
+            strategyCondition.setMonitoredPairWeight(symbolId, (int) percentageDifference(currentPrice, startPrice));
 
 //            RSIIndicator rsi14 = new RSIIndicator(new ClosePriceIndicator(series), 14);
 //            var rsi14Value = rsi14.getValue(endBarSeriesIndex - 1);
@@ -420,10 +503,10 @@ public class IndicatorVirgin implements TradingStrategy {
                     .isGreaterThan(DoubleNum.valueOf(startPrice).multipliedBy(DoubleNum.valueOf(1.03)))
                 //                    && rsi14Value.isGreaterThanOrEqual(DoubleNum.valueOf(70))
                     && series.getBar(endBarSeriesIndex).getClosePrice().isGreaterThan(series.getBar(endBarSeriesIndex - 1).getHighPrice())
-                    && strategyCondition.itsHeaviestMonitoredPair(symbol)
-                    && strategyCondition.pairOnUptrend(symbol, currentPrice, CandlestickInterval.DAILY, marketInfo)
+                    && strategyCondition.itsHeaviestMonitoredPair(symbolId)
+                    && strategyCondition.pairOnUptrend(symbol, currentPrice, CandlestickInterval.DAILY, rollupEngine)
             ) {
-                buyFast(symbol, currentPrice, configuration.tradingAsset(), false);
+                buyFast(symbolId, symbol, currentPrice, configuration.tradingAsset(), false);
             }
         });
     }
@@ -437,7 +520,7 @@ public class IndicatorVirgin implements TradingStrategy {
         }
     }
 
-    private void analizeOpenedPosition(final CandlestickEvent event, OpenedPosition openedPosition) {
+    private void analizeOpenedPosition(final CandlestickEvent event, final int symbolId, OpenedPosition openedPosition) {
         final String symbol = event.getSymbol();
         var currentPrice = parsedFloat(event.getClose());
 
@@ -452,13 +535,13 @@ public class IndicatorVirgin implements TradingStrategy {
             openedPosition.priceDecreaseFactor(configuration.takeProfitPriceDecreaseFactor());
         }
 
-        if (signalToCloseLongPosition(event, openedPosition)) {
+        if (signalToCloseLongPosition(event, symbolId, openedPosition)) {
             emulatorService.emulateSell(event.getSymbol(), currentPrice);
 //            sellFast(event.getSymbol(), openedPosition.qty(), configuration.tradingAsset());
         } else if (needToAverage(openedPosition)) {
 //        } else if (averagingEnabled && currentPrice > openedPosition.avgPrice() * averagingTrigger) {
             openedPosition.rocketCandidate(true);
-            buyFast(symbol, currentPrice, configuration.tradingAsset(), true);
+            buyFast(symbolId, symbol, currentPrice, configuration.tradingAsset(), true);
         }
 
     }
@@ -484,30 +567,39 @@ public class IndicatorVirgin implements TradingStrategy {
 //        }
     }
 
-    private void buyFast(final String symbol, final float price, String quoteAsset, boolean itsAveraging) {
-        if (!(marketInfo.pairOrderIsProcessing(symbol, getId()) || strategyCondition.thisSignalWorkedOutBefore(symbol))) {
+    private void buyFast(final int symbolId, final String symbol, final float price, String quoteAsset, boolean itsAveraging) {
+        if (!(marketInfo.pairOrderIsProcessing(symbolId, getId()) || strategyCondition.thisSignalWorkedOutBefore(symbolId))) {
             emulatorService.emulateBuy(symbol, price);
 //            spotTrading.placeBuyOrderFast(symbol, getId(), price, quoteAsset, configuration.minimalAssetBalance(), configuration.baseOrderVolume());
         }
     }
 
-    private boolean signalToCloseLongPosition(final CandlestickEvent event, OpenedPosition openedPosition) {
-        if (marketInfo.pairOrderIsProcessing(event.getSymbol(), getId())) {
+    private boolean signalToCloseLongPosition(final CandlestickEvent event, final int symbolId, OpenedPosition openedPosition) {
+        if (marketInfo.pairOrderIsProcessing(symbolId, getId())) {
             return false;
         }
-        final String ticker = event.getSymbol();
 
-        BaseBarSeries series = openedPositionsBarSeriesMap.getOrDefault(event.getSymbol(), emptyBarSeries);
-//        BaseBarSeries series = Optional.ofNullable(openedPositionsBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new);
-        if (series.getBarData().isEmpty()) {
-            log.warn("Opened positions BaseBarSeries of {} is empty, cannot define signal to close opened position.", ticker);
+        boolean rulesPassed = configuration.evaluationMode() == EvaluationMode.BAR_CLOSE
+                // until first bar close of position rules are evaluated on last closed bar.
+                ? openedPositionsSignals.computeIfAbsent(symbolId, symbol -> closeRulesPassed(symbolId, openedPosition, 1))
+                : closeRulesPassed(symbolId, openedPosition, 1);
+
+        return rulesPassed && LocalDateTime.now(ZoneId.systemDefault()).minusDays(2L).isAfter(openedPosition.lastDealTime());
+    }
+
+    /**
+     * @param closedBarsAgo position of last closed bar: 1 while bar is forming, 0 on final event of bar.
+     */
+    private boolean closeRulesPassed(final int symbolId, final OpenedPosition openedPosition, final int closedBarsAgo) {
+        SymbolIndicators indicators = openedPositionsIndicators.get(symbolId);
+        if (indicators == null) {
+            log.warn("Opened positions indicators of {} are not ready, cannot define signal to close opened position.", openedPosition.symbol());
             return false;
         }
-        var endBarSeriesIndex = series.getEndIndex();
-        EMAIndicator ema7 = new EMAIndicator(new ClosePriceIndicator(series), 7);
-        EMAIndicator ema25 = new EMAIndicator(new HighPriceIndicator(series), 25);
+        var ema7Value = indicators.getValue(EMA_7, closedBarsAgo);
+        var ema25Value = indicators.getValue(EMA_25_HIGH, closedBarsAgo);
 
-        openedPosition.stopPrice(ema25.getValue(endBarSeriesIndex - 1).floatValue());
+        openedPosition.stopPrice((float) ema25Value);
 
 //        RSIIndicator rsi14 = new RSIIndicator(new ClosePriceIndicator(series), 14);
 //        MACDIndicator macdIndicator = new MACDIndicator(new ClosePriceIndicator(series), 12, 26);
@@ -518,8 +610,7 @@ public class IndicatorVirgin implements TradingStrategy {
 //        float stopTriggerValue = openedPosition.priceDecreaseFactor().equals(takeProfitPriceDecreaseFactor) ? openedPosition.maxPrice() : openedPosition.avgPrice();
 //        float stopTriggerValue = openedPosition.maxPrice();
 
-        if (LocalDateTime.now(ZoneId.systemDefault()).minusDays(2L).isAfter(openedPosition.lastDealTime()) &&
-                ema7.getValue(endBarSeriesIndex - 1).isLessThan(ema25.getValue(endBarSeriesIndex - 1))
+        if (ema7Value < ema25Value
                 //currentPrice < stopTriggerValue * openedPosition.priceDecreaseFactor() &&
 //                (series.getBar(endBarSeriesIndex - 1).isBearish() &&
 //                rsi14.getValue(endBarSeriesIndex).isLessThanOrEqual(DoubleNum.valueOf(67)) &&
@@ -545,34 +636,8 @@ public class IndicatorVirgin implements TradingStrategy {
         return  macdAVG / signalLineLehgth;
     }
 
-    public void addEventToBaseBarSeries(final CandlestickEvent event, final Map<String, BaseBarSeries> barSeriesMap, final CandlestickInterval candlestickInterval) {
-        var series = barSeriesMap.getOrDefault(event.getSymbol(), newBaseBarSeries(marketInfo.getCandleSticks(event.getSymbol(), candlestickInterval, baseBarSeriesLimit), event.getSymbol(), candlestickInterval));
-        boolean replace = false;
-        if (series.getBarCount() > 0) {
-            replace = ZonedDateTime.ofInstant(Instant.ofEpochMilli(event.getCloseTime()), ZoneId.systemDefault()).isEqual(series.getLastBar().getEndTime());
-        }
-        series.addBar(CandlestickToBaseBarMapper.map(event, candlestickInterval),replace);
-        marketBarSeriesMap.put(event.getSymbol(), series);
-
-//        Optional.ofNullable(barSeriesMap.get(event.getSymbol())).ifPresentOrElse(barSeries -> {
-//            if (barSeries.getEndIndex() >= 0) {
-//                barSeries.addBar(CandlestickToBaseBarMapper.map(event, candlestickInterval),
-//                        ZonedDateTime.ofInstant(Instant.ofEpochMilli(event.getCloseTime()), ZoneId.systemDefault()).isEqual(barSeries.getLastBar().getEndTime())
-//                );
-//            }
-//        }, () -> {
-//            barSeriesMap.put(event.getSymbol(),
-//                    newBaseBarSeries(marketInfo.getCandleSticks(event.getSymbol(), candlestickInterval, baseBarSeriesLimit), event.getSymbol(), candlestickInterval));
-//        });
-    }
-
-    private BaseBarSeries newBaseBarSeries(final List<? extends Candle> candles, final String ticker, final CandlestickInterval candlestickInterval) {
-        return barSeriesBuilder
-                .withMaxBarCount(baseBarSeriesLimit)
-                .withNumTypeOf(DoubleNum::valueOf)
-                .withBars(CandlestickToBaseBarMapper.map(candles, candlestickInterval))
-                .withName(String.format("%s_%s", ticker, getName()))
-                .build();
+    private PrimitiveBarSeries marketSeries(final int symbolId) {
+        return Optional.ofNullable(barCache.get(symbolId, marketCandlestickInterval)).orElse(emptyBarSeries);
     }
 
     private void sellFast(String symbol, float qty, String quoteAsset) {
@@ -593,6 +658,14 @@ public class IndicatorVirgin implements TradingStrategy {
                 });
         marketCandleStickEventsStreams.clear();
         openedPositionsCandleStickEventsStreams.clear();
+        if (btcCandleStickEventsStream != null) {
+            try {
+                btcCandleStickEventsStream.close();
+            } catch (IOException e) {
+                log.error(e.getMessage());
+            }
+            btcCandleStickEventsStream = null;
+        }
     }
 
     private void backupOpenedPositions() {
@@ -1,7 +1,6 @@
 package ru.tyumentsev.cryptopredator.indicatorvirginbot.strategy;
 
 import com.binance.api.client.BinanceApiCallback;
-import com.binance.api.client.domain.Candle;
 import com.binance.api.client.domain.event.CandlestickEvent;
 import com.binance.api.client.domain.event.OrderTradeUpdateEvent;
 import com.binance.api.client.domain.market.CandlestickInterval;
@@ -15,49 +14,49 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.ta4j.core.Bar;
-import org.ta4j.core.BaseBarSeries;
-import org.ta4j.core.BaseBarSeriesBuilder;
-import org.ta4j.core.indicators.EMAIndicator;
 import org.ta4j.core.indicators.MACDIndicator;
-import org.ta4j.core.indicators.RSIIndicator;
-import org.ta4j.core.indicators.SMAIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
 import org.ta4j.core.num.DoubleNum;
-import org.ta4j.core.num.Num;
 import ru.tyumentsev.cryptopredator.commons.TradingStrategy;
 import ru.tyumentsev.cryptopredator.commons.backtesting.EmulatorService;
+import ru.tyumentsev.cryptopredator.commons.cache.BarCache;
+import ru.tyumentsev.cryptopredator.commons.cache.BarSeriesFeed;
+import ru.tyumentsev.cryptopredator.commons.cache.PrimitiveBarSeries;
+import ru.tyumentsev.cryptopredator.commons.cache.SymbolMap;
 import ru.tyumentsev.cryptopredator.commons.domain.BTCTrend;
+import ru.tyumentsev.cryptopredator.commons.domain.EvaluationMode;
 import ru.tyumentsev.cryptopredator.commons.domain.OpenedPosition;
-import ru.tyumentsev.cryptopredator.commons.mapping.CandlestickToBaseBarMapper;
+import ru.tyumentsev.cryptopredator.commons.domain.SellRecord;
+import ru.tyumentsev.cryptopredator.commons.indicator.IndicatorEngine;
+import ru.tyumentsev.cryptopredator.commons.indicator.PriceSource;
+import ru.tyumentsev.cryptopredator.commons.indicator.IndicatorSpec;
+import ru.tyumentsev.cryptopredator.commons.indicator.SymbolIndicators;
 import ru.tyumentsev.cryptopredator.commons.service.BotStateService;
 import ru.tyumentsev.cryptopredator.commons.service.DataService;
+import ru.tyumentsev.cryptopredator.commons.service.MarketDataHub;
 import ru.tyumentsev.cryptopredator.commons.service.MarketInfo;
 import ru.tyumentsev.cryptopredator.commons.service.SpotTrading;
+import ru.tyumentsev.cryptopredator.commons.service.SymbolDispatcher;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.LevelsStrategyCondition;
 import ru.tyumentsev.cryptopredator.indicatorvirginbot.configuration.LevelsConfiguration;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.LevelsStrategyCondition.EMA_7;
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.LevelsStrategyCondition.EMA_25;
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.LevelsStrategyCondition.EMA_CROSS;
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.LevelsStrategyCondition.RESISTANCE;
+import static ru.tyumentsev.cryptopredator.indicatorvirginbot.cache.LevelsStrategyCondition.RSI_14;
+
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -67,6 +66,10 @@ public class Levels implements TradingStrategy {
     LevelsConfiguration configuration;
     LevelsStrategyCondition levelsStrategyCondition;
     MarketInfo marketInfo;
+    MarketDataHub marketDataHub;
+    BarCache barCache;
+    BarSeriesFeed barSeriesFeed;
+    SymbolDispatcher symbolDispatcher;
     SpotTrading spotTrading;
     DataService dataService;
     BotStateService botStateService;
@@ -75,7 +78,9 @@ public class Levels implements TradingStrategy {
     EmulatorService emulatorService;
 
     Lock lock = new ReentrantLock();
+    @Getter
     CandlestickInterval marketCandlestickInterval = CandlestickInterval.HOURLY;
+    @Getter
     CandlestickInterval openedPositionsCandlestickInterval = CandlestickInterval.HOURLY;
     int baseBarSeriesLimit = 150;
     @Getter
@@ -83,11 +88,23 @@ public class Levels implements TradingStrategy {
     @Getter
     Map<String, Closeable> openedPositionsCandleStickEventsStreams = new ConcurrentHashMap<>();
     @Getter
-    Map<String, BaseBarSeries> marketBarSeriesMap = new ConcurrentHashMap<>();
+    IndicatorEngine marketIndicators = new IndicatorEngine(marketCandlestickInterval)
+            .define(EMA_7, IndicatorSpec.ema(PriceSource.CLOSE, 7))
+            .define(EMA_25, IndicatorSpec.ema(PriceSource.CLOSE, 25))
+            .defineCrossover(EMA_CROSS, EMA_7, EMA_25)
+            .define(RSI_14, IndicatorSpec.rsi(PriceSource.CLOSE, 14))
+            // highest price of series except of the last 6 bars.
+            .define(RESISTANCE, IndicatorSpec.highest(PriceSource.HIGH, baseBarSeriesLimit - 6, 6));
     @Getter
-    Map<String, BaseBarSeries> openedPositionsBarSeriesMap = new ConcurrentHashMap<>();
+    IndicatorEngine openedPositionsIndicators = new IndicatorEngine(openedPositionsCandlestickInterval)
+            .define(EMA_7, IndicatorSpec.ema(PriceSource.CLOSE, 7))
+            .define(EMA_25, IndicatorSpec.ema(PriceSource.CLOSE, 25));
+    /**
+     * Verdicts of indicator rules evaluated on bar close, used in {@link EvaluationMode#BAR_CLOSE} mode only.
+     */
+    SymbolMap<Boolean> marketSignals = new SymbolMap<>();
+    SymbolMap<Boolean> openedPositionsSignals = new SymbolMap<>();
 
-    BaseBarSeriesBuilder barSeriesBuilder = new BaseBarSeriesBuilder();
     @Getter
     BTCTrend btcTrend = new BTCTrend(CandlestickInterval.DAILY);
 
@@ -142,10 +159,9 @@ public class Levels implements TradingStrategy {
     }
 
     private void restoreSellJournalFromCache() {
-        var sellJournal = levelsStrategyCondition.getSellJournal();
-        dataService.findAllSellRecords(this)
-                .forEach(record -> sellJournal.put(record.symbol(), record));
-        dataService.deleteAllSellRecords(sellJournal.values(), this);
+        List<SellRecord> sellRecords = dataService.findAllSellRecords(this);
+        sellRecords.forEach(levelsStrategyCondition::addSellRecordToJournal);
+        dataService.deleteAllSellRecords(sellRecords, this);
     }
 
     private void prepareOpenedLongPositions() {
@@ -156,8 +172,6 @@ public class Levels implements TradingStrategy {
         log.debug("Found next cached opened positions: {}", cachedOpenedPositions);
         cachedOpenedPositions.forEach(pos -> {
             if (accountPositions.contains(pos.symbol())) {
-                pos.threadStatus(null)
-                        .updateStamp(null);
                 levelsStrategyCondition.getLongPositions().put(pos.symbol(), pos);
             }
         });
@@ -204,8 +218,7 @@ public class Levels implements TradingStrategy {
             Optional.ofNullable(openedPositionsCandleStickEventsStreams.get(symbol)).ifPresentOrElse(stream -> {
             }, () -> { // do nothing if stream is already running.
                 openedPositionsCandleStickEventsStreams.put(symbol,
-                        marketInfo.openCandleStickEventsStream(symbol.toLowerCase(), openedPositionsCandlestickInterval,
-                                openedPositionMonitoringCallback())
+                        marketDataHub.subscribe(symbol, openedPositionsCandlestickInterval, this, openedPositionMonitoringCallback())
                 );
             });
         }
@@ -238,118 +251,135 @@ public class Levels implements TradingStrategy {
             }, () -> {
                 log.warn("Sell event of {} recieved, but have no opened position monitoring stream.", symbol);
             });
-            openedPositionsBarSeriesMap.remove(symbol);
+            barCache.release(symbol, openedPositionsCandlestickInterval, openedPositionsIndicators);
+            openedPositionsIndicators.remove(symbol);
+            openedPositionsSignals.remove(symbol);
 
             marketInfo.pairOrderFilled(symbol, getId());
         }
     }
 
+    /**
+     * Subscribe to streams of new cheap pairs and opened positions, unsubscribe from pairs which are not cheap anymore.
+     * Streams of still monitored pairs are kept, market data hub replaces their old connections without gaps.
+     */
     public void startCandlstickEventsCacheUpdating() {
-        closeOpenedWebSocketStreams();
-        AtomicInteger marketMonitoringThreadsCounter = new AtomicInteger();
-        AtomicInteger openedPositionsMonitoringThreadsCounter = new AtomicInteger();
-
-        Deque<String> marketTickers = marketInfo.getCheapPairs().get(configuration.tradingAsset()).stream().sorted().collect(Collectors.toCollection(LinkedList::new));
-
-        var streamsCount = marketTickers.size() / 2 + marketTickers.size() % 2;
-        List<List<String>> combinedPairsList = new ArrayList<>();
-        for (int i = streamsCount; i > 0; i--) {
-            List<String> combinedPair = new ArrayList<>();
-            if (!marketTickers.isEmpty()) {
-                combinedPair.add(marketTickers.poll());
+        List<String> marketTickers = marketInfo.getCheapPairs().get(configuration.tradingAsset()).stream().sorted().toList();
+        List.copyOf(marketCandleStickEventsStreams.keySet()).stream()
+                .filter(symbol -> !marketTickers.contains(symbol))
+                .forEach(this::closeMarketStream);
+
+        marketCandleStickEventsStreams.putAll(marketDataHub.subscribe(marketTickers.stream()
+                        .filter(symbol -> !marketCandleStickEventsStreams.containsKey(symbol)).toList(),
+                marketCandlestickInterval, this, marketMonitoringCallback()));
+        openedPositionsCandleStickEventsStreams.putAll(marketDataHub.subscribe(levelsStrategyCondition.getLongPositions().keySet().stream()
+                        .filter(symbol -> !openedPositionsCandleStickEventsStreams.containsKey(symbol)).toList(),
+                openedPositionsCandlestickInterval, this, openedPositionMonitoringCallback()));
+        int replacedConnections = marketDataHub.reconnect();
+
+        log.info("Subscribed to {} market streams and {} opened positions streams, market data hub runs {} connections ({} replaced).",
+                marketCandleStickEventsStreams.size(), openedPositionsCandleStickEventsStreams.size(), marketDataHub.getConnections().size(), replacedConnections);
+    }
+
+    private void closeMarketStream(final String symbol) {
+        Optional.ofNullable(marketCandleStickEventsStreams.remove(symbol)).ifPresent(stream -> {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
             }
-            if (!marketTickers.isEmpty()) {
-                combinedPair.add(marketTickers.poll());
-            }
-            if (!combinedPair.isEmpty()) {
-                combinedPairsList.add(combinedPair);
-            }
-        }
-
-        combinedPairsList.forEach(combinedPair -> {
-            marketCandleStickEventsStreams.put(String.join(",", combinedPair),
-                    marketInfo.openCandleStickEventsStream(String.join(",", combinedPair).toLowerCase(), marketCandlestickInterval,
-                            marketMonitoringCallback()));
-            marketMonitoringThreadsCounter.getAndIncrement();
         });
-
-        levelsStrategyCondition.getLongPositions().keySet().forEach(symbol -> {
-            openedPositionsCandleStickEventsStreams.put(symbol,
-                    marketInfo.openCandleStickEventsStream(symbol.toLowerCase(), openedPositionsCandlestickInterval,
-                            openedPositionMonitoringCallback()));
-            openedPositionsMonitoringThreadsCounter.getAndIncrement();
-        });
-
-        log.info("Runned {} market monitoring threads and {} opened positions monitoring threads.", marketMonitoringThreadsCounter, openedPositionsMonitoringThreadsCounter);
+        // series would have a gap if pair is subscribed again.
+        barCache.release(symbol, marketCandlestickInterval, marketIndicators);
+        marketIndicators.remove(symbol);
+        marketSignals.remove(symbol);
     }
 
     private BinanceApiCallback<CandlestickEvent> marketMonitoringCallback() {
-        return event -> {
-            addEventToBaseBarSeries(event, marketBarSeriesMap, marketCandlestickInterval);
+        // symbol is resolved to id once per stream of symbol, state of symbol is read by id.
+        return symbolDispatcher.dispatching(marketInfo.getSymbolRegistry(), (event, symbolId) -> {
+            barSeriesFeed.addEvent(event, symbolId, marketCandlestickInterval, baseBarSeriesLimit, marketIndicators);
+            if (evaluatesOnBarClose(event)) {
+                marketSignals.put(symbolId, openRulesPassed(symbolId));
+            }
 
-            Optional.ofNullable(levelsStrategyCondition.getLongPositions().get(event.getSymbol())).ifPresentOrElse(
-                    openedPosition -> {},//analizeOpenedPosition(event, openedPosition), // ignore opened positions
-                    () -> analizeMarketPosition(event));
-        };
+            if (!levelsStrategyCondition.getLongPositions().containsKey(symbolId)) { // ignore opened positions
+                analizeMarketPosition(event, symbolId);
+            }
+        });
     }
 
     private BinanceApiCallback<CandlestickEvent> openedPositionMonitoringCallback() {
-        return event -> {
-            addEventToBaseBarSeries(event, openedPositionsBarSeriesMap, openedPositionsCandlestickInterval);
+        return symbolDispatcher.dispatching(marketInfo.getSymbolRegistry(), (event, symbolId) -> {
+            barSeriesFeed.addEvent(event, symbolId, openedPositionsCandlestickInterval, baseBarSeriesLimit, openedPositionsIndicators);
 
-            if (levelsStrategyCondition.getLongPositions().containsKey(event.getSymbol())) {
-                analizeOpenedPosition(event, levelsStrategyCondition.getLongPositions().get(event.getSymbol()));
+            OpenedPosition openedPosition = levelsStrategyCondition.getLongPositions().get(symbolId);
+            if (openedPosition != null) {
+                if (evaluatesOnBarClose(event)) {
+                    openedPositionsSignals.put(symbolId, closeRulesPassed(symbolId, 0));
+                }
+                analizeOpenedPosition(event, symbolId, openedPosition);
             }
-        };
+        });
     }
 
-    private void analizeMarketPosition(final CandlestickEvent event) {
-        if (marketBarSeriesMap.get(event.getSymbol()).getBarCount() < baseBarSeriesLimit - 1) {
+    private void analizeMarketPosition(final CandlestickEvent event, final int symbolId) {
+        PrimitiveBarSeries series = barCache.get(symbolId, marketCandlestickInterval);
+        if (series == null || series.getBarCount() < baseBarSeriesLimit - 1) {
             return;
         }
-        if (levelsStrategyCondition.pairOnMonitoring(event.getSymbol(), Optional.ofNullable(marketBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new))) {
-            analizeMonitoredPosition(event);
+        if (levelsStrategyCondition.pairOnMonitoring(symbolId, marketIndicators.get(symbolId))) {
+            analizeMonitoredPosition(event, symbolId, series);
 //            buyFast(event.getSymbol(), parsedFloat(event.getClose()), tradingAsset, false);
-        } else if (signalToOpenLongPosition(event)) {
+        } else if (signalToOpenLongPosition(event, symbolId)) {
             levelsStrategyCondition.addPairToMonitoring(event.getSymbol(), parsedFloat(event.getClose()));
         }
     }
 
-    private boolean signalToOpenLongPosition(final CandlestickEvent event) {
+    private boolean signalToOpenLongPosition(final CandlestickEvent event, final int symbolId) {
 //        if (Optional.ofNullable(emulatedPositions.get(event.getSymbol())).map(AtomicBoolean::get).orElse(false)) {
 //            return false;
 //        }
-        if (marketInfo.pairOrderIsProcessing(event.getSymbol(), getId()) || levelsStrategyCondition.thisSignalWorkedOutBefore(event.getSymbol())) {
+        if (marketInfo.pairOrderIsProcessing(symbolId, getId()) || levelsStrategyCondition.thisSignalWorkedOutBefore(symbolId)) {
             return false;
         }
 
-        BaseBarSeries series = Optional.ofNullable(marketBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new);
-        if (series.getBarData().isEmpty()) {
+        if (configuration.evaluationMode() == EvaluationMode.BAR_CLOSE) {
+            return marketSignals.getOrDefault(symbolId, Boolean.FALSE);
+        }
+        return openRulesPassed(symbolId);
+    }
+
+    /**
+     * True if event closes bar and rules should be evaluated now.
+     */
+    private boolean evaluatesOnBarClose(final CandlestickEvent event) {
+        return configuration.evaluationMode() == EvaluationMode.BAR_CLOSE && Boolean.TRUE.equals(event.getBarFinal());
+    }
+
+    private boolean openRulesPassed(final int symbolId) {
+        PrimitiveBarSeries series = barCache.get(symbolId, marketCandlestickInterval);
+        SymbolIndicators indicators = marketIndicators.get(symbolId);
+        if (series == null || series.getBarCount() < 2 || indicators == null) {
             return false;
         }
         var endBarSeriesIndex = series.getEndIndex();
 
-//        SMAIndicator smaAll = new SMAIndicator(new ClosePriceIndicator(series), baseBarSeriesLimit);
-        EMAIndicator ema7 = new EMAIndicator(new ClosePriceIndicator(series), 7);
-        EMAIndicator ema25 = new EMAIndicator(new ClosePriceIndicator(series), 25);
-        RSIIndicator rsi14 = new RSIIndicator(new ClosePriceIndicator(series), 14);
-//        MACDIndicator macd = new MACDIndicator(new ClosePriceIndicator(series), 12, 26);
-
-        var ema7Value = ema7.getValue(endBarSeriesIndex);
-        var ema25Value = ema25.getValue(endBarSeriesIndex);
-        var rsi14Value = rsi14.getValue(endBarSeriesIndex);
+        var ema7Value = indicators.getValue(EMA_7, 0);
+        var ema25Value = indicators.getValue(EMA_25, 0);
+        var rsi14Value = indicators.getValue(RSI_14, 0);
 
         if (series.getBar(endBarSeriesIndex - 1).isBullish() &&
 //                ema25.getValue(series.getEndIndex() - 1).isGreaterThanOrEqual(smaAll.getValue(endBarSeriesIndex)) &&
-                ema7Value.isGreaterThan(ema25Value) &&
+                ema7Value > ema25Value &&
 //                rsi14.getValue(endBarSeriesIndex).isGreaterThan(DoubleNum.valueOf(73)) &&
-                (itsSustainableGrowth(ema7, ema25, endBarSeriesIndex, 2) &&
-                        haveBreakdown(ema7, ema25, endBarSeriesIndex, 10) //&&
+                (itsSustainableGrowth(indicators, 2) &&
+                        haveBreakdown(indicators, 10) //&&
 //                        rsi14.getValue(endBarSeriesIndex - 1).isGreaterThan(DoubleNum.valueOf(72))
                     )
             ) {
 //                && sma7Value.isLessThanOrEqual(sma25Value.multipliedBy(DoubleNum.valueOf(1.06F)))
-            log.debug("SMA7 of {} ({}) is higher then SMA25 ({}) with RSI14 ({}) is greater then 72.", event.getSymbol(), ema7Value, ema25Value, rsi14Value);
+            log.debug("SMA7 of {} ({}) is higher then SMA25 ({}) with RSI14 ({}) is greater then 72.", marketInfo.getSymbolRegistry().symbolOf(symbolId), ema7Value, ema25Value, rsi14Value);
             return true;
         }
 
@@ -358,56 +388,35 @@ public class Levels implements TradingStrategy {
 
     /**
      * Growth is sustainable if short MA of last N bars are higher or equal than their long MA.
-     * @param ema7 short MA
-     * @param ema25 long MA
-     * @param endBarSeriesIndex last bar index
+     * @param indicators short and long MA of pair
      * @param barsQty quantity of bars to analize
      * @return True if growth is sustainable.
      */
-    private boolean itsSustainableGrowth(final EMAIndicator ema7, final EMAIndicator ema25, final int endBarSeriesIndex, final int barsQty) {
-        for (int i = endBarSeriesIndex; i > endBarSeriesIndex - barsQty; i--) {
-            if (ema25.getValue(i).isGreaterThan(ema7.getValue(i))) {
-                return false;
-            }
-        }
-        return true;
+    private boolean itsSustainableGrowth(final SymbolIndicators indicators, final int barsQty) {
+        return indicators.barsSinceFastBelow(EMA_CROSS) >= barsQty;
     }
 
-    private boolean haveBreakdown(final EMAIndicator ema7, final EMAIndicator ema25, final int endBarSeriesIndex, final int barsQty) {
-        for (int i = endBarSeriesIndex; i > endBarSeriesIndex - barsQty; i--) {
-            if (ema25.getValue(i).isGreaterThan(ema7.getValue(i))) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Breakdown is short MA lower than long MA on any of last N bars.
+     */
+    private boolean haveBreakdown(final SymbolIndicators indicators, final int barsQty) {
+        return indicators.barsSinceFastBelow(EMA_CROSS) < barsQty;
     }
 
-    private void analizeMonitoredPosition(final CandlestickEvent event) {
-        BaseBarSeries series = Optional.ofNullable(marketBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new);
-        if (series.getBarData().isEmpty() || !strategyHaveAvailableOrdersLimit()) {
+    private void analizeMonitoredPosition(final CandlestickEvent event, final int symbolId, final PrimitiveBarSeries series) {
+        SymbolIndicators indicators = marketIndicators.get(symbolId);
+        if (series.getBarCount() < 2 || indicators == null || !strategyHaveAvailableOrdersLimit()) {
             return;
         }
         var endBarSeriesIndex = series.getEndIndex();
 
-        var highestBar = findHighestBar(series.getSubSeries(series.getBeginIndex(), series.getEndIndex() - 5)); // resistance level
-        highestBar.map(Bar::getHighPrice).ifPresent(highestBarHighPrice -> {
-            var currentBar = series.getBar(endBarSeriesIndex);
-            var previousBar = series.getBar(endBarSeriesIndex - 1);
-            if (currentBar.isBullish() &&
-                    //previousBar.isBullish() &&
-                    previousBar.getClosePrice().isGreaterThan(highestBarHighPrice)
-            ) {
-                buyFast(event.getSymbol(), parsedFloat(event.getClose()), configuration.tradingAsset(), false);
-            }
-        });
-    }
-
-    private Optional<Bar> findHighestBar(final BaseBarSeries series) {
-//        series.getSubSeries(series.getEndIndex() - 15, series.getEndIndex()).getBarData().stream()
-//                .min(Comparator.comparing(Bar::getHighPrice)).ifPresent(minBar -> {
-//
-//        });
-        return series.getBarData().stream().max(Comparator.comparing(Bar::getHighPrice));
+        var resistanceLevel = indicators.getValue(RESISTANCE, 0);
+        if (!Double.isNaN(resistanceLevel) &&
+                series.getClose(endBarSeriesIndex) > series.getOpen(endBarSeriesIndex) && // current bar is bullish.
+                series.getClose(endBarSeriesIndex - 1) > resistanceLevel
+        ) {
+            buyFast(symbolId, event.getSymbol(), parsedFloat(event.getClose()), configuration.tradingAsset(), false);
+        }
     }
 
     private boolean strategyHaveAvailableOrdersLimit() {
@@ -419,7 +428,7 @@ public class Levels implements TradingStrategy {
         }
     }
 
-    private void analizeOpenedPosition(final CandlestickEvent event, final OpenedPosition openedPosition) {
+    private void analizeOpenedPosition(final CandlestickEvent event, final int symbolId, final OpenedPosition openedPosition) {
         final String symbol = event.getSymbol();
         var currentPrice = parsedFloat(event.getClose());
 
@@ -432,37 +441,47 @@ public class Levels implements TradingStrategy {
 
         if (configuration.averagingEnabled() && currentPrice > openedPosition.avgPrice() * configuration.averagingTrigger()) {
             openedPosition.rocketCandidate(true);
-            buyFast(symbol, currentPrice, configuration.tradingAsset(), true);
+            buyFast(symbolId, symbol, currentPrice, configuration.tradingAsset(), true);
         }
 
-        if (signalToCloseLongPosition(event, openedPosition)) {
+        if (signalToCloseLongPosition(event, symbolId)) {
             emulatorService.emulateSell(event.getSymbol(), currentPrice);
 //            sellFast(event.getSymbol(), openedPosition.qty(), configuration.tradingAsset());
         }
     }
 
-    private void buyFast(final String symbol, final float price, String quoteAsset, boolean itsAveraging) {
-        if (!(marketInfo.pairOrderIsProcessing(symbol, getId()) || levelsStrategyCondition.thisSignalWorkedOutBefore(symbol))) {
+    private void buyFast(final int symbolId, final String symbol, final float price, String quoteAsset, boolean itsAveraging) {
+        if (!(marketInfo.pairOrderIsProcessing(symbolId, getId()) || levelsStrategyCondition.thisSignalWorkedOutBefore(symbolId))) {
             emulatorService.emulateBuy(symbol, price);
 //            spotTrading.placeBuyOrderFast(symbol, getId(), price, quoteAsset, configuration.minimalAssetBalance(), configuration.baseOrderVolume());
         }
     }
 
-    private boolean signalToCloseLongPosition(final CandlestickEvent event, final OpenedPosition openedPosition) {
-        if (marketInfo.pairOrderIsProcessing(event.getSymbol(), getId())) {
+    private boolean signalToCloseLongPosition(final CandlestickEvent event, final int symbolId) {
+        if (marketInfo.pairOrderIsProcessing(symbolId, getId())) {
             return false;
         }
-        final String ticker = event.getSymbol();
 
-        BaseBarSeries series = Optional.ofNullable(openedPositionsBarSeriesMap.get(event.getSymbol())).orElseGet(BaseBarSeries::new);
-        if (series.getBarData().isEmpty()) {
-            log.warn("Opened positions BaseBarSeries of {} is empty, cannot define signal to close opened position.", ticker);
+        if (configuration.evaluationMode() == EvaluationMode.BAR_CLOSE) {
+            // until first bar close of position rules are evaluated on last closed bar.
+            return openedPositionsSignals.computeIfAbsent(symbolId, symbol -> closeRulesPassed(symbolId, 1));
+        }
+        return closeRulesPassed(symbolId, 1);
+    }
+
+    /**
+     * @param closedBarsAgo position of last closed bar: 1 while bar is forming, 0 on final event of bar.
+     */
+    private boolean closeRulesPassed(final int symbolId, final int closedBarsAgo) {
+        PrimitiveBarSeries series = barCache.get(symbolId, openedPositionsCandlestickInterval);
+        SymbolIndicators indicators = openedPositionsIndicators.get(symbolId);
+        if (series == null || series.getBarCount() < 2 || indicators == null) {
+            log.warn("Opened positions BaseBarSeries of {} is empty, cannot define signal to close opened position.",
+                    marketInfo.getSymbolRegistry().symbolOf(symbolId));
             return false;
         }
 
         var endBarSeriesIndex = series.getEndIndex();
-        EMAIndicator ema7 = new EMAIndicator(new ClosePriceIndicator(series), 7);
-        EMAIndicator ema25 = new EMAIndicator(new ClosePriceIndicator(series), 25);
 
 //        RSIIndicator rsi14 = new RSIIndicator(new ClosePriceIndicator(series), 14);
 //        MACDIndicator macdIndicator = new MACDIndicator(new ClosePriceIndicator(series), 12, 26);
@@ -474,8 +493,8 @@ public class Levels implements TradingStrategy {
 //        float stopTriggerValue = openedPosition.maxPrice();
 
         if (//currentPrice < stopTriggerValue * openedPosition.priceDecreaseFactor() &&
-                series.getBar(endBarSeriesIndex - 1).isBearish() &&
-                        ema7.getValue(endBarSeriesIndex - 1).isLessThan(ema25.getValue(endBarSeriesIndex - 1))
+                series.getBar(endBarSeriesIndex - closedBarsAgo).isBearish() &&
+                        indicators.getValue(EMA_7, closedBarsAgo) < indicators.getValue(EMA_25, closedBarsAgo)
 //                rsi14.getValue(endBarSeriesIndex).isLessThanOrEqual(DoubleNum.valueOf(67)) &&
 //                macdIndicator.getValue(endBarSeriesIndex).isLessThan(DoubleNum.valueOf(macd9barsAVG))) // current MACD less or equals signal line.
 //                || currentPrice > openedPosition.avgPrice() * 1.05
@@ -499,28 +518,6 @@ public class Levels implements TradingStrategy {
         return  macdAVG / signalLineLehgth;
     }
 
-    public void addEventToBaseBarSeries(final CandlestickEvent event, final Map<String, BaseBarSeries> barSeriesMap, final CandlestickInterval candlestickInterval) {
-        Optional.ofNullable(barSeriesMap.get(event.getSymbol())).ifPresentOrElse(barSeries -> {
-            if (barSeries.getEndIndex() >= 0) {
-                barSeries.addBar(CandlestickToBaseBarMapper.map(event, candlestickInterval),
-                        ZonedDateTime.ofInstant(Instant.ofEpochMilli(event.getCloseTime()), ZoneId.systemDefault()).isEqual(barSeries.getLastBar().getEndTime())
-                );
-            }
-        }, () -> {
-            barSeriesMap.put(event.getSymbol(),
-                    newBaseBarSeries(marketInfo.getCandleSticks(event.getSymbol(), candlestickInterval, baseBarSeriesLimit), event.getSymbol(), candlestickInterval));
-        });
-    }
-
-    private BaseBarSeries newBaseBarSeries(final List<? extends Candle> candles, final String ticker, final CandlestickInterval candlestickInterval) {
-        return barSeriesBuilder
-                .withMaxBarCount(baseBarSeriesLimit)
-                .withNumTypeOf(DoubleNum::valueOf)
-                .withBars(CandlestickToBaseBarMapper.map(candles, candlestickInterval))
-                .withName(String.format("%s_%s", ticker, getName()))
-                .build();
-    }
-
     private void sellFast(String symbol, float qty, String quoteAsset) {
         if (!marketInfo.pairOrderIsProcessing(symbol, getId())) {
             spotTrading.placeSellOrderFast(symbol, getId(), qty);
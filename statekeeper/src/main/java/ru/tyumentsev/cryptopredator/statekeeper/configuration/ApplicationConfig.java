@@ -14,6 +14,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import ru.tyumentsev.cryptopredator.commons.service.BinanceStandInInterceptor;
 
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +33,10 @@ public class ApplicationConfig {
     String secret;
     boolean useTestnet;
     boolean useTestnetStreaming;
+    /**
+     * Address of local Binance stand-in server, requests go to Binance if blank.
+     */
+    String binanceStandInURL;
 
     {
         Dispatcher dispatcher = new Dispatcher();
@@ -40,6 +45,7 @@ public class ApplicationConfig {
         sharedClient = new OkHttpClient.Builder()
                 .dispatcher(dispatcher)
                 .callTimeout(90, TimeUnit.SECONDS)
+                .addInterceptor(new BinanceStandInInterceptor(() -> binanceStandInURL))
                 .build();
     }
 